@@ -0,0 +1,287 @@
+package de.hpi.dbs2.exercise1;
+
+import de.hpi.dbs2.dbms.*;
+import de.hpi.dbs2.dbms.utils.BlockSorter;
+import de.hpi.dbs2.dbms.utils.LoserTreeMerger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Base class for sort operations which write sorted runs to disk and merge them afterwards.
+ *
+ * <p>Relations which fit into memory are sorted without writing runs.
+ * Otherwise, the runs created by {@link #generateRuns} are merged with a fan-in of {@code freeBlocks - 1},
+ * as each merged run needs one loaded block next to the output block.
+ * If there are more runs than that, they are merged in cascading passes into fewer, longer runs first,
+ * so relations of any size can be sorted.
+ *
+ * <p>Loaded blocks are sorted in place by {@link BlockSorter}, or by a parallel merge sort if a fork-join pool is given.
+ * The blocks are still loaded and written by the calling thread, so the I/O cost does not change.
+ */
+public abstract class ExternalSortOperation extends SortOperation {
+    /**
+     * Merging needs at least two input blocks and one output block.
+     */
+    protected static final int MIN_MEMORY_BLOCKS = 3;
+
+    @Nullable
+    private final ForkJoinPool pool;
+
+    public ExternalSortOperation(@NotNull BlockManager blockManager, int sortColumnIndex) {
+        this(blockManager, sortColumnIndex, null);
+    }
+
+    /**
+     * @param pool the pool on which loaded blocks are sorted, or null to sort them on the calling thread
+     */
+    public ExternalSortOperation(@NotNull BlockManager blockManager, int sortColumnIndex, @Nullable ForkJoinPool pool) {
+        super(blockManager, sortColumnIndex);
+        this.pool = pool;
+    }
+
+    /**
+     * Writes the tuples of the input relation as sorted runs to disk.
+     *
+     * @param memoryBlocks number of blocks which may be used at once
+     * @return the block references of each run in order
+     */
+    protected abstract List<List<Block>> generateRuns(
+        @NotNull Relation inputRelation,
+        @NotNull Comparator<Tuple> tupleComparator,
+        int memoryBlocks
+    );
+
+    @Override
+    public void sort(@NotNull Relation inputRelation, @NotNull Relation outputRelation) {
+        int memoryBlocks = getBlockManager().getFreeBlocks();
+        Comparator<Tuple> tupleComparator = inputRelation.getColumns().getColumnComparator(getSortColumnIndex());
+        if(inputRelation.estimatedBlockCount() <= memoryBlocks) {
+            sortInMemory(inputRelation, outputRelation);
+            return;
+        }
+        if(memoryBlocks < MIN_MEMORY_BLOCKS)
+            throw new RelationSizeExceedsCapacityException();
+
+        int fanIn = memoryBlocks - 1;
+        List<List<Block>> runs = generateRuns(inputRelation, tupleComparator, memoryBlocks);
+        while(runs.size() > fanIn) {
+            List<List<Block>> mergedRuns = new ArrayList<>();
+            for(int i = 0; i < runs.size(); i += fanIn) {
+                List<List<Block>> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                if(group.size() == 1) {
+                    // a single remaining run is already sorted
+                    mergedRuns.add(group.get(0));
+                    continue;
+                }
+                List<Block> mergedRun = new ArrayList<>();
+                mergeRuns(group, inputRelation.getColumns(), runOutput(mergedRun));
+                mergedRuns.add(mergedRun);
+            }
+            runs = mergedRuns;
+        }
+        mergeRuns(runs, outputRelation.getColumns(), outputRelation.getBlockOutput());
+    }
+
+    /**
+     * Calculates the cost of merging runs like {@link #sort} does,
+     * which is exact if all blocks but the last one of each run are full.
+     *
+     * @param runBlockCounts number of blocks of each run created by {@link #generateRuns}
+     * @return the cost of all intermediate merge passes and of reading the runs in the final pass
+     */
+    protected static int estimatedMergeCost(@NotNull List<Integer> runBlockCounts, int memoryBlocks) {
+        if(memoryBlocks < MIN_MEMORY_BLOCKS)
+            throw new RelationSizeExceedsCapacityException();
+        int fanIn = memoryBlocks - 1;
+        int cost = 0;
+        List<Integer> runs = runBlockCounts;
+        while(runs.size() > fanIn) {
+            List<Integer> mergedRuns = new ArrayList<>();
+            for(int i = 0; i < runs.size(); i += fanIn) {
+                List<Integer> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                int blockCount = group.stream().mapToInt(Integer::intValue).sum();
+                if(group.size() > 1) {
+                    // read and write each block of the merged runs
+                    cost += 2 * blockCount;
+                }
+                mergedRuns.add(blockCount);
+            }
+            runs = mergedRuns;
+        }
+        return cost + runs.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Loads all blocks of the input relation, sorts their tuples in place and moves the blocks to the output relation,
+     * so no block is allocated next to the loaded ones. The input relation references the sorted blocks afterwards.
+     */
+    private void sortInMemory(@NotNull Relation inputRelation, @NotNull Relation outputRelation) {
+        List<Block> loadedBlocks = new ArrayList<>();
+        for(Block blockRef : inputRelation) {
+            loadedBlocks.add(getBlockManager().load(blockRef));
+        }
+        sortBlocks(loadedBlocks, inputRelation.getColumns());
+        loadedBlocks.forEach(outputRelation.getBlockOutput()::move);
+    }
+
+    /**
+     * Sorts the tuples of the loaded blocks stably in place, with a parallel merge sort if a pool is given.
+     */
+    protected void sortBlocks(@NotNull List<Block> blocks, @NotNull ColumnDefinition columns) {
+        if(pool == null) {
+            BlockSorter.sort(blocks, columns, getSortColumnIndex());
+        } else {
+            ParallelTupleSort.sort(pool, blocks, columns.getColumnComparator(getSortColumnIndex()));
+        }
+    }
+
+    /**
+     * Merges the given runs at once into the block output.
+     * Equal tuples are taken from the earlier run first, so the merge is stable.
+     */
+    private void mergeRuns(
+        @NotNull List<List<Block>> runs,
+        @NotNull ColumnDefinition columns,
+        @NotNull BlockOutput blockOutput
+    ) {
+        List<Iterator<Tuple>> readers = new ArrayList<>(runs.size());
+        for(List<Block> run : runs) {
+            readers.add(new RunReader(run.iterator()));
+        }
+        new LoserTreeMerger(readers, columns, getSortColumnIndex())
+            .writeTo(getBlockManager(), columns, blockOutput);
+    }
+
+    /**
+     * @return a block output which writes the blocks to disk and collects their references
+     */
+    @NotNull
+    protected BlockOutput runOutput(@NotNull List<Block> blocks) {
+        return block -> blocks.add(getBlockManager().release(block, true));
+    }
+
+    /**
+     * Appends tuples to blocks which are moved to the given block output once they are full.
+     */
+    protected class TupleWriter implements AutoCloseable {
+        private final ColumnDefinition columns;
+        private final BlockOutput blockOutput;
+        private Block block = null;
+
+        public TupleWriter(@NotNull ColumnDefinition columns, @NotNull BlockOutput blockOutput) {
+            this.columns = columns;
+            this.blockOutput = blockOutput;
+        }
+
+        public void append(@NotNull Tuple tuple) {
+            if(block != null && block.isFull()) {
+                blockOutput.move(block);
+                block = null;
+            }
+            if(block == null)
+                block = getBlockManager().allocate(true, columns);
+            block.append(tuple);
+        }
+
+        @Override
+        public void close() {
+            if(block != null)
+                blockOutput.move(block);
+            block = null;
+        }
+    }
+
+    /**
+     * Collects the blocks of a run, which are written to disk once they are full.
+     */
+    protected class RunWriter extends TupleWriter {
+        private final List<Block> blocks;
+
+        public RunWriter(@NotNull ColumnDefinition columns) {
+            this(columns, new ArrayList<>());
+        }
+
+        private RunWriter(@NotNull ColumnDefinition columns, @NotNull List<Block> blocks) {
+            super(columns, runOutput(blocks));
+            this.blocks = blocks;
+        }
+
+        /**
+         * @return the block references of the run, once it has been closed
+         */
+        @NotNull
+        public List<Block> getBlocks() {
+            return blocks;
+        }
+    }
+
+    /**
+     * Iterates the tuples of a run with only one of its blocks loaded at a time.
+     */
+    protected class RunReader implements Iterator<Tuple> {
+        private final Iterator<Block> blockRefs;
+        private Block block = null;
+        private int tupleIndex = 0;
+
+        public RunReader(@NotNull Iterator<Block> blockRefs) {
+            this.blockRefs = blockRefs;
+            loadNextBlock();
+        }
+
+        public boolean hasHead() {
+            return block != null;
+        }
+
+        @NotNull
+        public Tuple head() {
+            return block.get(tupleIndex);
+        }
+
+        /**
+         * Moves to the next tuple and loads the next block if necessary.
+         * @return true if there is another tuple
+         */
+        public boolean advance() {
+            tupleIndex++;
+            if(tupleIndex >= block.getSize()) {
+                block.close();
+                loadNextBlock();
+            }
+            return hasHead();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasHead();
+        }
+
+        @Override
+        public Tuple next() {
+            if(!hasHead())
+                throw new NoSuchElementException();
+            Tuple tuple = head();
+            advance();
+            return tuple;
+        }
+
+        private void loadNextBlock() {
+            block = null;
+            tupleIndex = 0;
+            while(block == null && blockRefs.hasNext()) {
+                Block loadedBlock = getBlockManager().load(blockRefs.next());
+                if(loadedBlock.isEmpty()) {
+                    loadedBlock.close();
+                } else {
+                    block = loadedBlock;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package de.hpi.dbs2.exercise1;
+
+import de.hpi.dbs2.dbms.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Generates runs by sorting as many blocks as fit into memory at once,
+ * which are then merged in as many passes as needed with a fan-in of {@code freeBlocks - 1}.
+ *
+ * <p>With {@code M} free blocks and {@code B} input blocks, there are {@code ceil(B / M)} runs
+ * and each merge pass reduces their number by the factor {@code M - 1}.
+ * With at most {@code M - 1} runs, this is the two-phase multiway merge sort.
+ *
+ * <p>Each run is sorted in place in the loaded input blocks, which are written back as the blocks of the run,
+ * so the input relation is left sorted per run afterwards.
+ *
+ * <p>If a fork-join pool is given, the tuples of each run are sorted in parallel on it.
+ * Runs are not generated concurrently, as each of them already takes all free blocks,
+ * so the blocks are still loaded and written by the calling thread
+ * and the I/O cost is the same as for sorting sequentially.
+ */
+public class MultiPassMergeSort extends ExternalSortOperation {
+    public MultiPassMergeSort(@NotNull BlockManager blockManager, int sortColumnIndex) {
+        this(blockManager, sortColumnIndex, null);
+    }
+
+    /**
+     * @param pool the pool on which runs are sorted, or null to sort them on the calling thread
+     */
+    public MultiPassMergeSort(@NotNull BlockManager blockManager, int sortColumnIndex, @Nullable ForkJoinPool pool) {
+        super(blockManager, sortColumnIndex, pool);
+    }
+
+    /**
+     * Reads the input and writes the runs once, then reads and writes all blocks in each intermediate pass
+     * and reads them again in the final pass, which results in {@code B * (1 + 2 * passes)}
+     * with {@code passes = ceil(log_(M-1)(ceil(B / M)))}, minus the runs which are left over in a pass.
+     * This is exact if all blocks of the input relation except the last one are full.
+     */
+    @Override
+    public int estimatedIOCost(@NotNull Relation inputRelation) {
+        int blockCount = inputRelation.estimatedBlockCount();
+        int memoryBlocks = getBlockManager().getFreeBlocks();
+        if(blockCount <= memoryBlocks)
+            return blockCount;
+        List<Integer> runBlockCounts = new ArrayList<>();
+        for(int remainingBlocks = blockCount; remainingBlocks > 0; remainingBlocks -= memoryBlocks) {
+            runBlockCounts.add(Math.min(remainingBlocks, memoryBlocks));
+        }
+        // read input, write runs, merge runs
+        return 2 * blockCount + estimatedMergeCost(runBlockCounts, memoryBlocks);
+    }
+
+    /**
+     * Loads {@code memoryBlocks} input blocks at a time, sorts their tuples in place
+     * and writes the blocks back to disk as the next run.
+     */
+    @Override
+    protected List<List<Block>> generateRuns(
+        @NotNull Relation inputRelation,
+        @NotNull Comparator<Tuple> tupleComparator,
+        int memoryBlocks
+    ) {
+        List<List<Block>> runs = new ArrayList<>();
+        List<Block> loadedBlocks = new ArrayList<>(memoryBlocks);
+        Iterator<Block> blockRefs = inputRelation.iterator();
+        while(blockRefs.hasNext()) {
+            while(loadedBlocks.size() < memoryBlocks && blockRefs.hasNext()) {
+                loadedBlocks.add(getBlockManager().load(blockRefs.next()));
+            }
+            sortBlocks(loadedBlocks, inputRelation.getColumns());
+            List<Block> run = new ArrayList<>(loadedBlocks.size());
+            loadedBlocks.forEach(runOutput(run)::move);
+            runs.add(run);
+            loadedBlocks.clear();
+        }
+        return runs;
+    }
+}
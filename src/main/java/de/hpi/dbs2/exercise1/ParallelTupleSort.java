@@ -0,0 +1,132 @@
+package de.hpi.dbs2.exercise1;
+
+import de.hpi.dbs2.dbms.Block;
+import de.hpi.dbs2.dbms.Tuple;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stable merge sort of tuples on a fork-join pool.
+ * The array is halved until the slices are short enough to be sorted sequentially,
+ * then the sorted halves are merged back up, taking equal tuples from the left half first.
+ *
+ * <p>Unlike {@link Arrays#parallelSort}, which only splits the work if the common pool
+ * has a parallelism greater than one, this always runs on the given pool.
+ */
+final class ParallelTupleSort extends RecursiveAction {
+    /**
+     * Shorter slices are not split further, as forking them costs more than sorting them.
+     */
+    static final int MIN_SLICE_LENGTH = 1 << 12;
+    /**
+     * Number of slices per worker, so that idle workers can steal some of them.
+     */
+    private static final int SLICES_PER_WORKER = 4;
+
+    private final Tuple[] tuples;
+    private final Tuple[] buffer;
+    private final int from;
+    private final int to;
+    private final int sliceLength;
+    private final Comparator<Tuple> tupleComparator;
+
+    private ParallelTupleSort(
+        Tuple[] tuples,
+        Tuple[] buffer,
+        int from,
+        int to,
+        int sliceLength,
+        Comparator<Tuple> tupleComparator
+    ) {
+        this.tuples = tuples;
+        this.buffer = buffer;
+        this.from = from;
+        this.to = to;
+        this.sliceLength = sliceLength;
+        this.tupleComparator = tupleComparator;
+    }
+
+    /**
+     * Sorts the tuples in place, splitting them into about four slices per worker of the pool.
+     */
+    static void sort(@NotNull ForkJoinPool pool, @NotNull Tuple[] tuples, @NotNull Comparator<Tuple> tupleComparator) {
+        int slices = SLICES_PER_WORKER * pool.getParallelism();
+        sort(pool, tuples, tupleComparator, Math.max(MIN_SLICE_LENGTH, (tuples.length + slices - 1) / slices));
+    }
+
+    /**
+     * Sorts the tuples of the loaded blocks in place across the blocks, each of which keeps its size.
+     */
+    static void sort(@NotNull ForkJoinPool pool, @NotNull List<Block> blocks, @NotNull Comparator<Tuple> tupleComparator) {
+        Tuple[] tuples = new Tuple[blocks.stream().mapToInt(Block::getSize).sum()];
+        int position = 0;
+        for(Block block : blocks) {
+            for(int slot = 0; slot < block.getSize(); slot++) {
+                tuples[position++] = block.get(slot);
+            }
+        }
+        sort(pool, tuples, tupleComparator);
+        position = 0;
+        for(Block block : blocks) {
+            for(int slot = 0; slot < block.getSize(); slot++) {
+                block.set(slot, tuples[position++]);
+            }
+        }
+    }
+
+    /**
+     * @param sliceLength the length up to which slices are sorted sequentially
+     */
+    static void sort(
+        @NotNull ForkJoinPool pool,
+        @NotNull Tuple[] tuples,
+        @NotNull Comparator<Tuple> tupleComparator,
+        int sliceLength
+    ) {
+        if(sliceLength < 1)
+            throw new IllegalArgumentException("The slice length has to be positive.");
+        Tuple[] buffer = new Tuple[tuples.length];
+        pool.invoke(new ParallelTupleSort(tuples, buffer, 0, tuples.length, sliceLength, tupleComparator));
+    }
+
+    @Override
+    protected void compute() {
+        if(to - from <= sliceLength) {
+            Arrays.sort(tuples, from, to, tupleComparator);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new ParallelTupleSort(tuples, buffer, from, middle, sliceLength, tupleComparator),
+            new ParallelTupleSort(tuples, buffer, middle, to, sliceLength, tupleComparator)
+        );
+        merge(middle);
+    }
+
+    /**
+     * Merges the sorted halves {@code [from, middle)} and {@code [middle, to)} through the buffer.
+     */
+    private void merge(int middle) {
+        if(tupleComparator.compare(tuples[middle - 1], tuples[middle]) <= 0)
+            return; // already in order
+        System.arraycopy(tuples, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        int target = from;
+        while(left < middle && right < to) {
+            // equal tuples are taken from the left half first, so the sort is stable
+            if(tupleComparator.compare(buffer[right], buffer[left]) < 0) {
+                tuples[target++] = buffer[right++];
+            } else {
+                tuples[target++] = buffer[left++];
+            }
+        }
+        System.arraycopy(buffer, left, tuples, target, middle - left);
+        System.arraycopy(buffer, right, tuples, target, to - right);
+    }
+}
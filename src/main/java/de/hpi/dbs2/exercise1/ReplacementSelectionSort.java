@@ -0,0 +1,234 @@
+package de.hpi.dbs2.exercise1;
+
+import de.hpi.dbs2.dbms.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Generates runs with replacement selection: a heap holds as many tuples as fit into all blocks
+ * except the input and the output block, which are allocated for it. The smallest tuple of the current run
+ * is written next, and the next input tuple replaces it. If that tuple is smaller than the written one,
+ * it belongs to the next run.
+ *
+ * <p>On random input, the runs are about twice as long as the memory,
+ * and presorted input results in a single run.
+ *
+ * <p>A fork-join pool only speeds up relations which fit into memory,
+ * as each tuple written to a run depends on all tuples which were read before.
+ */
+public class ReplacementSelectionSort extends ExternalSortOperation {
+
+    public ReplacementSelectionSort(@NotNull BlockManager blockManager, int sortColumnIndex) {
+        super(blockManager, sortColumnIndex);
+    }
+
+    /**
+     * @param pool the pool on which relations which fit into memory are sorted,
+     *             or null to sort them on the calling thread
+     */
+    public ReplacementSelectionSort(@NotNull BlockManager blockManager, int sortColumnIndex, @Nullable ForkJoinPool pool) {
+        super(blockManager, sortColumnIndex, pool);
+    }
+
+    /**
+     * The number of runs depends on the order of the input, so this assumes runs of twice the heap size
+     * like for random input, each of which might end with a partially filled block.
+     * Reversed input results in more runs, which might need additional merge passes.
+     */
+    @Override
+    public int estimatedIOCost(@NotNull Relation inputRelation) {
+        int blockCount = inputRelation.estimatedBlockCount();
+        int memoryBlocks = getBlockManager().getFreeBlocks();
+        if(blockCount <= memoryBlocks)
+            return blockCount;
+        int heapBlocks = memoryBlocks - 2;
+        if(heapBlocks < 1)
+            throw new RelationSizeExceedsCapacityException();
+        int runLength = 2 * heapBlocks;
+        int expectedRuns = ceilDiv(blockCount, runLength);
+        List<Integer> runBlockCounts = new ArrayList<>(expectedRuns);
+        for(int i = 0; i < expectedRuns - 1; i++) {
+            runBlockCounts.add(runLength + 1);
+        }
+        runBlockCounts.add(blockCount - (expectedRuns - 1) * runLength);
+        int runBlockCount = blockCount + expectedRuns - 1;
+        // read input, write runs, merge runs
+        return blockCount + runBlockCount + estimatedMergeCost(runBlockCounts, memoryBlocks);
+    }
+
+    @Override
+    protected List<List<Block>> generateRuns(
+        @NotNull Relation inputRelation,
+        @NotNull Comparator<Tuple> tupleComparator,
+        int memoryBlocks
+    ) {
+        int heapBlocks = memoryBlocks - 2;
+        if(heapBlocks < 1)
+            throw new RelationSizeExceedsCapacityException();
+        List<Block> heapStorage = new ArrayList<>(heapBlocks);
+        for(int i = 0; i < heapBlocks; i++) {
+            heapStorage.add(getBlockManager().allocate(true));
+        }
+        TupleHeap heap = new TupleHeap(heapStorage, tupleComparator);
+        List<List<Block>> runs = new ArrayList<>();
+        RunWriter runWriter = null;
+        int currentRun = -1;
+
+        for(Block blockRef : inputRelation) {
+            Block block = getBlockManager().load(blockRef);
+            for(Tuple tuple : block) {
+                if(!heap.isFull()) {
+                    heap.add(0, tuple);
+                    continue;
+                }
+                if(heap.peekRun() != currentRun) {
+                    runWriter = startRun(runs, runWriter, inputRelation.getColumns());
+                    currentRun = heap.peekRun();
+                }
+                Tuple lastWrittenTuple = heap.peek();
+                runWriter.append(lastWrittenTuple);
+
+                boolean fitsIntoRun = tupleComparator.compare(tuple, lastWrittenTuple) >= 0;
+                heap.replaceTop(fitsIntoRun ? currentRun : currentRun + 1, tuple);
+            }
+            block.close();
+        }
+        while(!heap.isEmpty()) {
+            if(heap.peekRun() != currentRun) {
+                runWriter = startRun(runs, runWriter, inputRelation.getColumns());
+                currentRun = heap.peekRun();
+            }
+            runWriter.append(heap.peek());
+            heap.removeTop();
+        }
+        heapStorage.forEach(Block::close);
+        if(runWriter != null) {
+            runWriter.close();
+            runs.add(runWriter.getBlocks());
+        }
+        return runs;
+    }
+
+    private RunWriter startRun(List<List<Block>> runs, RunWriter previousRunWriter, ColumnDefinition columns) {
+        if(previousRunWriter != null) {
+            previousRunWriter.close();
+            runs.add(previousRunWriter.getBlocks());
+        }
+        return new RunWriter(columns);
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * Binary min-heap of tuples ordered by their run first. The tuples are stored in the given loaded blocks,
+     * the heap itself only orders their slots, so replacing the smallest tuple reuses its slot.
+     */
+    private static final class TupleHeap {
+        private final List<Block> blocks;
+        private final int blockCapacity;
+        private final Comparator<Tuple> tupleComparator;
+        /**
+         * the slots of the tuples in heap order
+         */
+        private final int[] heap;
+        /**
+         * the run of the tuple in each slot
+         */
+        private final int[] runs;
+        private int size = 0;
+
+        TupleHeap(@NotNull List<Block> blocks, @NotNull Comparator<Tuple> tupleComparator) {
+            this.blocks = blocks;
+            this.blockCapacity = blocks.get(0).getCapacity();
+            this.tupleComparator = tupleComparator;
+            this.heap = new int[blocks.size() * blockCapacity];
+            this.runs = new int[heap.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean isFull() {
+            return size == heap.length;
+        }
+
+        int peekRun() {
+            return runs[heap[0]];
+        }
+
+        @NotNull
+        Tuple peek() {
+            return tupleAt(heap[0]);
+        }
+
+        /**
+         * Appends the tuple to the blocks, which is only possible until the first tuple is replaced or removed.
+         */
+        void add(int run, @NotNull Tuple tuple) {
+            int slot = size;
+            blocks.get(slot / blockCapacity).append(tuple);
+            runs[slot] = run;
+            heap[size] = slot;
+            siftUp(size++);
+        }
+
+        /**
+         * Replaces the smallest tuple with the given one in its slot.
+         */
+        void replaceTop(int run, @NotNull Tuple tuple) {
+            int slot = heap[0];
+            blocks.get(slot / blockCapacity).set(slot % blockCapacity, tuple);
+            runs[slot] = run;
+            siftDown(0);
+        }
+
+        void removeTop() {
+            heap[0] = heap[--size];
+            siftDown(0);
+        }
+
+        private Tuple tupleAt(int slot) {
+            return blocks.get(slot / blockCapacity).get(slot % blockCapacity);
+        }
+
+        private int compare(int slot, int otherSlot) {
+            if(runs[slot] != runs[otherSlot])
+                return Integer.compare(runs[slot], runs[otherSlot]);
+            return tupleComparator.compare(tupleAt(slot), tupleAt(otherSlot));
+        }
+
+        private void siftUp(int index) {
+            int slot = heap[index];
+            while(index > 0) {
+                int parent = (index - 1) / 2;
+                if(compare(heap[parent], slot) <= 0)
+                    break;
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = slot;
+        }
+
+        private void siftDown(int index) {
+            int slot = heap[index];
+            while(2 * index + 1 < size) {
+                int child = 2 * index + 1;
+                if(child + 1 < size && compare(heap[child + 1], heap[child]) < 0)
+                    child++;
+                if(compare(slot, heap[child]) <= 0)
+                    break;
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = slot;
+        }
+    }
+}
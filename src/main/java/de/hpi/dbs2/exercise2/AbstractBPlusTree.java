@@ -4,7 +4,10 @@ import com.google.common.base.Preconditions;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.stream.Stream;
 
@@ -28,6 +31,16 @@ public abstract class AbstractBPlusTree implements Index<Integer, ValueReference
         rootNode = new InitialRootNode(order);
     }
 
+    /**
+     * Initializes a B+-Tree with the given root node without validating it.
+     * Subclasses which keep their root in their own node type pass null
+     * and have to override every method which reads {@link #rootNode}.
+     */
+    protected AbstractBPlusTree(int order, @Nullable BPlusTreeNode<?> rootNode) {
+        this.order = order;
+        this.rootNode = rootNode;
+    }
+
     /**
      * Initializes a B+-Tree using an existing tree structure which must be valid.
      */
@@ -37,6 +50,50 @@ public abstract class AbstractBPlusTree implements Index<Integer, ValueReference
         Preconditions.checkState(isValid());
     }
 
+    /**
+     * Builds a B+-Tree bottom-up from entries sorted by strictly ascending keys, e.g. {@code stream.iterator()}.
+     * The leaves are filled with {@code (order - 1) * fillFactor} entries and are linked while they are created,
+     * the inner nodes with {@code order * fillFactor} child nodes, as long as all nodes stay valid.
+     * This takes linear time instead of splitting nodes while inserting the entries one by one.
+     *
+     * @param fillFactor in (0, 1], lower values leave space in the nodes for later inserts
+     * @throws IllegalArgumentException if the entries are not sorted or contain a key twice
+     */
+    protected AbstractBPlusTree(int order, @NotNull Iterator<Entry> sortedEntries, double fillFactor) {
+        this.order = order;
+        List<Entry> entries = BulkLoading.collectSorted(sortedEntries);
+        if (entries.size() < order) {
+            rootNode = new InitialRootNode(order, entries.toArray(Entry[]::new));
+            return;
+        }
+
+        List<BPlusTreeNode<?>> level = new ArrayList<>();
+        LeafNode previousLeaf = null;
+        int start = 0;
+        for (int leafSize : BulkLoading.nodeSizes(
+            entries.size(), order - 1, BulkLoading.leafMinSize(order), fillFactor
+        )) {
+            LeafNode leaf = new LeafNode(order, entries.subList(start, start + leafSize).toArray(Entry[]::new));
+            if (previousLeaf != null)
+                previousLeaf.nextSibling = leaf;
+            previousLeaf = leaf;
+            level.add(leaf);
+            start += leafSize;
+        }
+        while (level.size() > order) {
+            List<BPlusTreeNode<?>> parentLevel = new ArrayList<>();
+            start = 0;
+            for (int nodeSize : BulkLoading.nodeSizes(
+                level.size(), order, BulkLoading.innerMinSize(order), fillFactor
+            )) {
+                parentLevel.add(new InnerNode(order, level.subList(start, start + nodeSize).toArray(BPlusTreeNode[]::new)));
+                start += nodeSize;
+            }
+            level = parentLevel;
+        }
+        rootNode = new InnerNode(order, level.toArray(BPlusTreeNode[]::new));
+    }
+
     public int getHeight() {
         return rootNode.getHeight();
     }
@@ -96,7 +153,34 @@ public abstract class AbstractBPlusTree implements Index<Integer, ValueReference
     @NotNull
     @Override
     public Iterator<ValueReference> getRange(@NotNull Integer lowerBound, @NotNull Integer upperBound) {
-        throw new UnsupportedOperationException("You don't have to implement this :)");
+        if (lowerBound > upperBound)
+            return Collections.emptyIterator();
+        int lastKey = upperBound;
+        LeafNode firstLeaf = rootNode.findLeaf(lowerBound);
+        int firstIndex = firstLeaf.lowerBound(lowerBound);
+        // the tree is only searched once, afterwards the values are read leaf by leaf along the sibling links
+        return new Iterator<>() {
+            private LeafNode leaf = firstLeaf;
+            private int index = firstIndex;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null && (index >= leaf.n || leaf.keys[index] == null)) {
+                    leaf = leaf.nextSibling;
+                    index = 0;
+                }
+                if (leaf != null && leaf.keys[index] > lastKey)
+                    leaf = null;
+                return leaf != null;
+            }
+
+            @Override
+            public ValueReference next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return leaf.references[index++];
+            }
+        };
     }
 
 
@@ -126,7 +210,7 @@ public abstract class AbstractBPlusTree implements Index<Integer, ValueReference
      * @return if the tree structure is valid
      */
     public boolean isValid() {
-        return rootNode.isValid() && rootNode.order == order;
+        return rootNode.isValidRoot() && rootNode.order == order;
     }
 
     @Override
@@ -141,6 +225,6 @@ public abstract class AbstractBPlusTree implements Index<Integer, ValueReference
     public boolean equals(Object other) {
         if (this == other) return true;
         if (!(other instanceof AbstractBPlusTree that)) return false;
-        return this.rootNode.equals(that.rootNode);
+        return this.getRootNode().equals(that.getRootNode());
     }
 }
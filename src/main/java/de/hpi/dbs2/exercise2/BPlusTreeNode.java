@@ -41,6 +41,102 @@ public sealed abstract class BPlusTreeNode<V> permits InnerNode, LeafNode {
         this.keys = new Integer[n];
     }
 
+    /**
+     * Nodes filled with at most this many keys are searched linearly, which compares more keys
+     * but avoids the unpredictable branches of a binary search.
+     * This is a fixed value measured once with NodeSearchBenchmark on full nodes of orders 4 to 512,
+     * where the linear search was last faster with 127 keys and slower with 255 keys.
+     * It is not calibrated on the running machine.
+     */
+    public static final int LINEAR_SEARCH_MAX_KEYS = 127;
+
+    /**
+     * @return the number of keys before the first null key
+     */
+    public int getKeyCount() {
+        return keyCount(keys);
+    }
+
+    /**
+     * Finds the first key which is larger than the search key in the filled key prefix,
+     * which is the index of the child node that could contain the search key in InnerNodes.
+     *
+     * @return the index of that key or the number of keys, if all keys are smaller or equal
+     */
+    protected int upperBound(int searchKey) {
+        int keyCount = keyCount(keys);
+        return keyCount <= LINEAR_SEARCH_MAX_KEYS
+            ? linearUpperBound(keys, searchKey)
+            : binaryUpperBound(keys, keyCount, searchKey);
+    }
+
+    /**
+     * @return the index of the search key in the filled key prefix or -1, if it is not contained
+     */
+    protected int indexOf(int searchKey) {
+        int keyCount = keyCount(keys);
+        if (keyCount <= LINEAR_SEARCH_MAX_KEYS) {
+            for (int i = 0; i < keyCount; i++) {
+                if (keys[i] == searchKey)
+                    return i;
+            }
+            return -1;
+        }
+        int index = binaryUpperBound(keys, keyCount, searchKey) - 1;
+        return (index >= 0 && keys[index] == searchKey) ? index : -1;
+    }
+
+    /**
+     * Finds the first key which is larger than or equal to the search key in the filled key prefix,
+     * which is where a range starting at the search key begins in LeafNodes.
+     *
+     * @return the index of that key or the number of keys, if all keys are smaller
+     */
+    protected int lowerBound(int searchKey) {
+        return (searchKey == Integer.MIN_VALUE) ? 0 : upperBound(searchKey - 1);
+    }
+
+    /**
+     * Keys are expected to be filled from the start, so the first null key is found by a binary search.
+     */
+    static int keyCount(Integer[] keys) {
+        if (keys.length == 0 || keys[keys.length - 1] != null)
+            return keys.length;
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] == null) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    static int linearUpperBound(Integer[] keys, int searchKey) {
+        int i = 0;
+        while (i < keys.length && keys[i] != null && keys[i] <= searchKey) {
+            i++;
+        }
+        return i;
+    }
+
+    static int binaryUpperBound(Integer[] keys, int keyCount, int searchKey) {
+        int low = 0;
+        int high = keyCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= searchKey) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
     /**
      * @return the number of references in this node
      */
@@ -88,6 +184,13 @@ public sealed abstract class BPlusTreeNode<V> permits InnerNode, LeafNode {
 
     public abstract boolean isValid();
 
+    /**
+     * Like {@link #isValid()}, but root nodes may contain fewer references than other nodes.
+     */
+    public boolean isValidRoot() {
+        return isValid();
+    }
+
     /**
      * @return A stream of all nodes in this subtree depth-first
      * starting with the left-most LeafNode and ending with this node.
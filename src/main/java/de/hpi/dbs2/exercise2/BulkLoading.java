@@ -0,0 +1,62 @@
+package de.hpi.dbs2.exercise2;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Helpers for building B+-Trees bottom-up from sorted entries:
+ * the entries are packed into leaves, and each level of nodes is packed into the inner nodes above it,
+ * until the nodes of one level fit into a single root node.
+ */
+final class BulkLoading {
+    private BulkLoading() {}
+
+    /**
+     * @return all entries, which have to be sorted by strictly ascending keys
+     * @throws IllegalArgumentException if the entries are not sorted or contain a key twice
+     */
+    @NotNull
+    static List<AbstractBPlusTree.Entry> collectSorted(@NotNull Iterator<AbstractBPlusTree.Entry> sortedEntries) {
+        List<AbstractBPlusTree.Entry> entries = new ArrayList<>();
+        while (sortedEntries.hasNext()) {
+            AbstractBPlusTree.Entry entry = sortedEntries.next();
+            Preconditions.checkArgument(
+                entries.isEmpty() || entries.get(entries.size() - 1).getKey() < entry.getKey(),
+                "entries must be sorted by strictly ascending keys: %s", entry
+            );
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Divides the elements of one level into as few nodes of {@code capacity * fillFactor} elements as possible.
+     * The elements are spread evenly, so that each node contains at least {@code minSize} elements.
+     *
+     * @return the number of elements in each node
+     */
+    @NotNull
+    static int[] nodeSizes(int count, int capacity, int minSize, double fillFactor) {
+        Preconditions.checkArgument(fillFactor > 0 && fillFactor <= 1, "fill factor must be in (0, 1]");
+        int targetSize = Math.max(minSize, Math.min(capacity, (int) Math.round(capacity * fillFactor)));
+        int nodeCount = Math.max(1, Math.min((count + targetSize - 1) / targetSize, count / minSize));
+        int[] sizes = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            sizes[node] = count / nodeCount + (node < count % nodeCount ? 1 : 0);
+        }
+        Preconditions.checkState(sizes[0] <= capacity);
+        return sizes;
+    }
+
+    static int leafMinSize(int order) {
+        return order / 2;
+    }
+
+    static int innerMinSize(int order) {
+        return (order + 1) / 2;
+    }
+}
@@ -0,0 +1,461 @@
+package de.hpi.dbs2.exercise2;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * An {@link IntBPlusTree} which can be searched and inserted into by many threads at once.
+ * Each node is guarded by its own read/write latch, which are acquired top-down by latch crabbing:
+ * a child node is latched before its parent node is released. The root reference is guarded by another latch,
+ * which lookups only read optimistically, so that they do not all write to it.
+ *
+ * <ul>
+ *     <li>Lookups and range scans latch the nodes for reading and hold at most two latches at once.</li>
+ *     <li>Inserts first latch the nodes like lookups and only latch the leaf for writing,
+ *     which suffices as long as the leaf does not have to be split.</li>
+ *     <li>Otherwise the insert is repeated with write latches on the path. The latches of the ancestors are
+ *     released once a node is not full, because the splits below end in that node.</li>
+ * </ul>
+ *
+ * <p>Entries are removed lazily like in {@link DeleteMode#TOMBSTONES}, so that a remove only latches the leaf
+ * for writing and never changes the nodes on the paths of other threads. Once the tombstones make up
+ * {@link #MAX_TOMBSTONE_RATIO} of all keys, the tree is compacted, see {@link #compact()}.
+ *
+ * <p>{@link #getEntries()}, {@link #getRootNode()}, {@link #getHeight()} and {@link #isValid()}
+ * do not latch the nodes, so they are only consistent while no insert or remove is running.
+ */
+public class ConcurrentIntBPlusTree extends IntBPlusTree {
+    /**
+     * An inner node with its read/write latch, so that no latch is looked up while descending.
+     */
+    static final class LatchedInnerNode extends IntInnerNode {
+        final StampedLock latch = new StampedLock();
+        /**
+         * Set while the tree is compacted, after which the node is not part of the tree anymore.
+         */
+        boolean retired;
+
+        LatchedInnerNode(int order) {
+            super(order);
+        }
+
+        @NotNull
+        @Override
+        IntInnerNode newSibling() {
+            return new LatchedInnerNode(order);
+        }
+    }
+
+    /**
+     * A leaf with its read/write latch.
+     */
+    static final class LatchedLeafNode extends IntLeafNode {
+        final StampedLock latch = new StampedLock();
+        /**
+         * Set while the tree is compacted, after which the node is not part of the tree anymore.
+         */
+        boolean retired;
+
+        LatchedLeafNode(int order) {
+            super(order);
+        }
+
+        @NotNull
+        @Override
+        IntLeafNode newSibling() {
+            return new LatchedLeafNode(order);
+        }
+    }
+
+    /**
+     * Number of keys inserted in addition to the ones counted by the super class.
+     */
+    private final LongAdder insertedKeyCount = new LongAdder();
+    /**
+     * Number of tombstones in addition to the ones counted by the super class.
+     */
+    private final LongAdder removedKeyCount = new LongAdder();
+    /**
+     * Guards {@link #root}, which is only replaced while the write latch is held.
+     */
+    private final StampedLock rootLatch = new StampedLock();
+
+    public ConcurrentIntBPlusTree(int order) {
+        super(order);
+        setDeleteMode(DeleteMode.TOMBSTONES);
+    }
+
+    /**
+     * @see IntBPlusTree#IntBPlusTree(int, Iterator, double)
+     */
+    public ConcurrentIntBPlusTree(int order, @NotNull Iterator<Entry> sortedEntries, double fillFactor) {
+        super(order, sortedEntries, fillFactor);
+        setDeleteMode(DeleteMode.TOMBSTONES);
+    }
+
+    @NotNull
+    @Override
+    protected IntLeafNode newLeaf() {
+        return new LatchedLeafNode(order);
+    }
+
+    @NotNull
+    @Override
+    protected IntInnerNode newInnerNode() {
+        return new LatchedInnerNode(order);
+    }
+
+    @NotNull
+    private static StampedLock latch(@NotNull IntBPlusTreeNode node) {
+        return (node instanceof LatchedLeafNode leaf) ? leaf.latch : ((LatchedInnerNode) node).latch;
+    }
+
+    /**
+     * @return if the latched node has been replaced by compacting the tree
+     */
+    private static boolean isRetired(@NotNull IntBPlusTreeNode node) {
+        return (node instanceof LatchedLeafNode leaf) ? leaf.retired : ((LatchedInnerNode) node).retired;
+    }
+
+    /**
+     * Latches the current root node. The root reference is read optimistically first,
+     * and only latched for reading if it is replaced in the meantime.
+     * The latched root is never retired, as compacting holds the write latch of the root reference throughout.
+     *
+     * @param writeLeaf if a root leaf is latched for writing
+     * @param writeInnerNode if a root inner node is latched for writing
+     */
+    @NotNull
+    private IntBPlusTreeNode latchRoot(boolean writeLeaf, boolean writeInnerNode) {
+        long stamp = rootLatch.tryOptimisticRead();
+        if (stamp != 0) {
+            IntBPlusTreeNode node = root;
+            boolean write = (node instanceof IntLeafNode) ? writeLeaf : writeInnerNode;
+            lock(node, write);
+            if (rootLatch.validate(stamp))
+                return node;
+            unlock(node, write);
+        }
+        rootLatch.asReadLock().lock();
+        try {
+            IntBPlusTreeNode node = root;
+            lock(node, (node instanceof IntLeafNode) ? writeLeaf : writeInnerNode);
+            return node;
+        } finally {
+            rootLatch.asReadLock().unlock();
+        }
+    }
+
+    /**
+     * Descends to the leaf of the search key by latch crabbing.
+     *
+     * @param writeLeaf if the leaf is latched for writing, all inner nodes are latched for reading
+     * @return the latched leaf
+     */
+    @NotNull
+    private IntLeafNode latchLeaf(int searchKey, boolean writeLeaf) {
+        IntBPlusTreeNode node = latchRoot(writeLeaf, false);
+        while (node instanceof IntInnerNode innerNode) {
+            IntBPlusTreeNode child = innerNode.selectChild(searchKey);
+            lock(child, writeLeaf && child instanceof IntLeafNode);
+            latch(innerNode).asReadLock().unlock();
+            node = child;
+        }
+        return (IntLeafNode) node;
+    }
+
+    private void lock(@NotNull IntBPlusTreeNode node, boolean write) {
+        if (write) {
+            latch(node).asWriteLock().lock();
+        } else {
+            latch(node).asReadLock().lock();
+        }
+    }
+
+    private void unlock(@NotNull IntBPlusTreeNode node, boolean write) {
+        if (write) {
+            latch(node).asWriteLock().unlock();
+        } else {
+            latch(node).asReadLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public ValueReference getOrNull(@NotNull Integer searchKey) {
+        IntLeafNode leaf = latchLeaf(searchKey, false);
+        try {
+            return leaf.getOrNull(searchKey);
+        } finally {
+            latch(leaf).asReadLock().unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public ValueReference insert(@NotNull Integer key, @NotNull ValueReference value) {
+        int searchKey = key;
+        IntLeafNode leaf = latchLeaf(searchKey, true);
+        try {
+            int index = leaf.indexOf(searchKey);
+            if (index >= 0)
+                return replaceValue(leaf, index, value);
+            if (!leaf.isFull()) {
+                leaf.insertAt(-index - 1, searchKey, value);
+                insertedKeyCount.increment();
+                return null;
+            }
+        } finally {
+            latch(leaf).asWriteLock().unlock();
+        }
+        return insertWithSplits(searchKey, value);
+    }
+
+    /**
+     * Replaces the value at the given index of the leaf, which is latched for writing.
+     */
+    @Nullable
+    private ValueReference replaceValue(@NotNull IntLeafNode leaf, int index, @NotNull ValueReference value) {
+        ValueReference previousValue = leaf.values[index];
+        leaf.values[index] = value;
+        if (previousValue == null)
+            removedKeyCount.decrement();
+        return previousValue;
+    }
+
+    /**
+     * Inserts the entry while holding the write latches of all nodes which might be split,
+     * and of the root reference while the root might be split.
+     */
+    @Nullable
+    private ValueReference insertWithSplits(int searchKey, @NotNull ValueReference value) {
+        // the latched inner nodes above the leaf and the index of the child taken in each of them
+        List<IntInnerNode> path = new ArrayList<>();
+        List<Integer> childIndices = new ArrayList<>();
+        Lock rootWriteLatch = rootLatch.asWriteLock();
+        rootWriteLatch.lock();
+        boolean rootLatched = true;
+        IntBPlusTreeNode node = root;
+        latch(node).asWriteLock().lock();
+        try {
+            while (true) {
+                if (!node.isFull()) {
+                    // a split of the child nodes ends in this node, so its ancestors and the root do not change
+                    if (rootLatched) {
+                        rootWriteLatch.unlock();
+                        rootLatched = false;
+                    }
+                    path.forEach(ancestor -> latch(ancestor).asWriteLock().unlock());
+                    path.clear();
+                    childIndices.clear();
+                }
+                if (!(node instanceof IntInnerNode innerNode))
+                    break;
+                int childIndex = innerNode.childIndex(searchKey);
+                path.add(innerNode);
+                childIndices.add(childIndex);
+                node = innerNode.children[childIndex];
+                latch(node).asWriteLock().lock();
+            }
+
+            IntLeafNode leaf = (IntLeafNode) node;
+            int index = leaf.indexOf(searchKey);
+            if (index >= 0) {
+                // inserted by another thread in the meantime
+                return replaceValue(leaf, index, value);
+            }
+            insertNewKey(
+                path.toArray(IntInnerNode[]::new), childIndices.stream().mapToInt(Integer::intValue).toArray(),
+                leaf, -index - 1, searchKey, value
+            );
+            insertedKeyCount.increment();
+            return null;
+        } finally {
+            latch(node).asWriteLock().unlock();
+            path.forEach(ancestor -> latch(ancestor).asWriteLock().unlock());
+            if (rootLatched)
+                rootWriteLatch.unlock();
+        }
+    }
+
+    /**
+     * Scans the range leaf by leaf. The values of each leaf are copied, so that no latch is held between calls,
+     * and the leaf following the last copied key is searched from the root again, as the leaves may be split
+     * in the meantime.
+     */
+    @NotNull
+    @Override
+    public Iterator<ValueReference> getRange(@NotNull Integer lowerBound, @NotNull Integer upperBound) {
+        if (lowerBound > upperBound)
+            return Collections.emptyIterator();
+        int lastKey = upperBound;
+        return new Iterator<>() {
+            private final List<ValueReference> values = new ArrayList<>(order - 1);
+            private int index = 0;
+            private int nextKey = lowerBound;
+            private boolean lastLeaf = false;
+
+            @Override
+            public boolean hasNext() {
+                while (index >= values.size() && !lastLeaf) {
+                    readNextLeaf();
+                }
+                return index < values.size();
+            }
+
+            @Override
+            public ValueReference next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return values.get(index++);
+            }
+
+            private void readNextLeaf() {
+                values.clear();
+                index = 0;
+                IntLeafNode leaf = latchLeaf(nextKey, false);
+                try {
+                    int keyIndex = leaf.indexOf(nextKey);
+                    keyIndex = (keyIndex < 0) ? -keyIndex - 1 : keyIndex;
+                    while (true) {
+                        for (; keyIndex < leaf.size && leaf.keys[keyIndex] <= lastKey; keyIndex++) {
+                            // skips the tombstones
+                            if (leaf.values[keyIndex] != null)
+                                values.add(leaf.values[keyIndex]);
+                        }
+                        if (keyIndex < leaf.size || leaf.nextSibling == null || leaf.keys[leaf.size - 1] == lastKey) {
+                            lastLeaf = true;
+                            return;
+                        }
+                        if (!values.isEmpty()) {
+                            nextKey = leaf.keys[leaf.size - 1] + 1;
+                            return;
+                        }
+                        // none of the keys is in the range, so it continues in the right sibling,
+                        // which is latched from left to right like by all scans, so that they cannot deadlock
+                        IntLeafNode sibling = leaf.nextSibling;
+                        latch(sibling).asReadLock().lock();
+                        latch(leaf).asReadLock().unlock();
+                        leaf = sibling;
+                        keyIndex = 0;
+                        if (isRetired(leaf)) {
+                            // the tree is compacted, so the next leaf is searched in the new tree
+                            return;
+                        }
+                    }
+                } finally {
+                    latch(leaf).asReadLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Replaces the value with a tombstone while only the leaf is latched for writing.
+     */
+    @Nullable
+    @Override
+    public ValueReference remove(@NotNull Integer key) {
+        int searchKey = key;
+        IntLeafNode leaf = latchLeaf(searchKey, true);
+        ValueReference previousValue;
+        try {
+            int index = leaf.indexOf(searchKey);
+            if (index < 0 || leaf.values[index] == null)
+                return null;
+            previousValue = leaf.values[index];
+            leaf.values[index] = null;
+            removedKeyCount.increment();
+        } finally {
+            latch(leaf).asWriteLock().unlock();
+        }
+        if (isWasted())
+            compact(false);
+        return previousValue;
+    }
+
+    private boolean isWasted() {
+        return getTombstoneCount() >= getLeafKeyCount() * MAX_TOMBSTONE_RATIO;
+    }
+
+    /**
+     * Rebuilds the tree from its remaining entries while holding the write latch of the root reference.
+     * Before, each node is latched for writing once from the top down and marked as retired, which waits for
+     * the operations still running in the old tree. Their latch crabbing never reaches a retired node
+     * from a node which is not retired, only range scans following a sibling link search the new tree again.
+     */
+    @Override
+    public void compact() {
+        compact(true);
+    }
+
+    /**
+     * @param always if false, the tree is only compacted if no other thread did so in the meantime
+     */
+    private void compact(boolean always) {
+        Lock rootWriteLatch = rootLatch.asWriteLock();
+        rootWriteLatch.lock();
+        try {
+            if (!always && !isWasted())
+                return;
+            retire(root);
+            super.compact();
+            insertedKeyCount.reset();
+            removedKeyCount.reset();
+        } finally {
+            rootWriteLatch.unlock();
+        }
+    }
+
+    private static void retire(@NotNull IntBPlusTreeNode node) {
+        IntBPlusTreeNode[] children = null;
+        latch(node).asWriteLock().lock();
+        try {
+            if (node instanceof LatchedInnerNode innerNode) {
+                innerNode.retired = true;
+                children = Arrays.copyOf(innerNode.children, innerNode.getNodeSize());
+            } else {
+                ((LatchedLeafNode) node).retired = true;
+            }
+        } finally {
+            latch(node).asWriteLock().unlock();
+        }
+        if (children != null) {
+            for (IntBPlusTreeNode child : children) {
+                retire(child);
+            }
+        }
+    }
+
+    /**
+     * Only {@link DeleteMode#TOMBSTONES} is supported.
+     */
+    @Override
+    public void setDeleteMode(@NotNull DeleteMode deleteMode) {
+        Preconditions.checkArgument(
+            deleteMode == DeleteMode.TOMBSTONES, "A concurrent tree only removes entries lazily."
+        );
+        super.setDeleteMode(deleteMode);
+    }
+
+    @Override
+    protected int getLeafKeyCount() {
+        return super.getLeafKeyCount() + insertedKeyCount.intValue();
+    }
+
+    @Override
+    protected int getTombstoneCount() {
+        return super.getTombstoneCount() + removedKeyCount.intValue();
+    }
+}
@@ -64,17 +64,8 @@ public non-sealed class InnerNode extends BPlusTreeNode<BPlusTreeNode<?>> {
      */
     @NotNull
     public BPlusTreeNode<?> selectChild(@NotNull Integer searchKey) {
-        for (int i = 0; i < keys.length; i++) {
-            Integer key = keys[i];
-            if (key != null) {
-                if (searchKey < key) {
-                    return references[i]; // "left" reference
-                }
-            } else {
-                return references[i]; // "right" reference
-            }
-        }
-        return references[order - 1]; // "rightest" reference
+        // the reference left of the first larger key, or right of the last key
+        return references[upperBound(searchKey)];
     }
 
     @NotNull
@@ -97,10 +88,22 @@ public non-sealed class InnerNode extends BPlusTreeNode<BPlusTreeNode<?>> {
 
     @Override
     public boolean isValid() {
+        return isValid(false);
+    }
+
+    /**
+     * The root node only needs two child nodes.
+     */
+    @Override
+    public boolean isValidRoot() {
+        return isValid(true);
+    }
+
+    private boolean isValid(boolean isRoot) {
         if (keys.length != n)
             return false;
         int size = getNodeSize();
-        if (isEmpty() || size < (int) Math.ceil(order / 2.0))
+        if (isEmpty() || size < (isRoot ? 2 : (int) Math.ceil(order / 2.0)))
             return false;
         if (references.length != order)
             return false;
@@ -0,0 +1,462 @@
+package de.hpi.dbs2.exercise2;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A B+-Tree made of {@link IntBPlusTreeNode}s, which store their keys in {@code int[]} arrays,
+ * so that a lookup only compares unboxed keys in one contiguous array per level.
+ *
+ * <p>The inherited {@link #rootNode} is not used, all methods reading it are overridden.
+ * {@link #getRootNode()} converts the tree into {@link BPlusTreeNode}s, so it can be compared
+ * with trees built by {@link BPlusTreeNode#buildTree}.
+ *
+ * <p>Entries are removed according to the {@link DeleteMode} of the tree.
+ */
+public class IntBPlusTree extends AbstractBPlusTree {
+    /**
+     * Lazily removed entries are dropped by compacting the tree, once their tombstones make up this share of all keys.
+     */
+    public static final double MAX_TOMBSTONE_RATIO = 0.5;
+    /**
+     * Leaves some space in the nodes of a compacted tree, so that the next inserts do not split them right away.
+     */
+    public static final double COMPACTION_FILL_FACTOR = 0.7;
+
+    public enum DeleteMode {
+        /**
+         * Removes entries right away and borrows from or merges with sibling nodes to keep all nodes filled.
+         */
+        REBALANCE,
+        /**
+         * Only marks removed entries with tombstones, which are dropped by {@link #compact()}.
+         * This keeps the tree structure unchanged during bursts of deletes.
+         */
+        TOMBSTONES
+    }
+
+    @NotNull
+    protected IntBPlusTreeNode root;
+    @NotNull
+    private DeleteMode deleteMode = DeleteMode.REBALANCE;
+    /**
+     * Number of keys in the leaves, including the ones of tombstones.
+     */
+    private int keyCount;
+    private int tombstoneCount;
+
+    public IntBPlusTree(int order) {
+        super(order, null);
+        root = newLeaf();
+    }
+
+    /**
+     * Builds the tree bottom-up from entries sorted by strictly ascending keys.
+     * @see AbstractBPlusTree#AbstractBPlusTree(int, Iterator, double)
+     */
+    public IntBPlusTree(int order, @NotNull Iterator<Entry> sortedEntries, double fillFactor) {
+        super(order, null);
+        List<Entry> entries = BulkLoading.collectSorted(sortedEntries);
+        int[] keys = new int[entries.size()];
+        ValueReference[] values = new ValueReference[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).getKey();
+            values[i] = entries.get(i).getValue();
+        }
+        root = buildTree(keys, values, fillFactor);
+        keyCount = keys.length;
+    }
+
+    /**
+     * @return the root of a tree built bottom-up from the given sorted keys and their values
+     */
+    @NotNull
+    private IntBPlusTreeNode buildTree(int[] keys, ValueReference[] values, double fillFactor) {
+        int[] leafSizes = (keys.length < order)
+            ? new int[]{keys.length}
+            : BulkLoading.nodeSizes(keys.length, order - 1, BulkLoading.leafMinSize(order), fillFactor);
+
+        List<IntBPlusTreeNode> level = new ArrayList<>(leafSizes.length);
+        IntLeafNode previousLeaf = null;
+        int start = 0;
+        for (int leafSize : leafSizes) {
+            IntLeafNode leaf = newLeaf();
+            System.arraycopy(keys, start, leaf.keys, 0, leafSize);
+            System.arraycopy(values, start, leaf.values, 0, leafSize);
+            leaf.size = leafSize;
+            if (previousLeaf != null)
+                previousLeaf.nextSibling = leaf;
+            previousLeaf = leaf;
+            level.add(leaf);
+            start += leafSize;
+        }
+        while (level.size() > 1) {
+            int[] nodeSizes = (level.size() <= order)
+                ? new int[]{level.size()}
+                : BulkLoading.nodeSizes(level.size(), order, BulkLoading.innerMinSize(order), fillFactor);
+            List<IntBPlusTreeNode> parentLevel = new ArrayList<>(nodeSizes.length);
+            start = 0;
+            for (int nodeSize : nodeSizes) {
+                IntInnerNode node = newInnerNode();
+                for (int i = 0; i < nodeSize; i++) {
+                    node.children[i] = level.get(start + i);
+                    if (i > 0)
+                        node.keys[i - 1] = node.children[i].getSmallestKey();
+                }
+                node.size = nodeSize - 1;
+                parentLevel.add(node);
+                start += nodeSize;
+            }
+            level = parentLevel;
+        }
+        return level.get(0);
+    }
+
+    /**
+     * Creates the empty leaves of this tree, except the ones split off by {@link IntLeafNode#newSibling()}.
+     * It is called by the constructors, so it must not depend on fields of subclasses.
+     */
+    @NotNull
+    protected IntLeafNode newLeaf() {
+        return new IntLeafNode(order);
+    }
+
+    /**
+     * Creates the empty inner nodes of this tree, except the ones split off by {@link IntInnerNode#newSibling()}.
+     * It is called by the constructors, so it must not depend on fields of subclasses.
+     */
+    @NotNull
+    protected IntInnerNode newInnerNode() {
+        return new IntInnerNode(order);
+    }
+
+    @NotNull
+    public IntBPlusTreeNode getIntRootNode() {
+        return root;
+    }
+
+    @Override
+    public BPlusTreeNode<?> getRootNode() {
+        BPlusTreeNode<?> rootNode = root.toBPlusTreeNode();
+        if (rootNode instanceof InnerNode innerNode) {
+            innerNode.fixLeafLinks();
+            return innerNode;
+        }
+        LeafNode leafNode = (LeafNode) rootNode;
+        return new InitialRootNode(order, leafNode.getEntries().toArray(Entry[]::new));
+    }
+
+    @Override
+    public int getHeight() {
+        return root.getHeight();
+    }
+
+    @Nullable
+    @Override
+    public ValueReference getOrNull(@NotNull Integer searchKey) {
+        return root.findLeaf(searchKey).getOrNull(searchKey);
+    }
+
+    @Nullable
+    @Override
+    public ValueReference insert(@NotNull Integer key, @NotNull ValueReference value) {
+        int searchKey = key;
+        // the inner nodes on the path to the leaf and the index of the child taken in each of them
+        IntInnerNode[] path = new IntInnerNode[root.getHeight()];
+        int[] childIndices = new int[path.length];
+        IntBPlusTreeNode node = root;
+        for (int depth = 0; node instanceof IntInnerNode innerNode; depth++) {
+            path[depth] = innerNode;
+            childIndices[depth] = innerNode.childIndex(searchKey);
+            node = innerNode.children[childIndices[depth]];
+        }
+
+        IntLeafNode leaf = (IntLeafNode) node;
+        int index = leaf.indexOf(searchKey);
+        if (index >= 0) {
+            ValueReference previousValue = leaf.values[index];
+            leaf.values[index] = value;
+            if (previousValue == null)
+                tombstoneCount--;
+            return previousValue;
+        }
+        keyCount++;
+        insertNewKey(path, childIndices, leaf, -index - 1, searchKey, value);
+        return null;
+    }
+
+    /**
+     * Inserts a key, which is not contained yet, at the given index of the leaf below the given path
+     * and splits the full nodes bottom-up. The path may start below the root at a node which is not full,
+     * because the splits end there.
+     *
+     * @param path the inner nodes above the leaf
+     * @param childIndices the index of the child node taken in each inner node of the path
+     */
+    protected void insertNewKey(
+        @NotNull IntInnerNode[] path, int[] childIndices,
+        @NotNull IntLeafNode leaf, int index, int key, @NotNull ValueReference value
+    ) {
+        if (!leaf.isFull()) {
+            leaf.insertAt(index, key, value);
+            return;
+        }
+
+        IntBPlusTreeNode newNode = leaf.splitInsert(index, key, value);
+        int separator = newNode.getSmallestKey();
+        for (int depth = path.length - 1; depth >= 0; depth--) {
+            IntInnerNode parent = path[depth];
+            if (!parent.isFull()) {
+                parent.insertChild(childIndices[depth], separator, newNode);
+                return;
+            }
+            IntInnerNode.Split split = parent.splitInsert(childIndices[depth], separator, newNode);
+            separator = split.separator();
+            newNode = split.right();
+        }
+        IntInnerNode newRoot = newInnerNode();
+        newRoot.setChildren(root, separator, newNode);
+        root = newRoot;
+    }
+
+    @NotNull
+    public DeleteMode getDeleteMode() {
+        return deleteMode;
+    }
+
+    /**
+     * Switching back to {@link DeleteMode#REBALANCE} compacts the tree, so that no tombstones remain.
+     */
+    public void setDeleteMode(@NotNull DeleteMode deleteMode) {
+        if (deleteMode == DeleteMode.REBALANCE && tombstoneCount > 0)
+            compact();
+        this.deleteMode = deleteMode;
+    }
+
+    @Nullable
+    @Override
+    public ValueReference remove(@NotNull Integer key) {
+        int searchKey = key;
+        if (deleteMode == DeleteMode.TOMBSTONES) {
+            IntLeafNode leaf = root.findLeaf(searchKey);
+            int index = leaf.indexOf(searchKey);
+            if (index < 0 || leaf.values[index] == null)
+                return null;
+            ValueReference previousValue = leaf.values[index];
+            leaf.values[index] = null;
+            tombstoneCount++;
+            if (tombstoneCount >= keyCount * MAX_TOMBSTONE_RATIO)
+                compact();
+            return previousValue;
+        }
+
+        // the inner nodes on the path to the leaf and the index of the child taken in each of them
+        IntInnerNode[] path = new IntInnerNode[root.getHeight()];
+        int[] childIndices = new int[path.length];
+        IntBPlusTreeNode node = root;
+        for (int depth = 0; node instanceof IntInnerNode innerNode; depth++) {
+            path[depth] = innerNode;
+            childIndices[depth] = innerNode.childIndex(searchKey);
+            node = innerNode.children[childIndices[depth]];
+        }
+
+        IntLeafNode leaf = (IntLeafNode) node;
+        int index = leaf.indexOf(searchKey);
+        if (index < 0)
+            return null;
+        ValueReference previousValue = leaf.values[index];
+        leaf.removeAt(index);
+        keyCount--;
+
+        for (int depth = path.length - 1; depth >= 0 && node.isUnderfull(); depth--) {
+            rebalance(path[depth], childIndices[depth]);
+            node = path[depth];
+        }
+        if (root instanceof IntInnerNode innerRoot && innerRoot.getKeyCount() == 0)
+            root = innerRoot.children[0];
+        if (index == 0)
+            updateSeparators(searchKey);
+        return previousValue;
+    }
+
+    /**
+     * Fills the underfull child node at the given index with an entry or child node of a sibling,
+     * or merges it with a sibling if both of them only contain the minimum number of keys.
+     */
+    private void rebalance(@NotNull IntInnerNode parent, int childIndex) {
+        IntBPlusTreeNode child = parent.children[childIndex];
+        IntBPlusTreeNode left = (childIndex > 0) ? parent.children[childIndex - 1] : null;
+        IntBPlusTreeNode right = (childIndex < parent.getKeyCount()) ? parent.children[childIndex + 1] : null;
+        if (left != null && left.canLend()) {
+            parent.keys[childIndex - 1] = child.borrowFromLeft(left, parent.keys[childIndex - 1]);
+        } else if (right != null && right.canLend()) {
+            parent.keys[childIndex] = child.borrowFromRight(right, parent.keys[childIndex]);
+        } else if (left != null) {
+            left.mergeRight(parent.keys[childIndex - 1], child);
+            parent.removeChild(childIndex);
+        } else {
+            child.mergeRight(parent.keys[childIndex], right);
+            parent.removeChild(childIndex + 1);
+        }
+    }
+
+    /**
+     * The removed key might still be used as a separator, if it was the smallest key of a subtree.
+     * As the removed key still separates the subtrees correctly, the search for it leads through that separator,
+     * which is the largest key smaller or equal to the removed key in its node.
+     */
+    private void updateSeparators(int removedKey) {
+        IntBPlusTreeNode node = root;
+        while (node instanceof IntInnerNode innerNode) {
+            int childIndex = innerNode.childIndex(removedKey);
+            if (childIndex > 0 && innerNode.keys[childIndex - 1] == removedKey)
+                innerNode.keys[childIndex - 1] = innerNode.children[childIndex].getSmallestKey();
+            node = innerNode.children[childIndex];
+        }
+    }
+
+    /**
+     * Rebuilds the tree bottom-up from its remaining entries, which drops all tombstones.
+     */
+    public void compact() {
+        int[] keys = new int[getLeafKeyCount() - getTombstoneCount()];
+        ValueReference[] values = new ValueReference[keys.length];
+        int count = 0;
+        for (IntLeafNode leaf = firstLeaf(); leaf != null; leaf = leaf.nextSibling) {
+            for (int i = 0; i < leaf.size; i++) {
+                if (leaf.values[i] != null) {
+                    keys[count] = leaf.keys[i];
+                    values[count] = leaf.values[i];
+                    count++;
+                }
+            }
+        }
+        root = buildTree(keys, values, COMPACTION_FILL_FACTOR);
+        keyCount = keys.length;
+        tombstoneCount = 0;
+    }
+
+    /**
+     * @return the left-most leaf of the tree
+     */
+    @NotNull
+    protected IntLeafNode firstLeaf() {
+        return root.findLeaf(Integer.MIN_VALUE);
+    }
+
+    @Override
+    public Stream<Entry> getEntries() {
+        Spliterator<Entry> spliterator = new Spliterators.AbstractSpliterator<>(
+            Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL
+        ) {
+            private IntLeafNode leaf = firstLeaf();
+            private int index = 0;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Entry> action) {
+                while (leaf != null && (index >= leaf.size || leaf.values[index] == null)) {
+                    if (index < leaf.size) {
+                        // skips the tombstone
+                        index++;
+                    } else {
+                        leaf = leaf.nextSibling;
+                        index = 0;
+                    }
+                }
+                if (leaf == null)
+                    return false;
+                action.accept(new Entry(leaf.keys[index], leaf.values[index]));
+                index++;
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @NotNull
+    @Override
+    public Iterator<ValueReference> getRange(@NotNull Integer lowerBound, @NotNull Integer upperBound) {
+        if (lowerBound > upperBound)
+            return Collections.emptyIterator();
+        int lastKey = upperBound;
+        IntLeafNode firstLeaf = root.findLeaf(lowerBound);
+        int firstIndex = firstLeaf.indexOf(lowerBound);
+        return new Iterator<>() {
+            private IntLeafNode leaf = firstLeaf;
+            private int index = (firstIndex < 0) ? -firstIndex - 1 : firstIndex;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null) {
+                    if (index >= leaf.size) {
+                        leaf = leaf.nextSibling;
+                        index = 0;
+                    } else if (leaf.keys[index] > lastKey) {
+                        leaf = null;
+                    } else if (leaf.values[index] == null) {
+                        // skips the tombstone
+                        index++;
+                    } else {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public ValueReference next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return leaf.values[index++];
+            }
+        };
+    }
+
+    /**
+     * @return the number of keys in the leaves, including the ones of tombstones
+     */
+    protected int getLeafKeyCount() {
+        return keyCount;
+    }
+
+    /**
+     * @return the number of lazily removed entries, which are still in the leaves
+     */
+    protected int getTombstoneCount() {
+        return tombstoneCount;
+    }
+
+    @Override
+    public boolean isValid() {
+        if (root.order != order || !root.isValid(true) || root.findLeaf(Integer.MAX_VALUE).nextSibling != null)
+            return false;
+        int keys = 0;
+        int tombstones = 0;
+        for (IntLeafNode leaf = firstLeaf(); leaf != null; leaf = leaf.nextSibling) {
+            keys += leaf.size;
+            for (int i = 0; i < leaf.size; i++) {
+                if (leaf.values[i] == null)
+                    tombstones++;
+            }
+        }
+        return keys == getLeafKeyCount()
+            && tombstones == getTombstoneCount()
+            && (deleteMode == DeleteMode.TOMBSTONES || tombstones == 0);
+    }
+
+    @Override
+    public String toString() {
+        return "BPlusTree = " + getRootNode();
+    }
+}
@@ -0,0 +1,151 @@
+package de.hpi.dbs2.exercise2;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A node of an {@link IntBPlusTree}, which stores its keys unboxed in one contiguous array
+ * with an explicit number of keys, instead of the {@code Integer[]} with trailing nulls of a {@link BPlusTreeNode}.
+ */
+public sealed abstract class IntBPlusTreeNode permits IntInnerNode, IntLeafNode {
+    /**
+     * Allowed number of direct child nodes, also known as branching factor.
+     */
+    public final int order;
+    /**
+     * Keys in ascending order, of which only the first {@link #size} are set.
+     */
+    public final int[] keys;
+    /**
+     * Number of keys in this node.
+     */
+    protected int size;
+
+    protected IntBPlusTreeNode(int order, int keyCapacity) {
+        Preconditions.checkArgument(order > 2, "order must be larger than 2");
+        this.order = order;
+        this.keys = new int[keyCapacity];
+    }
+
+    /**
+     * @return the number of keys in this node
+     */
+    public int getKeyCount() {
+        return size;
+    }
+
+    /**
+     * @return the number of references (child nodes or values) in this node
+     */
+    public abstract int getNodeSize();
+
+    public boolean isFull() {
+        return size == keys.length;
+    }
+
+    /**
+     * @return the smallest number of keys in a node which is not the root
+     */
+    abstract int getMinKeyCount();
+
+    /**
+     * @return if a key can be moved into a sibling without this node becoming underfull
+     */
+    boolean canLend() {
+        return size > getMinKeyCount();
+    }
+
+    boolean isUnderfull() {
+        return size < getMinKeyCount();
+    }
+
+    /**
+     * Moves the last entry or child node of the left sibling of the same type into this node.
+     *
+     * @param separator the key separating the left sibling and this node in the parent node
+     * @return the new key separating both nodes
+     */
+    abstract int borrowFromLeft(@NotNull IntBPlusTreeNode left, int separator);
+
+    /**
+     * Moves the first entry or child node of the right sibling of the same type into this node.
+     *
+     * @param separator the key separating this node and the right sibling in the parent node
+     * @return the new key separating both nodes
+     */
+    abstract int borrowFromRight(@NotNull IntBPlusTreeNode right, int separator);
+
+    /**
+     * Moves all entries or child nodes of the right sibling of the same type into this node,
+     * which requires both nodes to fit into one.
+     *
+     * @param separator the key separating this node and the right sibling in the parent node
+     */
+    abstract void mergeRight(int separator, @NotNull IntBPlusTreeNode right);
+
+    /**
+     * @return returns the height of this node in comparison to it's left-most leaf node
+     */
+    public abstract int getHeight();
+
+    /**
+     * @return the smallest key in this subtree
+     */
+    public abstract int getSmallestKey();
+
+    /**
+     * Finds the LeafNode in which the given key could be located.
+     */
+    @NotNull
+    public abstract IntLeafNode findLeaf(int searchKey);
+
+    /**
+     * @param isRoot root nodes may contain fewer references
+     */
+    public abstract boolean isValid(boolean isRoot);
+
+    /**
+     * @return an equal subtree made of {@link BPlusTreeNode}s
+     */
+    @NotNull
+    public abstract BPlusTreeNode<?> toBPlusTreeNode();
+
+    /**
+     * Finds the first key which is larger than the search key, see {@link BPlusTreeNode#upperBound}.
+     *
+     * @return the index of that key or the number of keys, if all keys are smaller or equal
+     */
+    protected int upperBound(int searchKey) {
+        if (size <= BPlusTreeNode.LINEAR_SEARCH_MAX_KEYS) {
+            int i = 0;
+            while (i < size && keys[i] <= searchKey) {
+                i++;
+            }
+            return i;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] <= searchKey) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    protected boolean hasSortedKeys() {
+        for (int i = 1; i < size; i++) {
+            if (keys[i - 1] >= keys[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return toBPlusTreeNode().toString();
+    }
+}
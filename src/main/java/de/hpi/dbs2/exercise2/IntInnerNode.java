@@ -0,0 +1,205 @@
+package de.hpi.dbs2.exercise2;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Key {@code i} separates the child nodes {@code i} and {@code i + 1}
+ * and is the smallest key of the subtree of child {@code i + 1}.
+ */
+public sealed class IntInnerNode extends IntBPlusTreeNode permits ConcurrentIntBPlusTree.LatchedInnerNode {
+    /**
+     * Child nodes, of which only the first {@code size + 1} are set.
+     */
+    public final IntBPlusTreeNode[] children;
+
+    public IntInnerNode(int order) {
+        super(order, order - 1);
+        this.children = new IntBPlusTreeNode[order];
+    }
+
+    /**
+     * Makes this empty node a new root above two nodes.
+     */
+    void setChildren(@NotNull IntBPlusTreeNode left, int separator, @NotNull IntBPlusTreeNode right) {
+        children[0] = left;
+        children[1] = right;
+        keys[0] = separator;
+        size = 1;
+    }
+
+    /**
+     * @return a new empty node of the same type, which becomes the right sibling of a split
+     */
+    @NotNull
+    IntInnerNode newSibling() {
+        return new IntInnerNode(order);
+    }
+
+    @Override
+    public int getNodeSize() {
+        return size + 1;
+    }
+
+    @Override
+    public int getHeight() {
+        return children[0].getHeight() + 1;
+    }
+
+    @Override
+    public int getSmallestKey() {
+        return children[0].getSmallestKey();
+    }
+
+    /**
+     * @return the index of the child node in which the given search key could be located
+     */
+    public int childIndex(int searchKey) {
+        return upperBound(searchKey);
+    }
+
+    @NotNull
+    public IntBPlusTreeNode selectChild(int searchKey) {
+        return children[childIndex(searchKey)];
+    }
+
+    @NotNull
+    @Override
+    public IntLeafNode findLeaf(int searchKey) {
+        IntBPlusTreeNode node = this;
+        while (node instanceof IntInnerNode innerNode) {
+            node = innerNode.selectChild(searchKey);
+        }
+        return (IntLeafNode) node;
+    }
+
+    /**
+     * Inserts a new child node right of the child at the given index, which requires this node not to be full.
+     */
+    void insertChild(int childIndex, int separator, @NotNull IntBPlusTreeNode child) {
+        System.arraycopy(keys, childIndex, keys, childIndex + 1, size - childIndex);
+        System.arraycopy(children, childIndex + 1, children, childIndex + 2, size - childIndex);
+        keys[childIndex] = separator;
+        children[childIndex + 1] = child;
+        size++;
+    }
+
+    /**
+     * Inserts a new child node right of the child at the given index into this full node
+     * and moves the larger half of the child nodes into a new right sibling.
+     * The key separating both halves is moved up into the parent node.
+     *
+     * @return the new right sibling
+     */
+    @NotNull
+    Split splitInsert(int childIndex, int separator, @NotNull IntBPlusTreeNode child) {
+        int[] allKeys = new int[size + 1];
+        IntBPlusTreeNode[] allChildren = new IntBPlusTreeNode[size + 2];
+        System.arraycopy(keys, 0, allKeys, 0, childIndex);
+        System.arraycopy(children, 0, allChildren, 0, childIndex + 1);
+        allKeys[childIndex] = separator;
+        allChildren[childIndex + 1] = child;
+        System.arraycopy(keys, childIndex, allKeys, childIndex + 1, size - childIndex);
+        System.arraycopy(children, childIndex + 1, allChildren, childIndex + 2, size - childIndex);
+
+        int leftChildCount = (allChildren.length + 1) / 2;
+        IntInnerNode right = newSibling();
+        right.size = allKeys.length - leftChildCount;
+        System.arraycopy(allKeys, leftChildCount, right.keys, 0, right.size);
+        System.arraycopy(allChildren, leftChildCount, right.children, 0, right.size + 1);
+        size = leftChildCount - 1;
+        System.arraycopy(allKeys, 0, keys, 0, size);
+        System.arraycopy(allChildren, 0, children, 0, leftChildCount);
+        Arrays.fill(children, leftChildCount, children.length, null);
+        return new Split(allKeys[leftChildCount - 1], right);
+    }
+
+    /**
+     * A new right sibling and the key separating it from the split node.
+     */
+    record Split(int separator, @NotNull IntBPlusTreeNode right) {}
+
+    /**
+     * Removes the child node at the given index, which must not be the first one, and the key left of it.
+     */
+    void removeChild(int childIndex) {
+        System.arraycopy(keys, childIndex, keys, childIndex - 1, size - childIndex);
+        System.arraycopy(children, childIndex + 1, children, childIndex, size - childIndex);
+        children[size] = null;
+        size--;
+    }
+
+    @Override
+    int getMinKeyCount() {
+        // at least half of the child nodes
+        return (order + 1) / 2 - 1;
+    }
+
+    @Override
+    int borrowFromLeft(@NotNull IntBPlusTreeNode left, int separator) {
+        IntInnerNode leftNode = (IntInnerNode) left;
+        System.arraycopy(keys, 0, keys, 1, size);
+        System.arraycopy(children, 0, children, 1, size + 1);
+        keys[0] = separator;
+        children[0] = leftNode.children[leftNode.size];
+        size++;
+        leftNode.children[leftNode.size] = null;
+        leftNode.size--;
+        return leftNode.keys[leftNode.size];
+    }
+
+    @Override
+    int borrowFromRight(@NotNull IntBPlusTreeNode right, int separator) {
+        IntInnerNode rightNode = (IntInnerNode) right;
+        keys[size] = separator;
+        children[size + 1] = rightNode.children[0];
+        size++;
+        int newSeparator = rightNode.keys[0];
+        System.arraycopy(rightNode.keys, 1, rightNode.keys, 0, rightNode.size - 1);
+        System.arraycopy(rightNode.children, 1, rightNode.children, 0, rightNode.size);
+        rightNode.children[rightNode.size] = null;
+        rightNode.size--;
+        return newSeparator;
+    }
+
+    @Override
+    void mergeRight(int separator, @NotNull IntBPlusTreeNode right) {
+        IntInnerNode rightNode = (IntInnerNode) right;
+        keys[size] = separator;
+        System.arraycopy(rightNode.keys, 0, keys, size + 1, rightNode.size);
+        System.arraycopy(rightNode.children, 0, children, size + 1, rightNode.size + 1);
+        size += rightNode.size + 1;
+    }
+
+    @Override
+    public boolean isValid(boolean isRoot) {
+        if (keys.length != order - 1 || children.length != order)
+            return false;
+        if (size < 1 || (!isRoot && size < getMinKeyCount()))
+            return false;
+        if (!hasSortedKeys())
+            return false;
+        int height = getHeight();
+        for (int i = 0; i <= size; i++) {
+            IntBPlusTreeNode child = children[i];
+            if (child == null || child.order != order || child.getHeight() != height - 1 || !child.isValid(false))
+                return false;
+            if (i > 0 && child.getSmallestKey() != keys[i - 1])
+                return false;
+            if (i < size && child.findLeaf(Integer.MAX_VALUE).nextSibling != children[i + 1].findLeaf(Integer.MIN_VALUE))
+                return false;
+        }
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public InnerNode toBPlusTreeNode() {
+        BPlusTreeNode<?>[] nodes = new BPlusTreeNode<?>[size + 1];
+        for (int i = 0; i <= size; i++) {
+            nodes[i] = children[i].toBPlusTreeNode();
+        }
+        return new InnerNode(order, nodes);
+    }
+}
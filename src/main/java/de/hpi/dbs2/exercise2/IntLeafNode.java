@@ -0,0 +1,178 @@
+package de.hpi.dbs2.exercise2;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Key {@code i} maps to value {@code i}. The leaves of a tree are linked in ascending key order
+ * through {@link #nextSibling}, so range scans do not have to go through the inner nodes.
+ */
+public sealed class IntLeafNode extends IntBPlusTreeNode permits ConcurrentIntBPlusTree.LatchedLeafNode {
+    /**
+     * The value of each key, of which only the first {@link #size} are set.
+     * A null value marks a removed entry (tombstone) of an {@link IntBPlusTree} that deletes lazily.
+     */
+    public final ValueReference[] values;
+    public IntLeafNode nextSibling;
+
+    public IntLeafNode(int order) {
+        super(order, order - 1);
+        this.values = new ValueReference[order - 1];
+    }
+
+    /**
+     * @return a new empty leaf of the same type, which becomes the right sibling of a split
+     */
+    @NotNull
+    IntLeafNode newSibling() {
+        return new IntLeafNode(order);
+    }
+
+    @Override
+    public int getNodeSize() {
+        return size;
+    }
+
+    @Override
+    public int getHeight() {
+        return 0;
+    }
+
+    @Override
+    public int getSmallestKey() {
+        // this key requires to exist, because otherwise this leaf would be empty
+        return keys[0];
+    }
+
+    @NotNull
+    @Override
+    public IntLeafNode findLeaf(int searchKey) {
+        return this;
+    }
+
+    /**
+     * @return the index of the search key, or {@code -(insertion point) - 1} if it is not contained
+     */
+    public int indexOf(int searchKey) {
+        int index = upperBound(searchKey) - 1;
+        return (index >= 0 && keys[index] == searchKey) ? index : -(index + 1) - 1;
+    }
+
+    @Nullable
+    public ValueReference getOrNull(int searchKey) {
+        int index = indexOf(searchKey);
+        return (index < 0) ? null : values[index];
+    }
+
+    /**
+     * Inserts the entry at the given index, which requires the leaf not to be full.
+     */
+    void insertAt(int index, int key, @NotNull ValueReference value) {
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Removes the entry at the given index.
+     */
+    void removeAt(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        values[size] = null;
+    }
+
+    @Override
+    int getMinKeyCount() {
+        return order / 2;
+    }
+
+    @Override
+    int borrowFromLeft(@NotNull IntBPlusTreeNode left, int separator) {
+        IntLeafNode leftLeaf = (IntLeafNode) left;
+        int lastIndex = leftLeaf.size - 1;
+        insertAt(0, leftLeaf.keys[lastIndex], leftLeaf.values[lastIndex]);
+        leftLeaf.removeAt(lastIndex);
+        return keys[0];
+    }
+
+    @Override
+    int borrowFromRight(@NotNull IntBPlusTreeNode right, int separator) {
+        IntLeafNode rightLeaf = (IntLeafNode) right;
+        insertAt(size, rightLeaf.keys[0], rightLeaf.values[0]);
+        rightLeaf.removeAt(0);
+        return rightLeaf.keys[0];
+    }
+
+    @Override
+    void mergeRight(int separator, @NotNull IntBPlusTreeNode right) {
+        IntLeafNode rightLeaf = (IntLeafNode) right;
+        System.arraycopy(rightLeaf.keys, 0, keys, size, rightLeaf.size);
+        System.arraycopy(rightLeaf.values, 0, values, size, rightLeaf.size);
+        size += rightLeaf.size;
+        nextSibling = rightLeaf.nextSibling;
+    }
+
+    /**
+     * Inserts the entry at the given index into this full leaf and moves the larger half of the entries
+     * into a new right sibling.
+     *
+     * @return the new right sibling
+     */
+    @NotNull
+    IntLeafNode splitInsert(int index, int key, @NotNull ValueReference value) {
+        int[] allKeys = new int[size + 1];
+        ValueReference[] allValues = new ValueReference[size + 1];
+        System.arraycopy(keys, 0, allKeys, 0, index);
+        System.arraycopy(values, 0, allValues, 0, index);
+        allKeys[index] = key;
+        allValues[index] = value;
+        System.arraycopy(keys, index, allKeys, index + 1, size - index);
+        System.arraycopy(values, index, allValues, index + 1, size - index);
+
+        int leftSize = (allKeys.length + 1) / 2;
+        IntLeafNode right = newSibling();
+        right.size = allKeys.length - leftSize;
+        System.arraycopy(allKeys, leftSize, right.keys, 0, right.size);
+        System.arraycopy(allValues, leftSize, right.values, 0, right.size);
+        size = leftSize;
+        System.arraycopy(allKeys, 0, keys, 0, leftSize);
+        System.arraycopy(allValues, 0, values, 0, leftSize);
+        Arrays.fill(values, leftSize, values.length, null);
+
+        right.nextSibling = nextSibling;
+        nextSibling = right;
+        return right;
+    }
+
+    @Override
+    public boolean isValid(boolean isRoot) {
+        if (keys.length != order - 1 || values.length != order - 1)
+            return false;
+        if (!isRoot && size < getMinKeyCount())
+            return false;
+        for (int i = size; i < values.length; i++) {
+            if (values[i] != null)
+                return false;
+        }
+        return hasSortedKeys();
+    }
+
+    /**
+     * @return an equal leaf without the removed entries marked by tombstones
+     */
+    @NotNull
+    @Override
+    public LeafNode toBPlusTreeNode() {
+        return new LeafNode(order, IntStream.range(0, size)
+            .filter(i -> values[i] != null)
+            .mapToObj(i -> new AbstractBPlusTree.Entry(keys[i], values[i]))
+            .toArray(AbstractBPlusTree.Entry[]::new));
+    }
+}
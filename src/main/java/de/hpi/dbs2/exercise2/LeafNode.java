@@ -45,12 +45,8 @@ public non-sealed class LeafNode extends BPlusTreeNode<ValueReference> {
 
     @Nullable
     public ValueReference getOrNull(@NotNull Integer searchKey) {
-        for(int i = 0; i < keys.length; i++) {
-            if(searchKey.equals(keys[i])) {
-                return references[i];
-            }
-        }
-        return null;
+        int index = indexOf(searchKey);
+        return (index < 0) ? null : references[index];
     }
 
     @Override
@@ -3,6 +3,8 @@ package de.hpi.dbs2.exercise2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Iterator;
+
 public class ReadOnlyBPlusTree extends AbstractBPlusTree {
     public ReadOnlyBPlusTree(int order) {
         super(order);
@@ -12,6 +14,14 @@ public class ReadOnlyBPlusTree extends AbstractBPlusTree {
         super(rootNode);
     }
 
+    /**
+     * Builds the tree bottom-up from entries sorted by strictly ascending keys.
+     * @see AbstractBPlusTree#AbstractBPlusTree(int, Iterator, double)
+     */
+    public ReadOnlyBPlusTree(int order, @NotNull Iterator<Entry> sortedEntries, double fillFactor) {
+        super(order, sortedEntries, fillFactor);
+    }
+
     @Nullable
     @Override
     public ValueReference insert(@NotNull Integer key, @NotNull ValueReference value) {
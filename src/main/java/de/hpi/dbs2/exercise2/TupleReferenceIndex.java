@@ -0,0 +1,84 @@
+package de.hpi.dbs2.exercise2;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An index from integer keys to the references of all tuples with that key, e.g. for an index nested loop join.
+ *
+ * <p>The keys are stored in an {@link IntBPlusTree}, whose {@link ValueReference}s number the lists of
+ * tuple references, so lookups and range scans go through the tree like for any other value.
+ */
+public class TupleReferenceIndex implements Index<Integer, List<TupleReference>> {
+    @NotNull
+    private final IntBPlusTree tree;
+    /**
+     * The reference lists numbered by the values of the tree, removed lists are null.
+     */
+    private final List<List<TupleReference>> referenceLists = new ArrayList<>();
+
+    public TupleReferenceIndex(int order) {
+        this.tree = new IntBPlusTree(order);
+    }
+
+    @NotNull
+    public IntBPlusTree getTree() {
+        return tree;
+    }
+
+    @Nullable
+    @Override
+    public List<TupleReference> getOrNull(@NotNull Integer searchKey) {
+        ValueReference value = tree.getOrNull(searchKey);
+        return (value == null) ? null : referenceLists.get(value.getDummyValue());
+    }
+
+    @NotNull
+    @Override
+    public List<TupleReference> get(@NotNull Integer searchKey) {
+        List<TupleReference> references = getOrNull(searchKey);
+        if (references == null)
+            throw new NoSuchElementException();
+        return references;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<List<TupleReference>> getRange(@NotNull Integer lowerBound, @NotNull Integer upperBound) {
+        Iterator<ValueReference> values = tree.getRange(lowerBound, upperBound);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return values.hasNext();
+            }
+
+            @Override
+            public List<TupleReference> next() {
+                return referenceLists.get(values.next().getDummyValue());
+            }
+        };
+    }
+
+    @Nullable
+    @Override
+    public List<TupleReference> insert(@NotNull Integer key, @NotNull List<TupleReference> value) {
+        ValueReference reference = tree.getOrNull(key);
+        if (reference != null)
+            return referenceLists.set(reference.getDummyValue(), value);
+        tree.insert(key, new ValueReference(referenceLists.size()));
+        referenceLists.add(value);
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public List<TupleReference> remove(@NotNull Integer key) {
+        ValueReference reference = tree.remove(key);
+        return (reference == null) ? null : referenceLists.set(reference.getDummyValue(), null);
+    }
+}
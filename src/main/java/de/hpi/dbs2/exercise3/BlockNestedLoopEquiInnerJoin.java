@@ -0,0 +1,107 @@
+package de.hpi.dbs2.exercise3;
+
+import de.hpi.dbs2.dbms.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the smaller outer relation in chunks of all free blocks except the ones for the current inner block
+ * and the output block, and reads the inner relation once per chunk instead of once per outer block.
+ *
+ * <p>The outer tuples of a chunk are put into a hash table on their join column,
+ * so each inner tuple is joined by a lookup instead of comparing it with all outer tuples.
+ */
+public class BlockNestedLoopEquiInnerJoin extends InnerJoinOperation {
+
+	public BlockNestedLoopEquiInnerJoin(
+		@NotNull BlockManager blockManager, int leftColumnIndex, int rightColumnIndex
+	) {
+		super(blockManager, new JoinAttributePair.EquiJoinAttributePair(leftColumnIndex, rightColumnIndex));
+	}
+
+	@Override
+	public void join(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation,
+		@NotNull Relation outputRelation
+	) {
+		int chunkBlockCount = getBlockManager().getFreeBlocks() - 2;
+		if(chunkBlockCount < 1)
+			throw new RelationSizeExceedsCapacityException();
+
+		// use smaller relation as outer relation
+		boolean swapped = rightInputRelation.estimatedBlockCount() < leftInputRelation.estimatedBlockCount();
+		Relation outerRelation = (swapped) ? rightInputRelation : leftInputRelation;
+		Relation innerRelation = (swapped) ? leftInputRelation : rightInputRelation;
+		int outerColumnIndex = swapped
+			? getJoinAttributePair().getRightColumnIndex()
+			: getJoinAttributePair().getLeftColumnIndex();
+		int innerColumnIndex = swapped
+			? getJoinAttributePair().getLeftColumnIndex()
+			: getJoinAttributePair().getRightColumnIndex();
+
+		TupleAppender tupleAppender = new TupleAppender(outputRelation.getBlockOutput());
+		List<Block> chunk = new ArrayList<>(chunkBlockCount);
+		Map<Object, List<Tuple>> hashTable = new HashMap<>();
+		for(Block outerBlockRef : outerRelation) {
+			Block outerBlock = getBlockManager().load(outerBlockRef);
+			chunk.add(outerBlock);
+			for(Tuple outerTuple : outerBlock) {
+				hashTable.computeIfAbsent(outerTuple.get(outerColumnIndex), key -> new ArrayList<>()).add(outerTuple);
+			}
+			if(chunk.size() < chunkBlockCount)
+				continue;
+
+			joinChunk(hashTable, innerRelation, innerColumnIndex, swapped, outputRelation.getColumns(), tupleAppender);
+			chunk.forEach(block -> getBlockManager().release(block, false));
+			chunk.clear();
+			hashTable.clear();
+		}
+		if(!chunk.isEmpty()) {
+			joinChunk(hashTable, innerRelation, innerColumnIndex, swapped, outputRelation.getColumns(), tupleAppender);
+			chunk.forEach(block -> getBlockManager().release(block, false));
+		}
+		tupleAppender.close();
+	}
+
+	/**
+	 * Reads the inner relation once and joins each inner tuple with the outer tuples of the chunk.
+	 */
+	private void joinChunk(
+		@NotNull Map<Object, List<Tuple>> hashTable, @NotNull Relation innerRelation, int innerColumnIndex,
+		boolean swapped, @NotNull ColumnDefinition outputColumns, @NotNull TupleAppender tupleAppender
+	) {
+		for(Block innerBlockRef : innerRelation) {
+			Block innerBlock = getBlockManager().load(innerBlockRef);
+			for(Tuple innerTuple : innerBlock) {
+				List<Tuple> outerTuples = hashTable.get(innerTuple.get(innerColumnIndex));
+				if(outerTuples == null)
+					continue;
+				for(Tuple outerTuple : outerTuples) {
+					tupleAppender.accept(swapped
+						? constructJoinedTuple(innerTuple, outerTuple, outputColumns)
+						: constructJoinedTuple(outerTuple, innerTuple, outputColumns));
+				}
+			}
+			getBlockManager().release(innerBlock, false);
+		}
+	}
+
+	@Override
+	public int estimatedIOCost(@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation) {
+		// one block is used for the current inner block and one for the output
+		int chunkBlockCount = getBlockManager().getFreeBlocks() - 2;
+		if(chunkBlockCount < 1)
+			throw new RelationSizeExceedsCapacityException();
+
+		boolean swapped = rightInputRelation.estimatedBlockCount() < leftInputRelation.estimatedBlockCount();
+		Relation outerRelation = (swapped) ? rightInputRelation : leftInputRelation;
+		Relation innerRelation = (swapped) ? leftInputRelation : rightInputRelation;
+
+		int chunkCount = (outerRelation.estimatedBlockCount() + chunkBlockCount - 1) / chunkBlockCount;
+		return outerRelation.estimatedBlockCount() + chunkCount * innerRelation.estimatedBlockCount();
+	}
+}
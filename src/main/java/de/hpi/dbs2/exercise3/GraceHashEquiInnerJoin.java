@@ -0,0 +1,280 @@
+package de.hpi.dbs2.exercise3;
+
+import de.hpi.dbs2.dbms.*;
+import de.hpi.dbs2.dbms.utils.SpillRelation;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Partitions both relations by the hash of their join columns into buckets on disk,
+ * so that the tuples of matching buckets can be joined with a hash table of the smaller bucket in memory.
+ *
+ * <p>Buckets which are still too large for the memory are partitioned again with another hash seed.
+ * If that does not make a bucket smaller, e.g. because all its tuples have the same key,
+ * the bucket is joined with a block nested loop, which loads as many of its blocks at a time as possible.
+ */
+public class GraceHashEquiInnerJoin extends InnerJoinOperation {
+	/**
+	 * Buckets are partitioned at most this often before they are joined with a block nested loop.
+	 */
+	protected static final int MAX_PARTITION_DEPTH = 8;
+
+	public GraceHashEquiInnerJoin(
+		@NotNull BlockManager blockManager, int leftColumnIndex, int rightColumnIndex
+	) {
+		super(blockManager, new JoinAttributePair.EquiJoinAttributePair(leftColumnIndex, rightColumnIndex));
+	}
+
+	/**
+	 * Each partitioning pass reads and writes both relations, and joining the buckets reads them again.
+	 * This assumes uniformly distributed keys and ignores partially filled bucket blocks.
+	 */
+	@Override
+	public int estimatedIOCost(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation
+	) {
+		// one block is used for the output
+		int memoryBlocks = getBlockManager().getFreeBlocks() - 1;
+		if(memoryBlocks < 2)
+			throw new RelationSizeExceedsCapacityException();
+		int leftBlockCount = leftInputRelation.estimatedBlockCount();
+		int rightBlockCount = rightInputRelation.estimatedBlockCount();
+		int passes = estimatedPartitionPasses(Math.min(leftBlockCount, rightBlockCount), memoryBlocks);
+		return (2 * passes + 1) * (leftBlockCount + rightBlockCount);
+	}
+
+	/**
+	 * @return the number of partitioning passes until the buckets of the build relation fit into memory
+	 * next to one probe block
+	 */
+	protected static int estimatedPartitionPasses(int buildBlockCount, int memoryBlocks) {
+		int bucketCount = memoryBlocks - 1;
+		int passes = 0;
+		int bucketBlockCount = buildBlockCount;
+		while(bucketBlockCount > memoryBlocks - 1 && bucketCount > 1 && passes < MAX_PARTITION_DEPTH) {
+			bucketBlockCount = (bucketBlockCount + bucketCount - 1) / bucketCount;
+			passes++;
+		}
+		return passes;
+	}
+
+	@Override
+	public void join(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation,
+		@NotNull Relation outputRelation
+	) {
+		if(getBlockManager().getFreeBlocks() < 3)
+			throw new RelationSizeExceedsCapacityException();
+		TupleAppender tupleAppender = new TupleAppender(outputRelation.getBlockOutput());
+		JoinSide left = new JoinSide(leftInputRelation, getJoinAttributePair().getLeftColumnIndex(), true);
+		JoinSide right = new JoinSide(rightInputRelation, getJoinAttributePair().getRightColumnIndex(), false);
+		join(left, right, outputRelation.getColumns(), tupleAppender, 0);
+		tupleAppender.close();
+	}
+
+	/**
+	 * Joins both sides in memory if the smaller one fits, and partitions them otherwise.
+	 */
+	protected void join(
+		@NotNull JoinSide a, @NotNull JoinSide b,
+		@NotNull ColumnDefinition outputColumns, @NotNull Consumer<Tuple> tupleConsumer, int depth
+	) {
+		boolean buildA = a.relation.estimatedBlockCount() <= b.relation.estimatedBlockCount();
+		JoinSide build = buildA ? a : b;
+		JoinSide probe = buildA ? b : a;
+		if(build.relation.estimatedBlockCount() == 0)
+			return;
+
+		int memoryBlocks = getBlockManager().getFreeBlocks();
+		int bucketCount = memoryBlocks - 1;
+		if(build.relation.estimatedBlockCount() <= memoryBlocks - 1 || depth >= MAX_PARTITION_DEPTH || bucketCount < 2) {
+			blockNestedLoopJoin(build, probe, outputColumns, tupleConsumer);
+			return;
+		}
+
+		List<SpillRelation> buildBuckets = partition(build, bucketCount, depth);
+		List<SpillRelation> probeBuckets = partition(probe, bucketCount, depth);
+		for(int bucket = 0; bucket < bucketCount; bucket++) {
+			JoinSide buildBucket = build.withRelation(buildBuckets.get(bucket));
+			JoinSide probeBucket = probe.withRelation(probeBuckets.get(bucket));
+			if(buildBucket.relation.estimatedBlockCount() >= build.relation.estimatedBlockCount()) {
+				// partitioning did not split the bucket, so most of its tuples have the same key
+				blockNestedLoopJoin(buildBucket, probeBucket, outputColumns, tupleConsumer);
+			} else {
+				join(buildBucket, probeBucket, outputColumns, tupleConsumer, depth + 1);
+			}
+		}
+	}
+
+	/**
+	 * Writes the tuples of the side into buckets by the hash of their join column.
+	 * One block is loaded for the input and one block for each bucket.
+	 *
+	 * @param seed selects the hash function, so a bucket can be split by partitioning it again
+	 */
+	@NotNull
+	protected List<SpillRelation> partition(@NotNull JoinSide side, int bucketCount, int seed) {
+		BucketWriter bucketWriter = new BucketWriter(side.relation.getColumns(), bucketCount);
+		for(Block blockRef : side.relation) {
+			Block block = getBlockManager().load(blockRef);
+			for(Tuple tuple : block) {
+				bucketWriter.append(bucketOf(tuple.get(side.columnIndex), seed, bucketCount), tuple);
+			}
+			block.close();
+		}
+		bucketWriter.close();
+		return bucketWriter.getBuckets();
+	}
+
+	/**
+	 * Loads as many build blocks as fit next to one probe block, builds a hash table on their join column
+	 * and probes it with all probe tuples. This is repeated until all build blocks have been loaded,
+	 * so the probe side is read once if the build side fits into memory.
+	 */
+	protected void blockNestedLoopJoin(
+		@NotNull JoinSide build, @NotNull JoinSide probe,
+		@NotNull ColumnDefinition outputColumns, @NotNull Consumer<Tuple> tupleConsumer
+	) {
+		if(build.relation.estimatedBlockCount() == 0 || probe.relation.estimatedBlockCount() == 0)
+			return;
+		int chunkBlockCount = getBlockManager().getFreeBlocks() - 1;
+		List<Block> chunk = new ArrayList<>(chunkBlockCount);
+		Map<Object, List<Tuple>> hashTable = new HashMap<>();
+		for(Block buildBlockRef : build.relation) {
+			Block buildBlock = getBlockManager().load(buildBlockRef);
+			chunk.add(buildBlock);
+			for(Tuple tuple : buildBlock) {
+				hashTable.computeIfAbsent(tuple.get(build.columnIndex), key -> new ArrayList<>()).add(tuple);
+			}
+			if(chunk.size() == chunkBlockCount) {
+				probe(hashTable, build, probe, outputColumns, tupleConsumer);
+				chunk.forEach(Block::close);
+				chunk.clear();
+				hashTable.clear();
+			}
+		}
+		if(!chunk.isEmpty()) {
+			probe(hashTable, build, probe, outputColumns, tupleConsumer);
+			chunk.forEach(Block::close);
+		}
+	}
+
+	/**
+	 * Joins all probe tuples with the matching build tuples in the hash table.
+	 */
+	protected void probe(
+		@NotNull Map<Object, List<Tuple>> hashTable, @NotNull JoinSide build, @NotNull JoinSide probe,
+		@NotNull ColumnDefinition outputColumns, @NotNull Consumer<Tuple> tupleConsumer
+	) {
+		for(Block probeBlockRef : probe.relation) {
+			Block probeBlock = getBlockManager().load(probeBlockRef);
+			for(Tuple probeTuple : probeBlock) {
+				joinMatches(hashTable.get(probeTuple.get(probe.columnIndex)), build, probeTuple, outputColumns, tupleConsumer);
+			}
+			probeBlock.close();
+		}
+	}
+
+	/**
+	 * Joins the probe tuple with each of the build tuples, which may be null if there are none.
+	 */
+	protected void joinMatches(
+		List<Tuple> buildTuples, @NotNull JoinSide build, @NotNull Tuple probeTuple,
+		@NotNull ColumnDefinition outputColumns, @NotNull Consumer<Tuple> tupleConsumer
+	) {
+		if(buildTuples == null)
+			return;
+		for(Tuple buildTuple : buildTuples) {
+			tupleConsumer.accept(build.isLeft
+				? constructJoinedTuple(buildTuple, probeTuple, outputColumns)
+				: constructJoinedTuple(probeTuple, buildTuple, outputColumns));
+		}
+	}
+
+	/**
+	 * Mixes the hash code of the key with the seed, so each seed distributes the keys differently.
+	 */
+	protected static int bucketOf(Object key, int seed, int bucketCount) {
+		int hash = (key == null ? 0 : key.hashCode()) ^ (seed * 0x9E3779B9);
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash, bucketCount);
+	}
+
+	/**
+	 * Appends tuples to one block per bucket, which is written to the bucket once it is full.
+	 */
+	protected class BucketWriter implements AutoCloseable {
+		private final ColumnDefinition columns;
+		private final List<SpillRelation> buckets;
+		private final Block[] bucketBlocks;
+
+		public BucketWriter(@NotNull ColumnDefinition columns, int bucketCount) {
+			this.columns = columns;
+			this.buckets = new ArrayList<>(bucketCount);
+			for(int bucket = 0; bucket < bucketCount; bucket++) {
+				buckets.add(new SpillRelation(getBlockManager(), columns));
+			}
+			this.bucketBlocks = new Block[bucketCount];
+		}
+
+		public void append(int bucket, @NotNull Tuple tuple) {
+			if(bucketBlocks[bucket] == null)
+				bucketBlocks[bucket] = getBlockManager().allocate(true, columns);
+			bucketBlocks[bucket].append(tuple);
+			if(bucketBlocks[bucket].isFull()) {
+				buckets.get(bucket).getBlockOutput().move(bucketBlocks[bucket]);
+				bucketBlocks[bucket] = null;
+			}
+		}
+
+		/**
+		 * Writes the partially filled blocks to their buckets.
+		 */
+		@Override
+		public void close() {
+			for(int bucket = 0; bucket < bucketBlocks.length; bucket++) {
+				if(bucketBlocks[bucket] != null)
+					buckets.get(bucket).getBlockOutput().move(bucketBlocks[bucket]);
+				bucketBlocks[bucket] = null;
+			}
+		}
+
+		@NotNull
+		public List<SpillRelation> getBuckets() {
+			return buckets;
+		}
+	}
+
+	/**
+	 * A relation or bucket of one side of the join with the index of its join column.
+	 */
+	protected static class JoinSide {
+		@NotNull
+		final Relation relation;
+		final int columnIndex;
+		/**
+		 * true if the tuples are the left part of the joined tuples
+		 */
+		final boolean isLeft;
+
+		JoinSide(@NotNull Relation relation, int columnIndex, boolean isLeft) {
+			this.relation = relation;
+			this.columnIndex = columnIndex;
+			this.isLeft = isLeft;
+		}
+
+		@NotNull
+		JoinSide withRelation(@NotNull Relation relation) {
+			return new JoinSide(relation, columnIndex, isLeft);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package de.hpi.dbs2.exercise3;
+
+import de.hpi.dbs2.dbms.*;
+import de.hpi.dbs2.dbms.utils.SpillRelation;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Partitions both relations like a {@link GraceHashEquiInnerJoin}, but keeps the tuples of one bucket
+ * of the build relation in memory as a hash table instead of writing them to disk.
+ * Probe tuples of that bucket are joined while the probe relation is partitioned, so neither side
+ * of the resident bucket is written or read again.
+ *
+ * <p>Only as many buckets are written to disk as are needed for each of them to fit into memory later,
+ * all other blocks hold the resident bucket. The share of the hash values which belongs to the resident bucket
+ * matches its share of the build blocks. If the resident bucket still overflows, the remaining build tuples
+ * with the same hash values are written to the other buckets together with the matching probe tuples.
+ */
+public class HybridHashEquiInnerJoin extends GraceHashEquiInnerJoin {
+	/**
+	 * Hash values per build block, which sets how precisely the resident bucket is split from the others.
+	 */
+	private static final int HASH_VALUES_PER_BLOCK = 256;
+
+	public HybridHashEquiInnerJoin(
+		@NotNull BlockManager blockManager, int leftColumnIndex, int rightColumnIndex
+	) {
+		super(blockManager, leftColumnIndex, rightColumnIndex);
+	}
+
+	/**
+	 * Both relations are read once, and the blocks which do not belong to the resident bucket
+	 * are written and joined again like the relations, so the cost of each bucket is estimated recursively.
+	 * Levels without memory for a resident bucket are partitioned like a {@link GraceHashEquiInnerJoin}.
+	 * This assumes uniformly distributed keys and ignores partially filled bucket blocks.
+	 */
+	@Override
+	public int estimatedIOCost(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation
+	) {
+		// one block is used for the output
+		int memoryBlocks = getBlockManager().getFreeBlocks() - 1;
+		if(memoryBlocks < 2)
+			throw new RelationSizeExceedsCapacityException();
+		return estimatedJoinCost(
+			leftInputRelation.estimatedBlockCount(), rightInputRelation.estimatedBlockCount(), memoryBlocks, 0
+		);
+	}
+
+	/**
+	 * Estimates the cost of {@link #join} for sides of the given sizes and recurses into the buckets on disk like it,
+	 * assuming that the tuples are spread evenly over the buckets.
+	 */
+	private static int estimatedJoinCost(int aBlockCount, int bBlockCount, int memoryBlocks, int depth) {
+		int buildBlockCount = Math.min(aBlockCount, bBlockCount);
+		int probeBlockCount = Math.max(aBlockCount, bBlockCount);
+		if(buildBlockCount == 0)
+			return 0;
+		if(buildBlockCount <= memoryBlocks - 1)
+			return buildBlockCount + probeBlockCount;
+		if(depth >= MAX_PARTITION_DEPTH || memoryBlocks - 1 < 2) {
+			// the build side is loaded in chunks next to one probe block
+			int chunkCount = (buildBlockCount + memoryBlocks - 2) / (memoryBlocks - 1);
+			return buildBlockCount + chunkCount * probeBlockCount;
+		}
+
+		int spilledBucketCount = spilledBucketCount(buildBlockCount, memoryBlocks);
+		int spilledBuildBlockCount = buildBlockCount;
+		int spilledProbeBlockCount = probeBlockCount;
+		if(spilledBucketCount < 0) {
+			// all tuples are written to the buckets of a grace hash join
+			spilledBucketCount = memoryBlocks - 1;
+		} else {
+			int residentBlockCount = memoryBlocks - 1 - spilledBucketCount;
+			spilledBuildBlockCount -= residentBlockCount;
+			spilledProbeBlockCount -= (int) ((long) probeBlockCount * residentBlockCount / buildBlockCount);
+		}
+		// read both sides and write the buckets on disk
+		int cost = buildBlockCount + probeBlockCount + spilledBuildBlockCount + spilledProbeBlockCount;
+		for(int bucket = 0; bucket < spilledBucketCount; bucket++) {
+			cost += estimatedJoinCost(
+				bucketShare(spilledBuildBlockCount, bucket, spilledBucketCount),
+				bucketShare(spilledProbeBlockCount, bucket, spilledBucketCount),
+				memoryBlocks, depth + 1
+			);
+		}
+		return cost;
+	}
+
+	/**
+	 * @return the number of blocks of the bucket if the blocks are spread evenly over all buckets
+	 */
+	private static int bucketShare(int blockCount, int bucket, int bucketCount) {
+		return blockCount / bucketCount + (bucket < blockCount % bucketCount ? 1 : 0);
+	}
+
+	/**
+	 * One block is used for the input and one block for each bucket on disk, so the buckets on disk
+	 * take memory from the resident bucket.
+	 *
+	 * @return the smallest number of buckets on disk, so that each of them fits into memory next to one
+	 * probe block, or -1 if that leaves no block for the resident bucket
+	 */
+	protected static int spilledBucketCount(int buildBlockCount, int memoryBlocks) {
+		for(int bucketCount = 1; bucketCount < memoryBlocks - 1; bucketCount++) {
+			int residentBlockCount = memoryBlocks - 1 - bucketCount;
+			if((long) bucketCount * (memoryBlocks - 1) >= buildBlockCount - residentBlockCount)
+				return bucketCount;
+		}
+		return -1;
+	}
+
+	/**
+	 * Joins both sides in memory if the smaller one fits, keeps one bucket resident if there is enough
+	 * memory for it and partitions them like a {@link GraceHashEquiInnerJoin} otherwise.
+	 */
+	@Override
+	protected void join(
+		@NotNull JoinSide a, @NotNull JoinSide b,
+		@NotNull ColumnDefinition outputColumns, @NotNull Consumer<Tuple> tupleConsumer, int depth
+	) {
+		boolean buildA = a.relation.estimatedBlockCount() <= b.relation.estimatedBlockCount();
+		JoinSide build = buildA ? a : b;
+		JoinSide probe = buildA ? b : a;
+		int buildBlockCount = build.relation.estimatedBlockCount();
+		int memoryBlocks = getBlockManager().getFreeBlocks();
+		int spilledBucketCount = spilledBucketCount(buildBlockCount, memoryBlocks);
+		if(buildBlockCount <= memoryBlocks - 1 || depth >= MAX_PARTITION_DEPTH || spilledBucketCount < 0) {
+			super.join(a, b, outputColumns, tupleConsumer, depth);
+			return;
+		}
+
+		int residentBlockCount = memoryBlocks - 1 - spilledBucketCount;
+		int hashRange = buildBlockCount * HASH_VALUES_PER_BLOCK;
+		int residentHashRange = residentBlockCount * HASH_VALUES_PER_BLOCK;
+
+		List<Block> residentBlocks = new ArrayList<>(residentBlockCount);
+		Map<Object, List<Tuple>> hashTable = new HashMap<>();
+		// the resident hash values of which some build tuples have been written to disk
+		BitSet overflowedHashes = new BitSet(residentHashRange);
+		BucketWriter buildBucketWriter = new BucketWriter(build.relation.getColumns(), spilledBucketCount);
+		for(Block blockRef : build.relation) {
+			Block block = getBlockManager().load(blockRef);
+			for(Tuple tuple : block) {
+				Object key = tuple.get(build.columnIndex);
+				int hash = bucketOf(key, depth, hashRange);
+				if(hash >= residentHashRange) {
+					buildBucketWriter.append((hash - residentHashRange) % spilledBucketCount, tuple);
+					continue;
+				}
+				Block residentBlock = residentBlocks.isEmpty() ? null : residentBlocks.get(residentBlocks.size() - 1);
+				if(residentBlock == null || residentBlock.isFull()) {
+					if(residentBlocks.size() == residentBlockCount) {
+						overflowedHashes.set(hash);
+						buildBucketWriter.append(hash % spilledBucketCount, tuple);
+						continue;
+					}
+					residentBlock = getBlockManager().allocate(true, build.relation.getColumns());
+					residentBlocks.add(residentBlock);
+				}
+				residentBlock.append(tuple);
+				hashTable.computeIfAbsent(key, k -> new ArrayList<>())
+					.add(residentBlock.get(residentBlock.getSize() - 1));
+			}
+			block.close();
+		}
+		buildBucketWriter.close();
+
+		BucketWriter probeBucketWriter = new BucketWriter(probe.relation.getColumns(), spilledBucketCount);
+		for(Block blockRef : probe.relation) {
+			Block block = getBlockManager().load(blockRef);
+			for(Tuple tuple : block) {
+				Object key = tuple.get(probe.columnIndex);
+				int hash = bucketOf(key, depth, hashRange);
+				if(hash >= residentHashRange) {
+					probeBucketWriter.append((hash - residentHashRange) % spilledBucketCount, tuple);
+					continue;
+				}
+				joinMatches(hashTable.get(key), build, tuple, outputColumns, tupleConsumer);
+				if(overflowedHashes.get(hash))
+					probeBucketWriter.append(hash % spilledBucketCount, tuple);
+			}
+			block.close();
+		}
+		probeBucketWriter.close();
+		residentBlocks.forEach(Block::close);
+		hashTable.clear();
+
+		List<SpillRelation> buildBuckets = buildBucketWriter.getBuckets();
+		List<SpillRelation> probeBuckets = probeBucketWriter.getBuckets();
+		for(int bucket = 0; bucket < spilledBucketCount; bucket++) {
+			JoinSide buildBucket = build.withRelation(buildBuckets.get(bucket));
+			JoinSide probeBucket = probe.withRelation(probeBuckets.get(bucket));
+			if(buildBucket.relation.estimatedBlockCount() >= buildBlockCount) {
+				// partitioning did not split the bucket, so most of its tuples have the same key
+				blockNestedLoopJoin(buildBucket, probeBucket, outputColumns, tupleConsumer);
+			} else {
+				join(buildBucket, probeBucket, outputColumns, tupleConsumer, depth + 1);
+			}
+		}
+	}
+}
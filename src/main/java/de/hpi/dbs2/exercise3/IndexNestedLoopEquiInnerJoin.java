@@ -0,0 +1,138 @@
+package de.hpi.dbs2.exercise3;
+
+import de.hpi.dbs2.dbms.*;
+import de.hpi.dbs2.exercise2.Index;
+import de.hpi.dbs2.exercise2.TupleReference;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Joins each tuple of the left relation with the right tuples found in an index on the right join column,
+ * instead of scanning the right relation. Only the right blocks containing matches are loaded,
+ * and the last one stays loaded, so consecutive matches in the same block are read once.
+ *
+ * <p>The index has to be built on the right relation with {@link #buildIndex} before joining,
+ * and is kept in memory beside the block manager. As indices can not contain null keys,
+ * the references to right tuples with null join values are kept in a list beside the index,
+ * so that null values match each other like in the other joins.
+ *
+ * @param <K> the type of the join column values
+ */
+public class IndexNestedLoopEquiInnerJoin<K extends Comparable<K>> extends InnerJoinOperation {
+	@NotNull
+	private final Index<K, List<TupleReference>> rightIndex;
+
+	/**
+	 * References to the right tuples with null join values, which can not be stored in the index.
+	 */
+	@NotNull
+	private final List<TupleReference> rightNullReferences = new ArrayList<>();
+	/**
+	 * Number of distinct right join values in the index, including null.
+	 */
+	private int rightKeyCount = 0;
+	/**
+	 * Number of right blocks containing each right join value, summed over all values.
+	 */
+	private long rightKeyBlockCount = 0;
+
+	/**
+	 * @param rightIndex an empty index, which maps the values of the right join column
+	 *                   to the tuples with that value once it has been built
+	 */
+	public IndexNestedLoopEquiInnerJoin(
+		@NotNull BlockManager blockManager, int leftColumnIndex, int rightColumnIndex,
+		@NotNull Index<K, List<TupleReference>> rightIndex
+	) {
+		super(blockManager, new JoinAttributePair.EquiJoinAttributePair(leftColumnIndex, rightColumnIndex));
+		this.rightIndex = rightIndex;
+	}
+
+	/**
+	 * Inserts references to all tuples of the right relation into the index, which reads the relation once.
+	 */
+	@SuppressWarnings("unchecked")
+	public void buildIndex(@NotNull Relation rightInputRelation) {
+		int columnIndex = getJoinAttributePair().getRightColumnIndex();
+		for(Block blockRef : rightInputRelation) {
+			Block block = getBlockManager().load(blockRef);
+			for(int slot = 0; slot < block.getSize(); slot++) {
+				K key = (K) block.get(slot).get(columnIndex);
+				List<TupleReference> references = (key == null) ? rightNullReferences : rightIndex.getOrNull(key);
+				if(references == null) {
+					references = new ArrayList<>();
+					rightIndex.insert(key, references);
+				}
+				if(references.isEmpty())
+					rightKeyCount++;
+				// the references of a value are added in block order
+				if(references.isEmpty() || references.get(references.size() - 1).getBlock() != blockRef)
+					rightKeyBlockCount++;
+				references.add(new TupleReference(blockRef, slot));
+			}
+			getBlockManager().release(block, false);
+		}
+	}
+
+	/**
+	 * The left relation is read once, and each left tuple loads the right blocks with its matches.
+	 * Every left tuple is assumed to find its value in the index, like foreign keys referencing the right relation,
+	 * and to load as many blocks as an average value of the index, which is known from building it.
+	 * Left tuples without matches load no blocks, so the estimate is an upper bound if their share is unknown.
+	 */
+	@Override
+	public int estimatedIOCost(@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation) {
+		if(getBlockManager().getFreeBlocks() < 3)
+			throw new RelationSizeExceedsCapacityException();
+		Iterator<Block> leftBlocks = leftInputRelation.iterator();
+		if(!leftBlocks.hasNext())
+			return 0;
+		int leftBlockCount = leftInputRelation.estimatedBlockCount();
+		if(rightKeyCount == 0)
+			return leftBlockCount;
+		long leftTupleCount = (long) leftBlockCount * leftBlocks.next().getCapacity();
+		return leftBlockCount + (int) ((leftTupleCount * rightKeyBlockCount + rightKeyCount - 1) / rightKeyCount);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void join(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation,
+		@NotNull Relation outputRelation
+	) {
+		// one block each for the left tuples, the right matches and the output
+		if(getBlockManager().getFreeBlocks() < 3)
+			throw new RelationSizeExceedsCapacityException();
+
+		TupleAppender tupleAppender = new TupleAppender(outputRelation.getBlockOutput());
+		Block rightBlockRef = null;
+		Block rightBlock = null;
+		for(Block leftBlockRef : leftInputRelation) {
+			Block leftBlock = getBlockManager().load(leftBlockRef);
+			for(Tuple leftTuple : leftBlock) {
+				K key = (K) leftTuple.get(getJoinAttributePair().getLeftColumnIndex());
+				List<TupleReference> references = (key == null) ? rightNullReferences : rightIndex.getOrNull(key);
+				if(references == null)
+					continue;
+				for(TupleReference reference : references) {
+					if(rightBlock == null || rightBlockRef != reference.getBlock()) {
+						if(rightBlock != null)
+							getBlockManager().release(rightBlock, false);
+						rightBlockRef = reference.getBlock();
+						rightBlock = getBlockManager().load(rightBlockRef);
+					}
+					tupleAppender.accept(constructJoinedTuple(
+						leftTuple, rightBlock.get(reference.getSlot()), outputRelation.getColumns()
+					));
+				}
+			}
+			getBlockManager().release(leftBlock, false);
+		}
+		if(rightBlock != null)
+			getBlockManager().release(rightBlock, false);
+		tupleAppender.close();
+	}
+}
@@ -3,8 +3,6 @@ package de.hpi.dbs2.exercise3;
 import de.hpi.dbs2.dbms.*;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.function.Consumer;
-
 public class NestedLoopEquiInnerJoin extends InnerJoinOperation {
 
 	public NestedLoopEquiInnerJoin(
@@ -26,14 +24,11 @@ public class NestedLoopEquiInnerJoin extends InnerJoinOperation {
 		TupleAppender tupleAppender = new TupleAppender(outputRelation.getBlockOutput());
 		for(Block outerBlockRef : outerRelation) {
 			Block outerBlock = getBlockManager().load(outerBlockRef);
+			// the join column of the outer block is hashed once for all inner blocks
+			OuterBlock preparedOuterBlock = new OuterBlock(outerBlock, !swapped, outputRelation.getColumns());
 			for(Block innerBlockRef : innerRelation) {
 				Block innerBlock = getBlockManager().load(innerBlockRef);
-				joinBlocks(
-					swapped ? innerBlock : outerBlock,
-					swapped ? outerBlock : innerBlock,
-					outputRelation.getColumns(),
-					tupleAppender
-				);
+				joinBlocks(preparedOuterBlock, innerBlock, tupleAppender);
 				getBlockManager().release(innerBlock, false);
 			}
 			getBlockManager().release(outerBlock, false);
@@ -41,35 +36,6 @@ public class NestedLoopEquiInnerJoin extends InnerJoinOperation {
 		tupleAppender.close();
 	}
 
-	class TupleAppender implements AutoCloseable, Consumer<Tuple> {
-
-		BlockOutput blockOutput;
-
-		TupleAppender(BlockOutput blockOutput) {
-			this.blockOutput = blockOutput;
-		}
-
-		Block outputBlock = getBlockManager().allocate(true);
-
-		@Override
-		public void accept(Tuple tuple) {
-			if(outputBlock.isFull()) {
-				blockOutput.move(outputBlock);
-				outputBlock = getBlockManager().allocate(true);
-			}
-			outputBlock.append(tuple);
-		}
-
-		@Override
-		public void close() {
-			if(!outputBlock.isEmpty()) {
-				blockOutput.move(outputBlock);
-			} else {
-				getBlockManager().release(outputBlock, false);
-			}
-		}
-	}
-
 	@Override
 	public int estimatedIOCost(@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation) {
 		boolean swapped = rightInputRelation.estimatedBlockCount() < leftInputRelation.estimatedBlockCount();
@@ -0,0 +1,287 @@
+package de.hpi.dbs2.exercise3;
+
+import de.hpi.dbs2.dbms.*;
+import de.hpi.dbs2.dbms.utils.SpillRelation;
+import de.hpi.dbs2.exercise1.MultiPassMergeSort;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Sorts both relations by their join columns with a {@link MultiPassMergeSort}, writes them to disk
+ * and merges them afterwards. Relations which are already sorted by their join column are merged directly.
+ *
+ * <p>While merging, the right blocks with tuples of one key stay loaded in all free blocks except the ones
+ * for the current left and output block, and are joined with each left tuple of that key.
+ * If they do not fit, they are read again for each left block with that key.
+ *
+ * <p>Null keys are sorted first and match each other like in {@link JoinAttributePair.EquiJoinAttributePair}.
+ */
+public class SortMergeEquiInnerJoin extends InnerJoinOperation {
+	private final boolean leftSorted;
+	private final boolean rightSorted;
+
+	public SortMergeEquiInnerJoin(
+		@NotNull BlockManager blockManager, int leftColumnIndex, int rightColumnIndex
+	) {
+		this(blockManager, leftColumnIndex, rightColumnIndex, false, false);
+	}
+
+	/**
+	 * @param leftSorted true if the left relation is already sorted by its join column
+	 * @param rightSorted true if the right relation is already sorted by its join column
+	 */
+	public SortMergeEquiInnerJoin(
+		@NotNull BlockManager blockManager, int leftColumnIndex, int rightColumnIndex,
+		boolean leftSorted, boolean rightSorted
+	) {
+		super(blockManager, new JoinAttributePair.EquiJoinAttributePair(leftColumnIndex, rightColumnIndex));
+		this.leftSorted = leftSorted;
+		this.rightSorted = rightSorted;
+	}
+
+	/**
+	 * Sorting a relation costs as much as a {@link MultiPassMergeSort} and writing the sorted relation,
+	 * merging reads both sorted relations once.
+	 * This is exact if all blocks except the last one are full and if the right tuples of each key
+	 * together with the next right tuple are spread over no more than {@code freeBlocks - 2} blocks.
+	 * As merging stops once one relation has no more tuples, the cost is lower
+	 * if the largest key of one relation is larger than all keys of the other one.
+	 */
+	@Override
+	public int estimatedIOCost(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation
+	) {
+		if(getBlockManager().getFreeBlocks() < 3)
+			throw new RelationSizeExceedsCapacityException();
+		return estimatedSortCost(leftInputRelation, getJoinAttributePair().getLeftColumnIndex(), leftSorted)
+			+ estimatedSortCost(rightInputRelation, getJoinAttributePair().getRightColumnIndex(), rightSorted)
+			+ leftInputRelation.estimatedBlockCount()
+			+ rightInputRelation.estimatedBlockCount();
+	}
+
+	private int estimatedSortCost(@NotNull Relation relation, int columnIndex, boolean sorted) {
+		if(sorted)
+			return 0;
+		return new MultiPassMergeSort(getBlockManager(), columnIndex).estimatedIOCost(relation)
+			+ relation.estimatedBlockCount();
+	}
+
+	@Override
+	public void join(
+		@NotNull Relation leftInputRelation, @NotNull Relation rightInputRelation,
+		@NotNull Relation outputRelation
+	) {
+		if(getBlockManager().getFreeBlocks() < 3)
+			throw new RelationSizeExceedsCapacityException();
+		List<Block> leftBlocks = sort(leftInputRelation, getJoinAttributePair().getLeftColumnIndex(), leftSorted);
+		List<Block> rightBlocks = sort(rightInputRelation, getJoinAttributePair().getRightColumnIndex(), rightSorted);
+
+		// all blocks except the left and the output block may hold right tuples of one key
+		int rightBlockCapacity = getBlockManager().getFreeBlocks() - 2;
+		TupleAppender tupleAppender = new TupleAppender(outputRelation.getBlockOutput());
+		Cursor leftCursor = new Cursor(leftBlocks, getJoinAttributePair().getLeftColumnIndex());
+		Cursor rightCursor = new Cursor(rightBlocks, getJoinAttributePair().getRightColumnIndex());
+		while(leftCursor.hasTuple() && rightCursor.hasTuple()) {
+			int comparison = compareValues(leftCursor.key(), rightCursor.key());
+			if(comparison < 0) {
+				leftCursor.advance();
+			} else if(comparison > 0) {
+				rightCursor.advance();
+			} else {
+				joinKey(leftCursor, rightCursor, rightBlockCapacity, outputRelation.getColumns(), tupleAppender);
+			}
+		}
+		leftCursor.close();
+		rightCursor.close();
+		tupleAppender.close();
+	}
+
+	/**
+	 * @return the block references of the relation sorted by the column
+	 */
+	private List<Block> sort(@NotNull Relation relation, int columnIndex, boolean sorted) {
+		List<Block> blocks = new ArrayList<>(relation.estimatedBlockCount());
+		if(sorted) {
+			relation.forEach(blocks::add);
+		} else {
+			SpillRelation sortedRelation = new SpillRelation(getBlockManager(), relation.getColumns());
+			new MultiPassMergeSort(getBlockManager(), columnIndex).sort(relation, sortedRelation);
+			sortedRelation.forEach(blocks::add);
+		}
+		return blocks;
+	}
+
+	/**
+	 * Joins all tuples with the key at both cursors and moves both cursors behind them.
+	 *
+	 * <p>The right blocks with tuples of the key stay loaded, as long as there are at most
+	 * {@code rightBlockCapacity} of them. Otherwise, they are read again for each left block with the key.
+	 */
+	private void joinKey(
+		@NotNull Cursor leftCursor, @NotNull Cursor rightCursor, int rightBlockCapacity,
+		@NotNull ColumnDefinition outputColumns, @NotNull Consumer<Tuple> tupleConsumer
+	) {
+		Object key = rightCursor.key();
+		int groupStartBlockIndex = rightCursor.blockIndex;
+		int groupStartSlot = rightCursor.slot;
+
+		// the blocks with right tuples of the key and the range of these tuples in them
+		List<Block> groupBlocks = new ArrayList<>();
+		List<Integer> groupStarts = new ArrayList<>();
+		List<Integer> groupEnds = new ArrayList<>();
+		List<Block> detachedBlocks = new ArrayList<>();
+		boolean fitsIntoMemory = true;
+		while(rightCursor.hasTuple() && compareValues(key, rightCursor.key()) == 0) {
+			Block block = rightCursor.block;
+			int start = rightCursor.slot;
+			int end = start;
+			while(end < block.getSize() && compareValues(key, rightCursor.key(end)) == 0) {
+				end++;
+			}
+			groupBlocks.add(block);
+			groupStarts.add(start);
+			groupEnds.add(end);
+			if(end < block.getSize()) {
+				rightCursor.slot = end;
+				break;
+			}
+			// the key might continue in the next block, which is loaded next to this one
+			if(detachedBlocks.size() + 2 > rightBlockCapacity) {
+				fitsIntoMemory = false;
+				break;
+			}
+			detachedBlocks.add(rightCursor.detach());
+		}
+
+		if(fitsIntoMemory) {
+			while(leftCursor.hasTuple() && compareValues(leftCursor.key(), key) == 0) {
+				Tuple leftTuple = leftCursor.tuple();
+				for(int i = 0; i < groupBlocks.size(); i++) {
+					Block groupBlock = groupBlocks.get(i);
+					for(int slot = groupStarts.get(i); slot < groupEnds.get(i); slot++) {
+						tupleConsumer.accept(constructJoinedTuple(leftTuple, groupBlock.get(slot), outputColumns));
+					}
+				}
+				leftCursor.advance();
+			}
+			detachedBlocks.forEach(Block::close);
+			return;
+		}
+
+		detachedBlocks.forEach(Block::close);
+		while(leftCursor.hasTuple() && compareValues(leftCursor.key(), key) == 0) {
+			// join the left tuples of the key in the current left block with all right tuples of the key
+			Block leftBlock = leftCursor.block;
+			int leftStart = leftCursor.slot;
+			int leftEnd = leftStart;
+			while(leftEnd < leftBlock.getSize() && compareValues(leftCursor.key(leftEnd), key) == 0) {
+				leftEnd++;
+			}
+			rightCursor.seek(groupStartBlockIndex, groupStartSlot);
+			while(rightCursor.hasTuple() && compareValues(key, rightCursor.key()) == 0) {
+				for(int i = leftStart; i < leftEnd; i++) {
+					tupleConsumer.accept(constructJoinedTuple(leftBlock.get(i), rightCursor.tuple(), outputColumns));
+				}
+				rightCursor.advance();
+			}
+			for(int i = leftStart; i < leftEnd; i++) {
+				leftCursor.advance();
+			}
+		}
+	}
+
+	/**
+	 * Compares keys in the order of {@link ColumnDefinition#getColumnComparator}, so null keys come first.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int compareValues(Object a, Object b) {
+		if(a == null || b == null)
+			return (a == null ? 0 : 1) - (b == null ? 0 : 1);
+		return ((Comparable<Object>) a).compareTo(b);
+	}
+
+	/**
+	 * Iterates the tuples of sorted blocks with only one of them loaded at a time.
+	 */
+	private class Cursor implements AutoCloseable {
+		private final List<Block> blockRefs;
+		private final int columnIndex;
+		private int blockIndex = -1;
+		private Block block = null;
+		private int slot = 0;
+
+		Cursor(@NotNull List<Block> blockRefs, int columnIndex) {
+			this.blockRefs = blockRefs;
+			this.columnIndex = columnIndex;
+			loadNextBlock();
+		}
+
+		boolean hasTuple() {
+			return block != null;
+		}
+
+		Tuple tuple() {
+			return block.get(slot);
+		}
+
+		Object key() {
+			return key(slot);
+		}
+
+		Object key(int tupleIndex) {
+			return block.get(tupleIndex).get(columnIndex);
+		}
+
+		void advance() {
+			slot++;
+			if(slot >= block.getSize()) {
+				block.close();
+				loadNextBlock();
+			}
+		}
+
+		/**
+		 * Hands the current block over to the caller, who has to close it, and loads the next one.
+		 */
+		Block detach() {
+			Block detachedBlock = block;
+			loadNextBlock();
+			return detachedBlock;
+		}
+
+		/**
+		 * Moves back to the given position, which only loads its block if it is not loaded yet.
+		 */
+		void seek(int blockIndex, int slot) {
+			if(block == null || this.blockIndex != blockIndex) {
+				close();
+				this.blockIndex = blockIndex;
+				block = getBlockManager().load(blockRefs.get(blockIndex));
+			}
+			this.slot = slot;
+		}
+
+		private void loadNextBlock() {
+			block = null;
+			slot = 0;
+			while(block == null && ++blockIndex < blockRefs.size()) {
+				Block loadedBlock = getBlockManager().load(blockRefs.get(blockIndex));
+				if(loadedBlock.isEmpty()) {
+					loadedBlock.close();
+				} else {
+					block = loadedBlock;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			if(block != null)
+				block.close();
+			block = null;
+		}
+	}
+}
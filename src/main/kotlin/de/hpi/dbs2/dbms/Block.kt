@@ -33,6 +33,15 @@ interface Block : AutoCloseable, Iterable<Tuple> {
      */
     operator fun get(tupleIndex: Int): Tuple
 
+    /**
+     * gets the values of one column of all tuples in this block.
+     * Blocks in [BlockFormat.COLUMNS] return their stored arrays, other blocks copy the values out of their tuples.
+     * @throws IllegalStateException if block is not loaded
+     * @throws IllegalArgumentException if a value does not match the [columnType]
+     */
+    fun getColumn(columnIndex: Int, columnType: ColumnDefinition.ColumnType): ColumnVector =
+        ColumnVector.fromTuples(toList(), columnIndex, columnType)
+
     /**
      * Remove all tuples from this block.
      * The block will be empty after this operation.
@@ -51,6 +60,13 @@ interface Block : AutoCloseable, Iterable<Tuple> {
      */
     fun insert(tupleIndex: Int, tuple: Tuple): Tuple
 
+    /**
+     * replaces the tuple at the given position and returns the new tuple
+     * @throws IndexOutOfBoundsException if the [tupleIndex] is not less than the size
+     * @throws IllegalStateException if block is not loaded
+     */
+    operator fun set(tupleIndex: Int, tuple: Tuple): Tuple
+
     /**
      * iterator for iterating over all contained tuples
      */
@@ -0,0 +1,39 @@
+package de.hpi.dbs2.dbms
+
+import de.hpi.dbs2.dbms.storage.ColumnarTupleList
+import de.hpi.dbs2.dbms.storage.CompactTupleList
+import de.hpi.dbs2.dbms.storage.RowLayout
+
+/**
+ * In-memory representation of blocks which have been allocated for a [ColumnDefinition],
+ * see [BlockManager.allocate]. Blocks allocated without columns always store [TUPLES].
+ */
+enum class BlockFormat {
+    /**
+     * Each tuple is a separate object with its values boxed in an array.
+     */
+    TUPLES {
+        override fun createTupleList(columns: ColumnDefinition, capacity: Int): MutableList<Tuple> =
+            ArrayList(capacity)
+    },
+
+    /**
+     * All tuples of a block share one byte array, see [CompactTupleList].
+     * The tuples of such blocks are read-only.
+     */
+    COMPACT_ROWS {
+        override fun createTupleList(columns: ColumnDefinition, capacity: Int): MutableList<Tuple> =
+            CompactTupleList(RowLayout(columns), capacity)
+    },
+
+    /**
+     * Each column of a block is stored in its own primitive array, see [ColumnarTupleList].
+     * [Block.getColumn] returns these arrays without copying them. The tuples of such blocks are read-only.
+     */
+    COLUMNS {
+        override fun createTupleList(columns: ColumnDefinition, capacity: Int): MutableList<Tuple> =
+            ColumnarTupleList(columns, capacity)
+    };
+
+    internal abstract fun createTupleList(columns: ColumnDefinition, capacity: Int): MutableList<Tuple>
+}
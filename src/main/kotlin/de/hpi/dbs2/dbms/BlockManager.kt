@@ -18,6 +18,13 @@ interface BlockManager {
      */
     fun allocate(inMemory: Boolean): Block
 
+    /**
+     * Allocate an empty block for tuples with the given [columns].
+     * Depending on the [BlockFormat] of the DBMS, the block may store its tuples in a more compact format.
+     * @see allocate
+     */
+    fun allocate(inMemory: Boolean, columns: ColumnDefinition): Block = allocate(inMemory)
+
     /**
      * Free a block from memory.
      * @param block The given block must be loaded in memory.
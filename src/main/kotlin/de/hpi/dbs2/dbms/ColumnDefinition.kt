@@ -1,5 +1,7 @@
 package de.hpi.dbs2.dbms
 
+private val ASSERTIONS_ENABLED = ColumnDefinition::class.java.desiredAssertionStatus()
+
 class ColumnDefinition(
     val columnTypes: List<ColumnType>
 ) {
@@ -50,12 +52,13 @@ class ColumnDefinition(
     }
 
     /**
-     * @return a reusable comparator for comparing tuples by the given [columnIndex].
+     * @return a reusable comparator for comparing tuples by the given [columnIndex],
+     * which sorts null values first.
      */
     fun getColumnComparator(columnIndex: Int): Comparator<Tuple> {
         val type = getColumnType(columnIndex)
         return compareBy { tuple ->
-            type.toComparable(tuple[columnIndex])
+            tuple[columnIndex]?.let(type.toComparable)
         }
     }
 
@@ -64,9 +67,30 @@ class ColumnDefinition(
      */
     fun createTuple(): Tuple = TypedTuple(this)
 
-    class TypedTuple(
-        val columnDefinition: ColumnDefinition
-    ) : Tuple(columnDefinition.columnCount) {
+    /**
+     * Creates a new typed tuple which uses the given [values] array without copying it.
+     * The values are only checked to conform to the column data types if assertions are enabled,
+     * so this should only be used with values taken from tuples of matching columns.
+     *
+     * @throws IllegalArgumentException if the number of values does not match the column count.
+     */
+    fun wrapValues(values: Array<Any?>): Tuple {
+        require(values.size == columnCount)
+        if (ASSERTIONS_ENABLED) {
+            values.forEachIndexed { columnIndex, value ->
+                getColumnType(columnIndex).requireCompatibility(value)
+            }
+        }
+        return TypedTuple(this, values)
+    }
+
+    class TypedTuple internal constructor(
+        val columnDefinition: ColumnDefinition,
+        values: Array<Any?>,
+    ) : Tuple(values, columnDefinition.columnCount) {
+        constructor(columnDefinition: ColumnDefinition) :
+            this(columnDefinition, arrayOfNulls(columnDefinition.columnCount))
+
         /**
          * @throws IndexOutOfBoundsException if the [columnIndex] is invalid.
          * @throws IllegalArgumentException if the value's type does not match the column type.
@@ -0,0 +1,108 @@
+package de.hpi.dbs2.dbms
+
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import java.util.BitSet
+import java.util.Objects
+
+/**
+ * The values of one column of the first [size] tuples in a block, see [Block.getColumn].
+ *
+ * INTEGER and DOUBLE columns are dense primitive arrays, so operators which only touch one column
+ * can scan them without loading or unboxing whole tuples.
+ * The arrays may be longer than [size] and must not be modified.
+ */
+sealed class ColumnVector(
+    val size: Int,
+    private val nulls: BitSet,
+) {
+    abstract val type: ColumnType
+
+    /**
+     * @throws IndexOutOfBoundsException if the [index] is invalid
+     */
+    fun isNull(index: Int): Boolean {
+        Objects.checkIndex(index, size)
+        return nulls[index]
+    }
+
+    /**
+     * @return the boxed value at the given [index]
+     * @throws IndexOutOfBoundsException if the [index] is invalid
+     */
+    abstract operator fun get(index: Int): Any?
+
+    class IntVector(
+        val values: IntArray,
+        nulls: BitSet,
+        size: Int,
+    ) : ColumnVector(size, nulls) {
+        override val type: ColumnType get() = ColumnType.INTEGER
+
+        override fun get(index: Int): Any? =
+            if (isNull(index)) null else values[index]
+    }
+
+    class DoubleVector(
+        val values: DoubleArray,
+        nulls: BitSet,
+        size: Int,
+    ) : ColumnVector(size, nulls) {
+        override val type: ColumnType get() = ColumnType.DOUBLE
+
+        override fun get(index: Int): Any? =
+            if (isNull(index)) null else values[index]
+    }
+
+    /**
+     * Stores each distinct string once in the [dictionary] and refers to it by its index in [codes].
+     * Equal codes within a vector mean equal strings.
+     */
+    class StringVector(
+        val dictionary: List<String>,
+        val codes: IntArray,
+        nulls: BitSet,
+        size: Int,
+    ) : ColumnVector(size, nulls) {
+        override val type: ColumnType get() = ColumnType.STRING
+
+        override fun get(index: Int): Any? =
+            if (isNull(index)) null else dictionary[codes[index]]
+    }
+
+    companion object {
+        /**
+         * Copies the values of the given column from the [tuples] into a new vector.
+         * @throws IllegalArgumentException if a value does not match the [type]
+         */
+        @JvmStatic
+        fun fromTuples(tuples: List<Tuple>, columnIndex: Int, type: ColumnType): ColumnVector {
+            val nulls = BitSet(tuples.size)
+            tuples.forEachIndexed { i, tuple ->
+                val value = tuple[columnIndex]
+                type.requireCompatibility(value)
+                if (value == null) nulls.set(i)
+            }
+            return when (type) {
+                ColumnType.INTEGER -> IntVector(
+                    IntArray(tuples.size) { if (nulls[it]) 0 else tuples[it].getInt(columnIndex) },
+                    nulls,
+                    tuples.size
+                )
+                ColumnType.DOUBLE -> DoubleVector(
+                    DoubleArray(tuples.size) { if (nulls[it]) 0.0 else tuples[it].getDouble(columnIndex) },
+                    nulls,
+                    tuples.size
+                )
+                ColumnType.STRING -> {
+                    val dictionary = mutableListOf<String>()
+                    val codesByString = HashMap<String, Int>()
+                    val codes = IntArray(tuples.size) {
+                        val value = tuples[it][columnIndex] as String? ?: return@IntArray 0
+                        codesByString.getOrPut(value) { dictionary.size.also { dictionary += value } }
+                    }
+                    StringVector(dictionary, codes, nulls, tuples.size)
+                }
+            }
+        }
+    }
+}
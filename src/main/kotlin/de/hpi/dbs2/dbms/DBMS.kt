@@ -1,13 +1,37 @@
 package de.hpi.dbs2.dbms
 
 import com.google.common.collect.Sets
+import de.hpi.dbs2.dbms.storage.BufferPool
+import de.hpi.dbs2.dbms.storage.ColumnarTupleList
+import de.hpi.dbs2.dbms.storage.CompactTupleList
+import de.hpi.dbs2.dbms.storage.EvictionPolicy
+import de.hpi.dbs2.dbms.storage.PageStore
+import de.hpi.dbs2.dbms.storage.PagedBlockManager
 import de.hpi.dbs2.dbms.utils.IOCostTracker
 
-class DBMS(
+class DBMS @JvmOverloads constructor(
     val totalBlocks: Int,
     val blockCapacity: Int,
+    /**
+     * Stores the tuples of blocks which are not loaded in memory.
+     * If null, disk I/O is only simulated and all blocks stay on the heap.
+     */
+    val pageStore: PageStore? = null,
+    /**
+     * If set, released blocks are cached in a [BufferPool] with this policy,
+     * so loading them again does not count as a disk read until they are evicted.
+     */
+    evictionPolicy: EvictionPolicy? = null,
+    /**
+     * In-memory representation of blocks which are allocated for a [ColumnDefinition].
+     */
+    val blockFormat: BlockFormat = BlockFormat.TUPLES,
 ) {
-    private val BLOCK_MANAGER = BlockManagerImpl()
+    val bufferPool: BufferPool? = evictionPolicy?.let(::BufferPool)
+
+    private val BLOCK_MANAGER: BlockManager =
+        if (pageStore == null) BlockManagerImpl()
+        else PagedBlockManager(this, pageStore, bufferPool)
     val blockManager: BlockManager get() = BLOCK_MANAGER
 
     /**
@@ -26,6 +50,8 @@ class DBMS(
     class IOCostTrackerImpl : IOCostTracker {
         override var inputCost: Int = 0
         override var outputCost: Int = 0
+        override var inputTime: Long = 0
+        override var outputTime: Long = 0
 
         override fun doInput() {
             inputCost++
@@ -35,6 +61,14 @@ class DBMS(
             outputCost++
         }
 
+        override fun trackInputTime(nanos: Long) {
+            inputTime += nanos
+        }
+
+        override fun trackOutputTime(nanos: Long) {
+            outputTime += nanos
+        }
+
         override fun toString(): String = "CostTracker[i=$inputCost,o=$outputCost,io=$ioCost]"
     }
 
@@ -56,9 +90,18 @@ class DBMS(
                     setActive(it)
             }
 
+        override fun allocate(inMemory: Boolean, columns: ColumnDefinition): Block =
+            BlockImpl(
+                _tuples = blockFormat.createTupleList(columns, blockCapacity)
+            ).also {
+                if (inMemory)
+                    setActive(it)
+            }
+
         override fun release(block: Block, saveToDisk: Boolean): Block? {
             check(block.isLoaded()) { "block is not loaded in memory" }
             activeMap -= block
+            bufferPool?.unpin(block)
             return if (saveToDisk) {
                 ioCostTracker.doOutput()
                 block
@@ -67,6 +110,10 @@ class DBMS(
 
         override fun load(blockReference: Block): Block {
             check(!blockReference.isLoaded()) { "block is already loaded in memory" }
+            if (bufferPool?.pin(blockReference) == true) {
+                activeMap += blockReference
+                return blockReference
+            }
             return setActive(blockReference).also {
                 ioCostTracker.doInput()
             }
@@ -79,6 +126,11 @@ class DBMS(
         private fun setActive(block: Block): Block = block.also {
             if (freeBlocks <= 0)
                 throw BlockManager.OutOfMemoryException()
+            if (bufferPool != null) {
+                // the tuples of evicted blocks stay on the heap, as disk I/O is only simulated
+                while (usedBlocks + bufferPool.size >= totalBlocks)
+                    bufferPool.evict()
+            }
             activeMap += it
         }
 
@@ -90,7 +142,11 @@ class DBMS(
         ) : Block {
             fun copy(): Block = BlockImpl(
                 capacity = this.capacity,
-                _tuples = this._tuples.toMutableList()
+                _tuples = when (val tuples = this._tuples) {
+                    is CompactTupleList -> tuples.copy()
+                    is ColumnarTupleList -> tuples.copy()
+                    else -> tuples.toMutableList()
+                }
             )
 
             override fun isLoaded(): Boolean = isActive(this)
@@ -106,6 +162,14 @@ class DBMS(
             override fun isFull(): Boolean = size >= capacity
 
             override fun get(tupleIndex: Int): Tuple = tuples[tupleIndex]
+
+            override fun getColumn(columnIndex: Int, columnType: ColumnDefinition.ColumnType): ColumnVector =
+                when (val tuples = tuples) {
+                    is ColumnarTupleList -> tuples.getColumn(columnIndex).also {
+                        require(it.type == columnType) { "column $columnIndex is not of type $columnType" }
+                    }
+                    else -> super.getColumn(columnIndex, columnType)
+                }
             override fun clear() = tuples.clear()
             override fun append(tuple: Tuple): Tuple = tuple.also {
                 check(!isFull()) { "block is full" }
@@ -117,6 +181,10 @@ class DBMS(
                 tuples.add(tupleIndex, it)
             }
 
+            override fun set(tupleIndex: Int, tuple: Tuple): Tuple = tuple.also {
+                tuples[tupleIndex] = it
+            }
+
             override fun iterator(): Iterator<Tuple> = tuples.iterator()
 
             override fun close() {
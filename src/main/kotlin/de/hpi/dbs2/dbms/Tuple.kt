@@ -1,17 +1,19 @@
 package de.hpi.dbs2.dbms
 
-import java.util.Arrays
-
 /**
  * A tuple is a data construct with [columnCount] entries comparable to an array.
  *
  * You can use [ColumnDefinition.createTuple] to create a typed tuple which checks that
  * the inserted values match their respective column data types.
+ *
+ * Subclasses which store their values elsewhere pass an empty [values] array
+ * and override [get], [set] and [iterator].
  */
-open class Tuple(
-    val columnCount: Int
+open class Tuple protected constructor(
+    private val values: Array<Any?>,
+    val columnCount: Int,
 ) : Iterable<Any?> {
-    private val values: Array<Any?> = arrayOfNulls(columnCount)
+    constructor(columnCount: Int) : this(arrayOfNulls(columnCount), columnCount)
 
     constructor(columnCount: Int, vararg values: Any?) : this(columnCount) {
         require(values.size <= columnCount)
@@ -23,9 +25,33 @@ open class Tuple(
     /**
      * @throws IndexOutOfBoundsException if the [columnIndex] is invalid
      */
-    operator fun get(columnIndex: Int): Any? =
+    open operator fun get(columnIndex: Int): Any? =
         values[columnIndex]
 
+    /**
+     * Reads an INTEGER column without boxing, if the tuple stores its values unboxed.
+     * @throws IndexOutOfBoundsException if the [columnIndex] is invalid
+     * @throws NullPointerException if the value is null
+     * @throws ClassCastException if the value is not an int
+     */
+    open fun getInt(columnIndex: Int): Int =
+        get(columnIndex) as Int
+
+    /**
+     * Reads a DOUBLE column without boxing, if the tuple stores its values unboxed.
+     * @throws IndexOutOfBoundsException if the [columnIndex] is invalid
+     * @throws NullPointerException if the value is null
+     * @throws ClassCastException if the value is not a double
+     */
+    open fun getDouble(columnIndex: Int): Double =
+        get(columnIndex) as Double
+
+    /**
+     * @throws IndexOutOfBoundsException if the [columnIndex] is invalid
+     */
+    open fun isNull(columnIndex: Int): Boolean =
+        get(columnIndex) == null
+
     /**
      * @throws IndexOutOfBoundsException if the [columnIndex] is invalid.
      */
@@ -53,20 +79,42 @@ open class Tuple(
         }
     }
 
+    /**
+     * Copies the values of all columns into the [target] array starting at [targetIndex],
+     * without checking their types.
+     * Tuples storing their values in the array of this class copy them in bulk.
+     */
+    fun copyValuesInto(target: Array<Any?>, targetIndex: Int) {
+        if (values.size == columnCount) {
+            System.arraycopy(values, 0, target, targetIndex, columnCount)
+        } else {
+            for (columnIndex in 0 until columnCount) {
+                target[targetIndex + columnIndex] = this[columnIndex]
+            }
+        }
+    }
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (other !is Tuple) return false
 
-        if (!values.contentEquals(other.values)) return false
+        if (columnCount != other.columnCount) return false
+        for (columnIndex in 0 until columnCount) {
+            if (this[columnIndex] != other[columnIndex]) return false
+        }
 
         return true
     }
 
     override fun hashCode(): Int {
-        return values.contentHashCode()
+        var result = 1
+        for (columnIndex in 0 until columnCount) {
+            result = 31 * result + (this[columnIndex]?.hashCode() ?: 0)
+        }
+        return result
     }
 
     override fun toString(): String =
-        "Tuple[${values.joinToString(separator = ", ")}]"
+        "Tuple[${joinToString(separator = ", ")}]"
 }
 
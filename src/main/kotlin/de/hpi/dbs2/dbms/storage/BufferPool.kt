@@ -0,0 +1,71 @@
+package de.hpi.dbs2.dbms.storage
+
+import com.google.common.collect.Sets
+import de.hpi.dbs2.dbms.Block
+
+/**
+ * Keeps released blocks in memory until their frame is needed for another block.
+ *
+ * A block manager with a buffer pool shares its frames between loaded (pinned) blocks and
+ * cached (unpinned) blocks. Loading a cached block again does not count as a disk read,
+ * and a cached block is only evicted, as chosen by the [EvictionPolicy], once all frames are in use.
+ * Writes are not deferred: releasing a block with saveToDisk still counts as a disk write immediately.
+ */
+class BufferPool(
+    private val evictionPolicy: EvictionPolicy,
+) {
+    private val cachedBlocks: MutableSet<Block> = Sets.newIdentityHashSet()
+
+    /**
+     * number of cached blocks
+     */
+    val size: Int get() = cachedBlocks.size
+
+    /**
+     * number of loads which could be served from the cache
+     */
+    var hits: Int = 0
+        private set
+
+    /**
+     * number of loads which had to read the block from disk
+     */
+    var misses: Int = 0
+        private set
+
+    operator fun contains(block: Block): Boolean = block in cachedBlocks
+
+    /**
+     * Removes the block from the cache because it is loaded again.
+     * @return true if the block was cached
+     */
+    fun pin(block: Block): Boolean =
+        cachedBlocks.remove(block).also { cached ->
+            if (cached) {
+                evictionPolicy.pin(block)
+                hits++
+            } else {
+                misses++
+            }
+        }
+
+    /**
+     * Caches a block which has just been released.
+     */
+    fun unpin(block: Block) {
+        check(cachedBlocks.add(block)) { "block is already cached" }
+        evictionPolicy.add(block)
+    }
+
+    /**
+     * Removes the block chosen by the eviction policy from the cache.
+     * @return the evicted block
+     */
+    fun evict(): Block =
+        evictionPolicy.selectVictim().also {
+            cachedBlocks -= it
+            evictionPolicy.remove(it)
+        }
+
+    override fun toString(): String = "BufferPool[cached=$size, hits=$hits, misses=$misses]"
+}
@@ -0,0 +1,273 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import de.hpi.dbs2.dbms.ColumnVector
+import de.hpi.dbs2.dbms.Tuple
+import java.util.BitSet
+import java.util.Objects
+
+/**
+ * Stores up to [capacity] tuples column by column (PAX layout):
+ * an int array per INTEGER column, a double array per DOUBLE column
+ * and a dictionary with an int array of codes per STRING column.
+ *
+ * [getColumn] returns a column's arrays without copying them,
+ * [get] returns a read-only tuple view of one row.
+ * Both stay valid after the list is modified, as the arrays are copied
+ * before rows which might be referenced by them are overwritten.
+ */
+class ColumnarTupleList(
+    val columns: ColumnDefinition,
+    val capacity: Int,
+) : AbstractMutableList<Tuple>(), RandomAccess {
+    private var data = ColumnData(columns, capacity)
+    private var tupleCount: Int = 0
+
+    /**
+     * true if views or vectors might read the rows of the current arrays
+     */
+    private var shared: Boolean = false
+
+    override val size: Int get() = tupleCount
+
+    override fun get(index: Int): Tuple {
+        Objects.checkIndex(index, tupleCount)
+        shared = true
+        return ColumnarTuple(data, index)
+    }
+
+    /**
+     * @return the values of the given column of all tuples in this list
+     * @throws IndexOutOfBoundsException if the [columnIndex] is invalid
+     */
+    fun getColumn(columnIndex: Int): ColumnVector {
+        Objects.checkIndex(columnIndex, columns.columnCount)
+        shared = true
+        return data.vector(columnIndex, tupleCount)
+    }
+
+    override fun add(index: Int, element: Tuple) {
+        Objects.checkIndex(index, tupleCount + 1)
+        check(tupleCount < capacity) { "list is full" }
+        requireCompatibility(element)
+        if (index < tupleCount) {
+            copyOnWrite()
+            data.move(index, index + 1, tupleCount - index)
+        }
+        data.write(index, element)
+        tupleCount++
+        modCount++
+    }
+
+    override fun removeAt(index: Int): Tuple {
+        Objects.checkIndex(index, tupleCount)
+        val removed = detachedCopy(index)
+        // a view of the removed last row would otherwise read the next appended row
+        copyOnWrite()
+        if (index < tupleCount - 1) {
+            data.move(index + 1, index, tupleCount - index - 1)
+        }
+        tupleCount--
+        modCount++
+        return removed
+    }
+
+    override fun set(index: Int, element: Tuple): Tuple {
+        Objects.checkIndex(index, tupleCount)
+        requireCompatibility(element)
+        val replaced = detachedCopy(index)
+        copyOnWrite()
+        data.write(index, element)
+        return replaced
+    }
+
+    override fun clear() {
+        if (shared) {
+            data = ColumnData(columns, capacity)
+            shared = false
+        } else {
+            data.resetDictionaries()
+        }
+        tupleCount = 0
+        modCount++
+    }
+
+    /**
+     * @return a copy of this list which does not share its arrays
+     */
+    fun copy(): ColumnarTupleList = ColumnarTupleList(columns, capacity).also {
+        it.data = data.copy()
+        it.tupleCount = tupleCount
+    }
+
+    private fun detachedCopy(index: Int): Tuple =
+        Tuple(columns.columnCount, *ColumnarTuple(data, index).toList().toTypedArray())
+
+    private fun copyOnWrite() {
+        if (shared) {
+            data = data.copy()
+            shared = false
+        }
+    }
+
+    private fun requireCompatibility(tuple: Tuple) {
+        if (tuple is ColumnarTuple && tuple.data.columns == columns)
+            return
+        require(tuple.columnCount == columns.columnCount) {
+            "tuple has ${tuple.columnCount} columns instead of ${columns.columnCount}"
+        }
+        for (columnIndex in 0 until columns.columnCount) {
+            columns.getColumnType(columnIndex).requireCompatibility(tuple[columnIndex])
+        }
+    }
+
+    /**
+     * The column arrays, of which only one per column is present depending on the column type.
+     * Dictionaries are only appended to, so copies may share them.
+     */
+    private class ColumnData private constructor(
+        val columns: ColumnDefinition,
+        val nulls: Array<BitSet>,
+        val ints: Array<IntArray?>,
+        val doubles: Array<DoubleArray?>,
+        val codes: Array<IntArray?>,
+        var dictionaries: Array<StringDictionary?>,
+    ) {
+        constructor(columns: ColumnDefinition, capacity: Int) : this(
+            columns,
+            Array(columns.columnCount) { BitSet(capacity) },
+            Array(columns.columnCount) {
+                if (columns.getColumnType(it) == ColumnType.INTEGER) IntArray(capacity) else null
+            },
+            Array(columns.columnCount) {
+                if (columns.getColumnType(it) == ColumnType.DOUBLE) DoubleArray(capacity) else null
+            },
+            Array(columns.columnCount) {
+                if (columns.getColumnType(it) == ColumnType.STRING) IntArray(capacity) else null
+            },
+            createDictionaries(columns),
+        )
+
+        fun copy(): ColumnData = ColumnData(
+            columns,
+            Array(nulls.size) { nulls[it].clone() as BitSet },
+            Array(ints.size) { ints[it]?.copyOf() },
+            Array(doubles.size) { doubles[it]?.copyOf() },
+            Array(codes.size) { codes[it]?.copyOf() },
+            dictionaries,
+        )
+
+        /**
+         * Starts new dictionaries, as vectors which have been returned earlier may still refer to the current ones.
+         */
+        fun resetDictionaries() {
+            dictionaries = createDictionaries(columns)
+        }
+
+        fun isNull(row: Int, columnIndex: Int): Boolean = nulls[columnIndex][row]
+
+        fun read(row: Int, columnIndex: Int): Any? {
+            if (isNull(row, columnIndex)) return null
+            return when (columns.getColumnType(columnIndex)) {
+                ColumnType.INTEGER -> ints[columnIndex]!![row]
+                ColumnType.DOUBLE -> doubles[columnIndex]!![row]
+                ColumnType.STRING -> dictionaries[columnIndex]!!.strings[codes[columnIndex]!![row]]
+            }
+        }
+
+        fun write(row: Int, tuple: Tuple) {
+            for (columnIndex in 0 until columns.columnCount) {
+                val isNull = tuple.isNull(columnIndex)
+                nulls[columnIndex][row] = isNull
+                if (isNull) continue
+                when (columns.getColumnType(columnIndex)) {
+                    ColumnType.INTEGER -> ints[columnIndex]!![row] = tuple.getInt(columnIndex)
+                    ColumnType.DOUBLE -> doubles[columnIndex]!![row] = tuple.getDouble(columnIndex)
+                    ColumnType.STRING -> codes[columnIndex]!![row] =
+                        dictionaries[columnIndex]!!.encode(tuple[columnIndex] as String)
+                }
+            }
+        }
+
+        /**
+         * Moves [count] rows starting at [from] to [to].
+         */
+        fun move(from: Int, to: Int, count: Int) {
+            for (columnIndex in 0 until columns.columnCount) {
+                val array: Any = ints[columnIndex] ?: doubles[columnIndex] ?: codes[columnIndex]!!
+                System.arraycopy(array, from, array, to, count)
+                val columnNulls = nulls[columnIndex]
+                val movedNulls = columnNulls[from, from + count]
+                columnNulls.clear(to, to + count)
+                movedNulls.stream().forEach { columnNulls.set(to + it) }
+            }
+        }
+
+        fun vector(columnIndex: Int, size: Int): ColumnVector = when (columns.getColumnType(columnIndex)) {
+            ColumnType.INTEGER -> ColumnVector.IntVector(ints[columnIndex]!!, nulls[columnIndex], size)
+            ColumnType.DOUBLE -> ColumnVector.DoubleVector(doubles[columnIndex]!!, nulls[columnIndex], size)
+            ColumnType.STRING -> ColumnVector.StringVector(
+                dictionaries[columnIndex]!!.strings,
+                codes[columnIndex]!!,
+                nulls[columnIndex],
+                size
+            )
+        }
+
+        companion object {
+            private fun createDictionaries(columns: ColumnDefinition): Array<StringDictionary?> =
+                Array(columns.columnCount) {
+                    if (columns.getColumnType(it) == ColumnType.STRING) StringDictionary() else null
+                }
+        }
+    }
+
+    private class StringDictionary {
+        val strings: MutableList<String> = mutableListOf()
+        private val codes: MutableMap<String, Int> = HashMap()
+
+        fun encode(value: String): Int = codes.getOrPut(value) { strings.size.also { strings += value } }
+    }
+
+    private class ColumnarTuple(
+        val data: ColumnData,
+        private val row: Int,
+    ) : Tuple(NO_VALUES, data.columns.columnCount) {
+        override fun isNull(columnIndex: Int): Boolean {
+            Objects.checkIndex(columnIndex, columnCount)
+            return data.isNull(row, columnIndex)
+        }
+
+        override fun get(columnIndex: Int): Any? {
+            Objects.checkIndex(columnIndex, columnCount)
+            return data.read(row, columnIndex)
+        }
+
+        override fun getInt(columnIndex: Int): Int {
+            requireValue(columnIndex, ColumnType.INTEGER)
+            return data.ints[columnIndex]!![row]
+        }
+
+        override fun getDouble(columnIndex: Int): Double {
+            requireValue(columnIndex, ColumnType.DOUBLE)
+            return data.doubles[columnIndex]!![row]
+        }
+
+        private fun requireValue(columnIndex: Int, type: ColumnType) {
+            if (isNull(columnIndex))
+                throw NullPointerException("column $columnIndex is null")
+            if (data.columns.getColumnType(columnIndex) != type)
+                throw ClassCastException("column $columnIndex is not of type $type")
+        }
+
+        override fun set(columnIndex: Int, value: Any?) =
+            throw UnsupportedOperationException("tuples of columnar blocks are read-only")
+
+        override fun iterator(): Iterator<Any?> = List(columnCount, ::get).iterator()
+    }
+
+    companion object {
+        private val NO_VALUES: Array<Any?> = emptyArray()
+    }
+}
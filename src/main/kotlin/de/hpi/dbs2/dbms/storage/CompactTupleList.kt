@@ -0,0 +1,293 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import de.hpi.dbs2.dbms.Tuple
+import java.nio.ByteBuffer
+import java.util.Objects
+
+/**
+ * Stores up to [capacity] tuples as fixed-width rows of a [RowLayout] in one byte array,
+ * followed by a tail which holds the UTF-8 bytes of all strings.
+ *
+ * Compared to a list of [Tuple] objects, this avoids an object, an array and a boxed value
+ * per column for each tuple. [get] returns a read-only view which reads its values from the array,
+ * so [Tuple.getInt] and [Tuple.getDouble] do not box.
+ *
+ * Views stay valid after the list is modified: the array is copied before rows which might
+ * be referenced by a view are overwritten. The strings of removed and replaced rows stay in the tail
+ * until they take up more space than the strings of the current rows, then the tail is compacted.
+ */
+class CompactTupleList(
+    val layout: RowLayout,
+    val capacity: Int,
+) : AbstractMutableList<Tuple>(), RandomAccess {
+    private val rowWidth: Int = layout.rowWidth
+    private val tailStart: Int = capacity * rowWidth
+    private var buffer: ByteBuffer = allocateBuffer(tailStart + capacity * layout.stringColumnCount * INITIAL_STRING_SIZE)
+    private var tailEnd: Int = tailStart
+    private var tupleCount: Int = 0
+
+    /**
+     * number of tail bytes which are not referenced by any row anymore
+     */
+    private var deadTailBytes: Int = 0
+
+    /**
+     * true if views might read the rows of the current buffer
+     */
+    private var shared: Boolean = false
+
+    override val size: Int get() = tupleCount
+
+    /**
+     * number of tail bytes in use, including the strings of removed and replaced rows
+     */
+    internal val tailSize: Int get() = tailEnd - tailStart
+
+    override fun get(index: Int): Tuple {
+        Objects.checkIndex(index, tupleCount)
+        shared = true
+        return CompactTuple(layout, buffer, index * rowWidth)
+    }
+
+    override fun add(index: Int, element: Tuple) {
+        Objects.checkIndex(index, tupleCount + 1)
+        check(tupleCount < capacity) { "list is full" }
+        requireCompatibility(element)
+        if (index < tupleCount) {
+            copyOnWrite()
+            val array = buffer.array()
+            val rowOffset = index * rowWidth
+            System.arraycopy(array, rowOffset, array, rowOffset + rowWidth, (tupleCount - index) * rowWidth)
+        }
+        writeRow(index * rowWidth, element)
+        tupleCount++
+        modCount++
+    }
+
+    override fun removeAt(index: Int): Tuple {
+        Objects.checkIndex(index, tupleCount)
+        val removed = detachedCopy(index)
+        deadTailBytes += stringSize(index * rowWidth)
+        // a view of the removed last row would otherwise read the next appended row
+        copyOnWrite()
+        if (index < tupleCount - 1) {
+            val array = buffer.array()
+            val rowOffset = index * rowWidth
+            System.arraycopy(array, rowOffset + rowWidth, array, rowOffset, (tupleCount - index - 1) * rowWidth)
+        }
+        tupleCount--
+        modCount++
+        compactTailIfWasted()
+        return removed
+    }
+
+    override fun set(index: Int, element: Tuple): Tuple {
+        Objects.checkIndex(index, tupleCount)
+        requireCompatibility(element)
+        val replaced = detachedCopy(index)
+        deadTailBytes += stringSize(index * rowWidth)
+        copyOnWrite()
+        writeRow(index * rowWidth, element)
+        compactTailIfWasted()
+        return replaced
+    }
+
+    override fun clear() {
+        if (shared) {
+            buffer = allocateBuffer(buffer.capacity())
+            shared = false
+        }
+        tupleCount = 0
+        tailEnd = tailStart
+        deadTailBytes = 0
+        modCount++
+    }
+
+    /**
+     * @return a copy of this list which does not share its array
+     */
+    fun copy(): CompactTupleList = CompactTupleList(layout, capacity).also {
+        it.buffer = ByteBuffer.wrap(buffer.array().copyOf())
+        it.tailEnd = tailEnd
+        it.tupleCount = tupleCount
+        it.deadTailBytes = deadTailBytes
+    }
+
+    private fun detachedCopy(index: Int): Tuple =
+        Tuple(layout.columnCount, *CompactTuple(layout, buffer, index * rowWidth).toList().toTypedArray())
+
+    private fun copyOnWrite() {
+        if (shared) {
+            buffer = ByteBuffer.wrap(buffer.array().copyOf())
+            shared = false
+        }
+    }
+
+    /**
+     * @return the number of tail bytes of the row's strings
+     */
+    private fun stringSize(rowOffset: Int): Int {
+        if (layout.stringColumnCount == 0) return 0
+        var size = 0
+        for (columnIndex in 0 until layout.columnCount) {
+            if (!buffer.hasString(rowOffset, columnIndex)) continue
+            size += buffer.getInt(rowOffset + layout.columnOffset(columnIndex) + Int.SIZE_BYTES)
+        }
+        return size
+    }
+
+    /**
+     * Copies the rows and their strings into a new array if most of the tail is dead.
+     * Views keep reading the old array, which is not modified anymore.
+     */
+    private fun compactTailIfWasted() {
+        if (deadTailBytes <= tailEnd - tailStart - deadTailBytes) return
+        val source = buffer.array()
+        val compacted = allocateBuffer(buffer.capacity())
+        System.arraycopy(source, 0, compacted.array(), 0, tupleCount * rowWidth)
+        var end = tailStart
+        for (rowOffset in 0 until tupleCount * rowWidth step rowWidth) {
+            for (columnIndex in 0 until layout.columnCount) {
+                if (!compacted.hasString(rowOffset, columnIndex)) continue
+                val position = rowOffset + layout.columnOffset(columnIndex)
+                val length = compacted.getInt(position + Int.SIZE_BYTES)
+                System.arraycopy(source, compacted.getInt(position), compacted.array(), end, length)
+                compacted.putInt(position, end)
+                end += length
+            }
+        }
+        buffer = compacted
+        tailEnd = end
+        deadTailBytes = 0
+        shared = false
+    }
+
+    private fun ByteBuffer.hasString(rowOffset: Int, columnIndex: Int): Boolean {
+        if (layout.getColumnType(columnIndex) != ColumnType.STRING) return false
+        val nullByte = get(rowOffset + layout.nullByteOffset(columnIndex)).toInt()
+        return nullByte and layout.nullBitMask(columnIndex) == 0
+    }
+
+    private fun requireCompatibility(tuple: Tuple) {
+        if (tuple is CompactTuple && tuple.layout.columns == layout.columns)
+            return
+        require(tuple.columnCount == layout.columnCount) {
+            "tuple has ${tuple.columnCount} columns instead of ${layout.columnCount}"
+        }
+        for (columnIndex in 0 until layout.columnCount) {
+            layout.getColumnType(columnIndex).requireCompatibility(tuple[columnIndex])
+        }
+    }
+
+    private fun writeRow(rowOffset: Int, tuple: Tuple) {
+        // the tail is grown before writing, as growing replaces the buffer
+        val strings = if (layout.stringColumnCount > 0) encodeStrings(tuple) else null
+        val nullBitmap = ByteArray((layout.columnCount + 7) / 8)
+        for (columnIndex in 0 until layout.columnCount) {
+            if (tuple.isNull(columnIndex)) {
+                val nullByteOffset = layout.nullByteOffset(columnIndex)
+                nullBitmap[nullByteOffset] =
+                    (nullBitmap[nullByteOffset].toInt() or layout.nullBitMask(columnIndex)).toByte()
+                continue
+            }
+            val position = rowOffset + layout.columnOffset(columnIndex)
+            when (layout.getColumnType(columnIndex)) {
+                ColumnType.INTEGER -> buffer.putInt(position, tuple.getInt(columnIndex))
+                ColumnType.DOUBLE -> buffer.putDouble(position, tuple.getDouble(columnIndex))
+                ColumnType.STRING -> {
+                    val bytes = strings!![columnIndex]!!
+                    buffer.put(tailEnd, bytes)
+                    buffer.putInt(position, tailEnd)
+                    buffer.putInt(position + Int.SIZE_BYTES, bytes.size)
+                    tailEnd += bytes.size
+                }
+            }
+        }
+        buffer.put(rowOffset, nullBitmap)
+    }
+
+    private fun encodeStrings(tuple: Tuple): Array<ByteArray?> {
+        val strings = arrayOfNulls<ByteArray>(layout.columnCount)
+        var totalSize = 0
+        for (columnIndex in 0 until layout.columnCount) {
+            if (layout.getColumnType(columnIndex) == ColumnType.STRING) {
+                val value = tuple[columnIndex] ?: continue
+                strings[columnIndex] = (value as String).toByteArray(Charsets.UTF_8).also {
+                    totalSize += it.size
+                }
+            }
+        }
+        ensureTailCapacity(totalSize)
+        return strings
+    }
+
+    private fun ensureTailCapacity(additionalBytes: Int) {
+        val requiredSize = tailEnd + additionalBytes
+        if (requiredSize > buffer.capacity()) {
+            // views keep reading the old array, which is not modified anymore
+            buffer = ByteBuffer.wrap(buffer.array().copyOf(maxOf(requiredSize, 2 * buffer.capacity())))
+            shared = false
+        }
+    }
+
+    private class CompactTuple(
+        val layout: RowLayout,
+        private val buffer: ByteBuffer,
+        private val rowOffset: Int,
+    ) : Tuple(NO_VALUES, layout.columnCount) {
+        override fun isNull(columnIndex: Int): Boolean {
+            Objects.checkIndex(columnIndex, columnCount)
+            val nullByte = buffer.get(rowOffset + layout.nullByteOffset(columnIndex)).toInt()
+            return nullByte and layout.nullBitMask(columnIndex) != 0
+        }
+
+        override fun get(columnIndex: Int): Any? {
+            if (isNull(columnIndex)) return null
+            val position = rowOffset + layout.columnOffset(columnIndex)
+            return when (layout.getColumnType(columnIndex)) {
+                ColumnType.INTEGER -> buffer.getInt(position)
+                ColumnType.DOUBLE -> buffer.getDouble(position)
+                ColumnType.STRING -> String(
+                    buffer.array(),
+                    buffer.getInt(position),
+                    buffer.getInt(position + Int.SIZE_BYTES),
+                    Charsets.UTF_8
+                )
+            }
+        }
+
+        override fun getInt(columnIndex: Int): Int {
+            requireValue(columnIndex, ColumnType.INTEGER)
+            return buffer.getInt(rowOffset + layout.columnOffset(columnIndex))
+        }
+
+        override fun getDouble(columnIndex: Int): Double {
+            requireValue(columnIndex, ColumnType.DOUBLE)
+            return buffer.getDouble(rowOffset + layout.columnOffset(columnIndex))
+        }
+
+        private fun requireValue(columnIndex: Int, type: ColumnType) {
+            if (isNull(columnIndex))
+                throw NullPointerException("column $columnIndex is null")
+            if (layout.getColumnType(columnIndex) != type)
+                throw ClassCastException("column $columnIndex is not of type $type")
+        }
+
+        override fun set(columnIndex: Int, value: Any?) =
+            throw UnsupportedOperationException("tuples of compact blocks are read-only")
+
+        override fun iterator(): Iterator<Any?> = List(columnCount, ::get).iterator()
+    }
+
+    companion object {
+        /**
+         * initially reserved tail bytes per string value
+         */
+        private const val INITIAL_STRING_SIZE = 16
+
+        private val NO_VALUES: Array<Any?> = emptyArray()
+
+        private fun allocateBuffer(size: Int): ByteBuffer = ByteBuffer.wrap(ByteArray(size))
+    }
+}
@@ -0,0 +1,124 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.Block
+import java.util.BitSet
+import java.util.IdentityHashMap
+
+/**
+ * Decides which unpinned block of a [BufferPool] is evicted when its frame is needed.
+ */
+interface EvictionPolicy {
+    /**
+     * A block has been unpinned and is now cached.
+     */
+    fun add(block: Block)
+
+    /**
+     * A cached block has been pinned again, it is added again once it is unpinned.
+     * By default, the block is removed like an evicted block.
+     */
+    fun pin(block: Block) = remove(block)
+
+    /**
+     * A cached block has been evicted.
+     */
+    fun remove(block: Block)
+
+    /**
+     * @return the cached block which should be evicted next
+     * @throws NoSuchElementException if no block is cached
+     */
+    fun selectVictim(): Block
+
+    /**
+     * Evicts the least recently unpinned block.
+     */
+    class LRU : EvictionPolicy {
+        private val blocks: MutableSet<Block> = LinkedHashSet()
+
+        override fun add(block: Block) {
+            blocks += block
+        }
+
+        override fun remove(block: Block) {
+            blocks -= block
+        }
+
+        override fun selectVictim(): Block = blocks.first()
+    }
+
+    /**
+     * Evicts the most recently unpinned block.
+     * This suits repeated sequential scans, like the inner relation of a nested loop join,
+     * for which LRU would always evict the block that is needed next.
+     */
+    class MRU : EvictionPolicy {
+        private val blocks: MutableSet<Block> = LinkedHashSet()
+
+        override fun add(block: Block) {
+            blocks += block
+        }
+
+        override fun remove(block: Block) {
+            blocks -= block
+        }
+
+        override fun selectVictim(): Block = blocks.last()
+    }
+
+    /**
+     * Approximates LRU with a reference bit per frame and a clock hand,
+     * which gives each referenced block a second chance before it is evicted.
+     *
+     * A block keeps its frame while it is pinned again, and the cache hit sets its reference bit.
+     * Newly cached blocks are not referenced, so blocks which are only read once are evicted first.
+     */
+    class Clock : EvictionPolicy {
+        private val frames: MutableList<Block?> = mutableListOf()
+        private val frameIndices: MutableMap<Block, Int> = IdentityHashMap()
+        private val freeFrames: ArrayDeque<Int> = ArrayDeque()
+        private val referenced = BitSet()
+        private val pinned = BitSet()
+        private var hand = 0
+
+        override fun add(block: Block) {
+            val pinnedFrameIndex = frameIndices[block]
+            if (pinnedFrameIndex != null) {
+                pinned.clear(pinnedFrameIndex)
+                return
+            }
+            val frameIndex = freeFrames.removeLastOrNull() ?: frames.size.also { frames += null }
+            frames[frameIndex] = block
+            frameIndices[block] = frameIndex
+        }
+
+        override fun pin(block: Block) {
+            val frameIndex = frameIndices[block] ?: return
+            pinned.set(frameIndex)
+            referenced.set(frameIndex)
+        }
+
+        override fun remove(block: Block) {
+            val frameIndex = frameIndices.remove(block) ?: return
+            frames[frameIndex] = null
+            referenced.clear(frameIndex)
+            pinned.clear(frameIndex)
+            freeFrames.addLast(frameIndex)
+        }
+
+        override fun selectVictim(): Block {
+            if (frameIndices.size == pinned.cardinality()) throw NoSuchElementException("no block is cached")
+            while (true) {
+                val frameIndex = hand
+                hand = (hand + 1) % frames.size
+                val block = frames[frameIndex] ?: continue
+                if (pinned[frameIndex]) continue
+                if (referenced[frameIndex]) {
+                    referenced.clear(frameIndex)
+                } else {
+                    return block
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.hpi.dbs2.dbms.storage
+
+import java.io.File
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * A [PageStore] which keeps its pages in a single file and accesses them with positional reads and writes.
+ * Existing contents of the given file are discarded.
+ */
+class FilePageStore @JvmOverloads constructor(
+    val file: File,
+    override val pageSize: Int = PageStore.DEFAULT_PAGE_SIZE,
+) : PageStore {
+    init {
+        require(pageSize > 0) { "page size must be positive" }
+    }
+
+    private val channel: FileChannel = FileChannel.open(
+        file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE,
+    )
+
+    override var pageCount: Int = 0
+        private set
+
+    override fun allocatePage(): Int = pageCount++
+
+    override fun read(pageId: Int, target: ByteBuffer) {
+        checkPageId(pageId)
+        val buffer = target.duplicate().clear().limit(pageSize)
+        val pagePosition = pageId.toLong() * pageSize
+        try {
+            while (buffer.hasRemaining()) {
+                // pages which have been allocated but not written yet are read as zeros
+                if (channel.read(buffer, pagePosition + buffer.position()) < 0) {
+                    while (buffer.hasRemaining()) buffer.put(0)
+                }
+            }
+        } catch (e: IOException) {
+            throw UncheckedIOException("could not read page $pageId of $file", e)
+        }
+    }
+
+    override fun write(pageId: Int, source: ByteBuffer) {
+        checkPageId(pageId)
+        val buffer = source.duplicate().clear().limit(pageSize)
+        val pagePosition = pageId.toLong() * pageSize
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, pagePosition + buffer.position())
+            }
+        } catch (e: IOException) {
+            throw UncheckedIOException("could not write page $pageId of $file", e)
+        }
+    }
+
+    private fun checkPageId(pageId: Int) {
+        require(pageId in 0 until pageCount) { "page $pageId is not allocated" }
+    }
+
+    override fun close() {
+        channel.close()
+    }
+
+    override fun toString(): String = "FilePageStore[file=$file, pages=$pageCount, pageSize=$pageSize]"
+}
@@ -0,0 +1,89 @@
+package de.hpi.dbs2.dbms.storage
+
+import java.io.File
+import java.io.IOException
+import java.io.UncheckedIOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+/**
+ * A [PageStore] which maps its file into memory in segments of [pagesPerSegment] pages.
+ * Existing contents of the given file are discarded.
+ *
+ * Instead of copying a page with [read], a [PagedBlockManager] can [pin] it and access the
+ * mapped memory (and therefore the OS page cache) directly.
+ * Mapped segments are only unmapped by the garbage collector after the store has been closed.
+ */
+class MappedPageStore @JvmOverloads constructor(
+    val file: File,
+    override val pageSize: Int = PageStore.DEFAULT_PAGE_SIZE,
+    val pagesPerSegment: Int = maxOf(1, DEFAULT_SEGMENT_SIZE / pageSize),
+) : PageStore {
+    init {
+        require(pageSize > 0) { "page size must be positive" }
+        require(pagesPerSegment > 0) { "segments must contain at least one page" }
+        require(pageSize.toLong() * pagesPerSegment <= Int.MAX_VALUE) { "segments must not exceed 2 GiB" }
+    }
+
+    private val channel: FileChannel = FileChannel.open(
+        file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE,
+    )
+
+    private val segments: MutableList<MappedByteBuffer> = mutableListOf()
+
+    override var pageCount: Int = 0
+        private set
+
+    override fun allocatePage(): Int {
+        val pageId = pageCount
+        if (pageId / pagesPerSegment >= segments.size) {
+            val segmentSize = pageSize.toLong() * pagesPerSegment
+            try {
+                // mapping beyond the end of the file grows it
+                segments += channel.map(FileChannel.MapMode.READ_WRITE, segments.size * segmentSize, segmentSize)
+            } catch (e: IOException) {
+                throw UncheckedIOException("could not map segment ${segments.size} of $file", e)
+            }
+        }
+        pageCount++
+        return pageId
+    }
+
+    /**
+     * Pins the page with the given id by returning a view on its mapped memory.
+     * Reads and writes on the returned buffer (positions 0 until [pageSize]) access the page directly.
+     * The page is unpinned by dropping the returned buffer.
+     */
+    fun pin(pageId: Int): ByteBuffer {
+        require(pageId in 0 until pageCount) { "page $pageId is not allocated" }
+        return segments[pageId / pagesPerSegment]
+            .slice((pageId % pagesPerSegment) * pageSize, pageSize)
+    }
+
+    override fun read(pageId: Int, target: ByteBuffer) {
+        target.duplicate().clear().put(pin(pageId))
+    }
+
+    override fun write(pageId: Int, source: ByteBuffer) {
+        pin(pageId).put(source.duplicate().clear().limit(pageSize))
+    }
+
+    override fun close() {
+        segments.forEach { it.force() }
+        segments.clear()
+        channel.close()
+    }
+
+    override fun toString(): String =
+        "MappedPageStore[file=$file, pages=$pageCount, pageSize=$pageSize, segments=${segments.size}]"
+
+    companion object {
+        const val DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024
+    }
+}
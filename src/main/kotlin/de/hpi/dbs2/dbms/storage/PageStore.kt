@@ -0,0 +1,42 @@
+package de.hpi.dbs2.dbms.storage
+
+import java.nio.ByteBuffer
+
+/**
+ * A store of fixed-size pages, which holds the tuples of blocks while they are not loaded in memory.
+ * Pages are identified by their index in the store.
+ */
+interface PageStore : AutoCloseable {
+    /**
+     * size of each page in bytes
+     */
+    val pageSize: Int
+
+    /**
+     * number of pages allocated in this store
+     */
+    val pageCount: Int
+
+    /**
+     * Allocates a new page at the end of the store.
+     * @return the id of the new page
+     */
+    fun allocatePage(): Int
+
+    /**
+     * Reads the page with the given id into [target] starting at its position 0.
+     * @param target a buffer with a capacity of at least [pageSize] bytes
+     */
+    fun read(pageId: Int, target: ByteBuffer)
+
+    /**
+     * Writes the first [pageSize] bytes of [source] into the page with the given id.
+     */
+    fun write(pageId: Int, source: ByteBuffer)
+
+    override fun close()
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 8192
+    }
+}
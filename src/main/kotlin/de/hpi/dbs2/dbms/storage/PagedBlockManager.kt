@@ -0,0 +1,264 @@
+package de.hpi.dbs2.dbms.storage
+
+import com.google.common.collect.Sets
+import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.BlockFormat
+import de.hpi.dbs2.dbms.BlockManager
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnVector
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import java.nio.ByteBuffer
+
+/**
+ * A [BlockManager] which stores blocks that are not loaded in memory in the pages of a [PageStore].
+ *
+ * Releasing a modified block serializes its tuples into its page and drops them from the heap,
+ * loading a block reads its page back. The I/O costs are tracked exactly like in the simulated
+ * block manager, so only [release] with saveToDisk and [load] count as disk operations.
+ * The time spent on page reads and writes is tracked additionally.
+ *
+ * With a [MappedPageStore], loading a block only pins its mapped page and tuples are decoded
+ * on access, until the block is modified for the first time. Only decoding the page on this first
+ * modification is tracked as input time, reads of the mapped page are not timed.
+ *
+ * With a [BufferPool], released blocks keep their tuples in memory until they are evicted.
+ *
+ * Modifications are detected through the block's methods,
+ * so tuples must not be modified in place while they are contained in a block.
+ */
+internal class PagedBlockManager(
+    private val dbms: DBMS,
+    private val pageStore: PageStore,
+    private val bufferPool: BufferPool?,
+) : BlockManager {
+    override val usedBlocks: Int get() = activeMap.size
+    override val freeBlocks: Int get() = dbms.totalBlocks - usedBlocks
+
+    private val pageBuffer: ByteBuffer = ByteBuffer.allocate(pageStore.pageSize)
+
+    override fun allocate(inMemory: Boolean): Block =
+        PagedBlock().also {
+            if (inMemory) {
+                setActive(it)
+                it.tuples = it.createTupleList()
+            }
+        }
+
+    override fun allocate(inMemory: Boolean, columns: ColumnDefinition): Block =
+        PagedBlock(columns = columns).also {
+            if (inMemory) {
+                setActive(it)
+                it.tuples = it.createTupleList()
+            }
+        }
+
+    override fun release(block: Block, saveToDisk: Boolean): Block? {
+        check(block.isLoaded()) { "block is not loaded in memory" }
+        block as PagedBlock
+        if (block.dirty) {
+            writePage(block)
+        }
+        activeMap -= block
+        if (bufferPool != null) {
+            bufferPool.unpin(block)
+        } else {
+            block.unload()
+        }
+        return if (saveToDisk) {
+            dbms.ioCostTracker.doOutput()
+            block
+        } else null
+    }
+
+    override fun load(blockReference: Block): Block {
+        check(!blockReference.isLoaded()) { "block is already loaded in memory" }
+        blockReference as PagedBlock
+        if (bufferPool?.pin(blockReference) == true) {
+            activeMap += blockReference
+            return blockReference
+        }
+        return setActive(blockReference).also {
+            when {
+                it.pageId == NO_PAGE -> it.tuples = it.createTupleList()
+                pageStore is MappedPageStore -> it.pinnedPage = pageStore.pin(it.pageId)
+                else -> it.tuples = readPage(it)
+            }
+            dbms.ioCostTracker.doInput()
+        }
+    }
+
+    private fun writePage(block: PagedBlock) {
+        if (block.pageId == NO_PAGE)
+            block.pageId = pageStore.allocatePage()
+        val start = System.nanoTime()
+        if (pageStore is MappedPageStore) {
+            TupleCodec.encode(block.tuples!!, pageStore.pin(block.pageId))
+        } else {
+            TupleCodec.encode(block.tuples!!, pageBuffer)
+            pageStore.write(block.pageId, pageBuffer)
+        }
+        dbms.ioCostTracker.trackOutputTime(System.nanoTime() - start)
+        block.dirty = false
+    }
+
+    private fun readPage(block: PagedBlock): MutableList<Tuple> {
+        val start = System.nanoTime()
+        pageStore.read(block.pageId, pageBuffer)
+        dbms.ioCostTracker.trackInputTime(System.nanoTime() - start)
+        return TupleCodec.decodeAll(pageBuffer).toTupleList(block)
+    }
+
+    private fun MutableList<Tuple>.toTupleList(block: PagedBlock): MutableList<Tuple> =
+        if (block.columns == null) this
+        else block.createTupleList().also { it.addAll(this) }
+
+    override fun toString(): String = "PagedBlockManager[free=${freeBlocks}/${dbms.totalBlocks}, $pageStore]"
+
+    private val activeMap: MutableSet<Block> = Sets.newIdentityHashSet()
+    private fun isActive(block: Block): Boolean = block in activeMap
+    private fun setActive(block: PagedBlock): PagedBlock = block.also {
+        if (freeBlocks <= 0)
+            throw BlockManager.OutOfMemoryException()
+        if (bufferPool != null) {
+            while (usedBlocks + bufferPool.size >= dbms.totalBlocks)
+                (bufferPool.evict() as PagedBlock).unload()
+        }
+        activeMap += it
+    }
+
+    private inner class PagedBlock(
+        override val capacity: Int = dbms.blockCapacity,
+        /**
+         * the columns the block has been allocated for, which determine its [BlockFormat]
+         */
+        val columns: ColumnDefinition? = null,
+    ) : Block {
+        /**
+         * page in which the tuples are stored while the block is not loaded
+         */
+        var pageId: Int = NO_PAGE
+
+        /**
+         * true if the tuples have been modified since the block has been loaded
+         */
+        var dirty: Boolean = false
+
+        /**
+         * the decoded tuples of this block, only present while it is loaded
+         */
+        var tuples: MutableList<Tuple>? = null
+
+        /**
+         * the mapped page of this block, only present while it is loaded and has not been modified
+         */
+        var pinnedPage: ByteBuffer? = null
+
+        /**
+         * Decodes the pinned page on the first modification of a loaded block.
+         */
+        private val modifiableTuples: MutableList<Tuple>
+            get() {
+                check(isLoaded()) { "block is not loaded in memory" }
+                val page = pinnedPage
+                if (page != null) {
+                    val start = System.nanoTime()
+                    tuples = TupleCodec.decodeAll(page).toTupleList(this)
+                    dbms.ioCostTracker.trackInputTime(System.nanoTime() - start)
+                    pinnedPage = null
+                }
+                dirty = true
+                return tuples!!
+            }
+
+        fun createTupleList(): MutableList<Tuple> =
+            columns?.let { dbms.blockFormat.createTupleList(it, capacity) } ?: mutableListOf()
+
+        /**
+         * Drops the tuples from memory, which have already been written to the page.
+         */
+        fun unload() {
+            tuples = null
+            pinnedPage = null
+        }
+
+        override fun isLoaded(): Boolean = isActive(this)
+
+        override val size: Int
+            get() {
+                check(isLoaded()) { "block is not loaded in memory" }
+                return tuples?.size ?: TupleCodec.tupleCount(pinnedPage!!)
+            }
+
+        override fun isEmpty(): Boolean = size <= 0
+        override fun isFull(): Boolean = size >= capacity
+
+        override fun get(tupleIndex: Int): Tuple {
+            check(isLoaded()) { "block is not loaded in memory" }
+            return tuples?.get(tupleIndex) ?: TupleCodec.decode(pinnedPage!!, tupleIndex)
+        }
+
+        override fun getColumn(columnIndex: Int, columnType: ColumnDefinition.ColumnType): ColumnVector {
+            check(isLoaded()) { "block is not loaded in memory" }
+            return when (val tuples = tuples) {
+                is ColumnarTupleList -> tuples.getColumn(columnIndex).also {
+                    require(it.type == columnType) { "column $columnIndex is not of type $columnType" }
+                }
+                else -> super.getColumn(columnIndex, columnType)
+            }
+        }
+
+        override fun clear() = modifiableTuples.clear()
+
+        override fun append(tuple: Tuple): Tuple = tuple.also {
+            check(!isFull()) { "block is full" }
+            modifiableTuples.add(it)
+        }
+
+        override fun insert(tupleIndex: Int, tuple: Tuple): Tuple = tuple.also {
+            check(!isFull()) { "block is full" }
+            modifiableTuples.add(tupleIndex, it)
+        }
+
+        override fun set(tupleIndex: Int, tuple: Tuple): Tuple = tuple.also {
+            modifiableTuples[tupleIndex] = it
+        }
+
+        override fun iterator(): Iterator<Tuple> {
+            check(isLoaded()) { "block is not loaded in memory" }
+            val page = pinnedPage ?: return tuples!!.iterator()
+            return (0 until TupleCodec.tupleCount(page)).asSequence()
+                .map { TupleCodec.decode(page, it) }
+                .iterator()
+        }
+
+        override fun close() {
+            release(this, false)
+        }
+
+        /**
+         * Reads the page of unloaded blocks for debugging purposes, which does not count as disk read.
+         */
+        override fun toString(): String {
+            val tuples: List<Tuple> = when {
+                isLoaded() -> toList()
+                pageId == NO_PAGE -> emptyList()
+                else -> ByteBuffer.allocate(pageStore.pageSize).let {
+                    pageStore.read(pageId, it)
+                    TupleCodec.decodeAll(it)
+                }
+            }
+            return tuples.joinToString(
+                ",",
+                prefix = "Block[loaded=${isLoaded()}]{",
+                postfix = "\n}"
+            ) {
+                "\n  $it"
+            }
+        }
+    }
+
+    companion object {
+        private const val NO_PAGE = -1
+    }
+}
@@ -0,0 +1,70 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+
+/**
+ * Fixed-width binary row format derived from a [ColumnDefinition].
+ *
+ * Row layout:
+ * - null bitmap, one bit per column
+ * - one slot per column: INTEGER as int, DOUBLE as double,
+ *   STRING as offset (int) and length (int) of its UTF-8 bytes in a variable-length tail
+ */
+class RowLayout(
+    val columns: ColumnDefinition,
+) {
+    val columnCount: Int get() = columns.columnCount
+
+    private val columnTypes: Array<ColumnType> = columns.columnTypes.toTypedArray()
+
+    private val nullBitmapSize: Int = (columnCount + 7) / 8
+
+    private val columnOffsets: IntArray = IntArray(columnCount)
+
+    /**
+     * size of a row in bytes, excluding the tail
+     */
+    val rowWidth: Int
+
+    /**
+     * number of STRING columns, which store their data in the tail
+     */
+    val stringColumnCount: Int = columnTypes.count { it == ColumnType.STRING }
+
+    init {
+        var offset = nullBitmapSize
+        columnTypes.forEachIndexed { columnIndex, type ->
+            columnOffsets[columnIndex] = offset
+            offset += slotSize(type)
+        }
+        rowWidth = offset
+    }
+
+    fun getColumnType(columnIndex: Int): ColumnType = columnTypes[columnIndex]
+
+    /**
+     * @return the position of the column's slot relative to the start of its row
+     */
+    fun columnOffset(columnIndex: Int): Int = columnOffsets[columnIndex]
+
+    /**
+     * @return the position of the byte in the null bitmap which holds the column's bit
+     */
+    fun nullByteOffset(columnIndex: Int): Int = columnIndex ushr 3
+
+    /**
+     * @return the mask of the column's bit in its null bitmap byte
+     */
+    fun nullBitMask(columnIndex: Int): Int = 1 shl (columnIndex and 7)
+
+    override fun toString(): String = "RowLayout[width=$rowWidth, $columns]"
+
+    companion object {
+        private fun slotSize(type: ColumnType): Int = when (type) {
+            ColumnType.INTEGER -> Int.SIZE_BYTES
+            ColumnType.DOUBLE -> Double.SIZE_BYTES
+            ColumnType.STRING -> 2 * Int.SIZE_BYTES
+        }
+    }
+}
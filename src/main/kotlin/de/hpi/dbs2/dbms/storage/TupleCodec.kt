@@ -0,0 +1,114 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.Tuple
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+
+/**
+ * Serializes the tuples of a block into a slotted page and back.
+ *
+ * Page layout:
+ * - tuple count (int)
+ * - one offset (int) per tuple, pointing to its data relative to the start of the page
+ * - tuple data: column count (int) followed by each value as a type tag (byte) and its payload
+ *
+ * The slot offsets allow decoding a single tuple without deserializing the whole page.
+ */
+object TupleCodec {
+    private const val TAG_NULL: Byte = 0
+    private const val TAG_INTEGER: Byte = 1
+    private const val TAG_DOUBLE: Byte = 2
+    private const val TAG_STRING: Byte = 3
+
+    /**
+     * Writes the given tuples into [page] starting at position 0.
+     * @throws IllegalStateException if the tuples do not fit into the page
+     */
+    fun encode(tuples: Collection<Tuple>, page: ByteBuffer) {
+        val buffer = page.duplicate().clear().limit(page.limit())
+        check(Int.SIZE_BYTES * (tuples.size + 1) <= buffer.limit()) {
+            "tuples do not fit into a page of ${page.limit()} bytes"
+        }
+        try {
+            buffer.putInt(tuples.size)
+            var slotPosition = buffer.position()
+            buffer.position(slotPosition + tuples.size * Int.SIZE_BYTES)
+            tuples.forEach { tuple ->
+                buffer.putInt(slotPosition, buffer.position())
+                slotPosition += Int.SIZE_BYTES
+                encodeTuple(tuple, buffer)
+            }
+        } catch (e: BufferOverflowException) {
+            throw IllegalStateException("tuples do not fit into a page of ${page.limit()} bytes", e)
+        }
+    }
+
+    private fun encodeTuple(tuple: Tuple, buffer: ByteBuffer) {
+        buffer.putInt(tuple.columnCount)
+        tuple.forEach { value ->
+            when (value) {
+                null -> buffer.put(TAG_NULL)
+                is Int -> buffer.put(TAG_INTEGER).putInt(value)
+                is Double -> buffer.put(TAG_DOUBLE).putDouble(value)
+                is String -> {
+                    val bytes = value.toByteArray(Charsets.UTF_8)
+                    buffer.put(TAG_STRING).putInt(bytes.size).put(bytes)
+                }
+                else -> throw IllegalArgumentException(
+                    "values of type \"${value.javaClass.simpleName}\" can not be stored in a page"
+                )
+            }
+        }
+    }
+
+    /**
+     * @return the number of tuples stored in the given page
+     */
+    fun tupleCount(page: ByteBuffer): Int = page.getInt(0)
+
+    /**
+     * Decodes the tuple at the given slot of the page.
+     */
+    fun decode(page: ByteBuffer, tupleIndex: Int): Tuple {
+        val tupleCount = tupleCount(page)
+        if (tupleIndex !in 0 until tupleCount)
+            throw IndexOutOfBoundsException("tuple index $tupleIndex out of bounds for length $tupleCount")
+        var position = page.getInt(Int.SIZE_BYTES * (tupleIndex + 1))
+        val columnCount = page.getInt(position)
+        position += Int.SIZE_BYTES
+        val tuple = Tuple(columnCount)
+        for (columnIndex in 0 until columnCount) {
+            val tag = page.get(position)
+            position += 1
+            when (tag) {
+                TAG_NULL -> {}
+                TAG_INTEGER -> {
+                    tuple[columnIndex] = page.getInt(position)
+                    position += Int.SIZE_BYTES
+                }
+                TAG_DOUBLE -> {
+                    tuple[columnIndex] = page.getDouble(position)
+                    position += Double.SIZE_BYTES
+                }
+                TAG_STRING -> {
+                    val length = page.getInt(position)
+                    position += Int.SIZE_BYTES
+                    val bytes = ByteArray(length)
+                    page.get(position, bytes)
+                    position += length
+                    tuple[columnIndex] = String(bytes, Charsets.UTF_8)
+                }
+                else -> throw IllegalStateException("page is corrupted: unknown type tag $tag")
+            }
+        }
+        return tuple
+    }
+
+    /**
+     * Decodes all tuples of the given page.
+     */
+    fun decodeAll(page: ByteBuffer): MutableList<Tuple> {
+        val tupleCount = tupleCount(page)
+        return MutableList(tupleCount) { decode(page, it) }
+    }
+}
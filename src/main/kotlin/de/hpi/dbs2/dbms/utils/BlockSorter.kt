@@ -1,28 +1,206 @@
 package de.hpi.dbs2.dbms.utils
 
 import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnVector
 import de.hpi.dbs2.dbms.Tuple
 
 /**
 - sort all tuples in given blocks by column index
+ *
+ * The tuples are sorted in-place across the given loaded blocks: the positions (block, slot) are
+ * numbered consecutively, an array of these positions is sorted by the tuples at them,
+ * and the tuples are then [Block.set] in sorted order. Each block keeps its size,
+ * so the blocks may be filled differently.
+ *
+ * Apart from a few arrays for all positions, no objects are allocated per tuple
+ * for blocks in [de.hpi.dbs2.dbms.BlockFormat.TUPLES]. Both sorts are stable.
  */
 object BlockSorter {
     /**
-     * sorts the given blocks' tuples "in-place" by the given column index
+     * Runs shorter than this are sorted by insertion before they are merged.
      */
+    private const val INSERTION_SORT_LENGTH = 16
+
+    private const val RADIX_BITS = 8
+    private const val RADIX_BUCKETS = 1 shl RADIX_BITS
+
+    /**
+     * sorts the given blocks' tuples "in-place" by the given comparator
+     */
+    @JvmStatic
     fun sort(blocks: List<Block>, tupleComparator: Comparator<Tuple>) {
-        val blockSize = blocks.first().size
-        blocks
-            .flatten()
-            .sortedWith(tupleComparator)
-            .chunked(blockSize)
-            .forEachIndexed { i, tupleList ->
-                blocks[i].apply {
-                    clear()
-                    tupleList.forEach {
-                        append(it)
-                    }
+        val tuples = collectTuples(blocks)
+        val order = IntArray(tuples.size) { it }
+        mergeSort(order, 0, order.size) { a, b -> tupleComparator.compare(tuples[a]!!, tuples[b]!!) }
+        setTuples(blocks, tuples, order)
+    }
+
+    /**
+     * sorts the given blocks' tuples "in-place" by the given column index,
+     * comparing the values of the [Block.getColumn] vectors instead of the tuples.
+     * INTEGER columns are sorted by radix. Null values are sorted first.
+     */
+    @JvmStatic
+    fun sort(blocks: List<Block>, columns: ColumnDefinition, sortColumnIndex: Int) {
+        val columnType = columns.getColumnType(sortColumnIndex)
+        val vectors = blocks.map { it.getColumn(sortColumnIndex, columnType) }
+        val tuples = collectTuples(blocks)
+        val order = IntArray(tuples.size)
+
+        // null values are moved to the front in their order
+        var nullCount = 0
+        var position = 0
+        vectors.forEach { vector ->
+            for (i in 0 until vector.size) {
+                if (vector.isNull(i)) order[nullCount++] = position
+                position++
+            }
+        }
+        var nonNullCount = nullCount
+        position = 0
+        vectors.forEach { vector ->
+            for (i in 0 until vector.size) {
+                if (!vector.isNull(i)) order[nonNullCount++] = position
+                position++
+            }
+        }
+
+        when (columnType) {
+            ColumnDefinition.ColumnType.INTEGER -> {
+                val keys = IntArray(tuples.size)
+                copyValues(vectors) { vector, i, keyPosition ->
+                    keys[keyPosition] = (vector as ColumnVector.IntVector).values[i]
+                }
+                radixSort(order, nullCount, order.size, keys)
+            }
+            ColumnDefinition.ColumnType.DOUBLE -> {
+                val keys = DoubleArray(tuples.size)
+                copyValues(vectors) { vector, i, keyPosition ->
+                    keys[keyPosition] = (vector as ColumnVector.DoubleVector).values[i]
+                }
+                mergeSort(order, nullCount, order.size) { a, b -> keys[a].compareTo(keys[b]) }
+            }
+            ColumnDefinition.ColumnType.STRING -> {
+                val keys = arrayOfNulls<String>(tuples.size)
+                copyValues(vectors) { vector, i, keyPosition ->
+                    keys[keyPosition] = vector[i] as String
+                }
+                mergeSort(order, nullCount, order.size) { a, b -> keys[a]!!.compareTo(keys[b]!!) }
+            }
+        }
+        setTuples(blocks, tuples, order)
+    }
+
+    private fun collectTuples(blocks: List<Block>): Array<Tuple?> {
+        val tuples = arrayOfNulls<Tuple>(blocks.sumOf { it.size })
+        var position = 0
+        blocks.forEach { block ->
+            for (slot in 0 until block.size) {
+                tuples[position++] = block[slot]
+            }
+        }
+        return tuples
+    }
+
+    private fun setTuples(blocks: List<Block>, tuples: Array<Tuple?>, order: IntArray) {
+        var position = 0
+        blocks.forEach { block ->
+            for (slot in 0 until block.size) {
+                block[slot] = tuples[order[position++]]!!
+            }
+        }
+    }
+
+    /**
+     * Calls [copy] with each non-null value of the vectors and its position.
+     */
+    private inline fun copyValues(
+        vectors: List<ColumnVector>,
+        copy: (vector: ColumnVector, index: Int, position: Int) -> Unit,
+    ) {
+        var position = 0
+        vectors.forEach { vector ->
+            for (i in 0 until vector.size) {
+                if (!vector.isNull(i)) copy(vector, i, position)
+                position++
+            }
+        }
+    }
+
+    /**
+     * Sorts the positions in the range by their keys with a least significant digit radix sort,
+     * skipping digits which are equal for all keys.
+     */
+    private fun radixSort(order: IntArray, from: Int, to: Int, keys: IntArray) {
+        var source = order
+        var target = IntArray(order.size)
+        val bucketStarts = IntArray(RADIX_BUCKETS + 1)
+        for (shift in 0 until Int.SIZE_BITS step RADIX_BITS) {
+            bucketStarts.fill(0)
+            for (i in from until to) {
+                bucketStarts[digit(keys[source[i]], shift) + 1]++
+            }
+            if (bucketStarts.any { it == to - from }) continue
+            for (bucket in 1..RADIX_BUCKETS) {
+                bucketStarts[bucket] += bucketStarts[bucket - 1]
+            }
+            for (i in from until to) {
+                val position = source[i]
+                target[from + bucketStarts[digit(keys[position], shift)]++] = position
+            }
+            source = target.also { target = source }
+        }
+        if (source !== order) System.arraycopy(source, from, order, from, to - from)
+    }
+
+    /**
+     * Flips the sign bit, so negative keys are sorted before positive ones.
+     */
+    private fun digit(key: Int, shift: Int): Int =
+        ((key xor Int.MIN_VALUE) ushr shift) and (RADIX_BUCKETS - 1)
+
+    /**
+     * Sorts the positions in the range with a stable bottom-up merge sort.
+     */
+    private inline fun mergeSort(order: IntArray, from: Int, to: Int, compare: (Int, Int) -> Int) {
+        var runStart = from
+        while (runStart < to) {
+            val runEnd = minOf(runStart + INSERTION_SORT_LENGTH, to)
+            for (i in runStart + 1 until runEnd) {
+                val position = order[i]
+                var j = i - 1
+                while (j >= runStart && compare(order[j], position) > 0) {
+                    order[j + 1] = order[j]
+                    j--
+                }
+                order[j + 1] = position
+            }
+            runStart = runEnd
+        }
+        if (to - from <= INSERTION_SORT_LENGTH) return
+
+        var source = order
+        var target = IntArray(order.size)
+        var width = INSERTION_SORT_LENGTH
+        while (width < to - from) {
+            var left = from
+            while (left < to) {
+                val middle = minOf(left + width, to)
+                val right = minOf(left + 2 * width, to)
+                var i = left
+                var j = middle
+                var k = left
+                while (i < middle && j < right) {
+                    target[k++] = if (compare(source[j], source[i]) < 0) source[j++] else source[i++]
                 }
+                while (i < middle) target[k++] = source[i++]
+                while (j < right) target[k++] = source[j++]
+                left = right
             }
+            source = target.also { target = source }
+            width *= 2
+        }
+        if (source !== order) System.arraycopy(source, from, order, from, to - from)
     }
 }
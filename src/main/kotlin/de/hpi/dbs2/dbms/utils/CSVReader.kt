@@ -0,0 +1,240 @@
+package de.hpi.dbs2.dbms.utils
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import de.hpi.dbs2.dbms.Tuple
+import java.io.Reader
+
+/**
+ * Reads tuples from CSV lines without allocating a string per line and per field.
+ *
+ * Lines are read into a reusable char buffer, which only grows for lines longer than the buffer.
+ * Fields are found by scanning for the delimiter, and only the fields in [columnIndices] are trimmed
+ * and converted into values: ints and doubles are parsed directly from the buffer,
+ * unusual formats fall back to [ColumnType.fromString].
+ *
+ * Lines may end with "\n", "\r\n" or "\r", like for [java.io.BufferedReader.readLine].
+ */
+class CSVReader @JvmOverloads constructor(
+    private val reader: Reader,
+    private val columns: ColumnDefinition,
+    columnIndices: List<Int> = (0 until columns.columnCount).toList(),
+    private val delimiter: String = ",",
+    bufferSize: Int = DEFAULT_BUFFER_SIZE,
+) : AutoCloseable {
+    init {
+        require(delimiter.isNotEmpty()) { "delimiter must not be empty" }
+        require(columnIndices.size <= columns.columnCount) { "more column indices than columns" }
+    }
+
+    /**
+     * For each field of a line, the tuple columns into which it is loaded.
+     */
+    private val targetColumnsByField: Array<IntArray> =
+        Array((columnIndices.maxOrNull() ?: -1) + 1) { fieldIndex ->
+            columnIndices.indices.filter { columnIndices[it] == fieldIndex }.toIntArray()
+        }
+    private val columnTypes: Array<ColumnType> = columns.columnTypes.toTypedArray()
+
+    private var buffer = CharArray(bufferSize)
+    private var position = 0
+    private var limit = 0
+    private var endOfInput = false
+    private var skipLineFeed = false
+    private var lineStart = 0
+    private var lineEnd = 0
+
+    /**
+     * number of lines read so far, including skipped ones
+     */
+    var lineCount: Int = 0
+        private set
+
+    /**
+     * Skips the next line, e.g. a header.
+     * @return false if there are no more lines
+     */
+    fun skipLine(): Boolean = nextLine()
+
+    /**
+     * Parses the next line into a new tuple.
+     * @return the tuple or null if there are no more lines
+     * @throws IndexOutOfBoundsException if the line has fewer fields than required by the column indices
+     * @throws NumberFormatException if an INTEGER or DOUBLE field cannot be parsed
+     */
+    fun readTuple(): Tuple? {
+        if (!nextLine()) return null
+        val tuple = Tuple(columns.columnCount)
+        var fieldStart = lineStart
+        for (fieldIndex in targetColumnsByField.indices) {
+            if (fieldStart > lineEnd)
+                throw IndexOutOfBoundsException("line $lineCount has only $fieldIndex fields")
+            val fieldEnd = indexOfDelimiter(fieldStart)
+            targetColumnsByField[fieldIndex].forEach { columnIndex ->
+                tuple[columnIndex] = parseField(columnTypes[columnIndex], fieldStart, fieldEnd)
+            }
+            fieldStart = fieldEnd + delimiter.length
+        }
+        return tuple
+    }
+
+    override fun close() {
+        reader.close()
+    }
+
+    private fun indexOfDelimiter(fromIndex: Int): Int {
+        val first = delimiter[0]
+        var i = fromIndex
+        while (i < lineEnd) {
+            if (buffer[i] == first && matchesDelimiter(i)) return i
+            i++
+        }
+        return lineEnd
+    }
+
+    private fun matchesDelimiter(index: Int): Boolean {
+        if (index + delimiter.length > lineEnd) return false
+        for (i in 1 until delimiter.length) {
+            if (buffer[index + i] != delimiter[i]) return false
+        }
+        return true
+    }
+
+    private fun parseField(type: ColumnType, fieldStart: Int, fieldEnd: Int): Any {
+        var start = fieldStart
+        var end = fieldEnd
+        while (start < end && buffer[start].isWhitespace()) start++
+        while (end > start && buffer[end - 1].isWhitespace()) end--
+        return when (type) {
+            ColumnType.INTEGER -> parseInt(start, end)
+            ColumnType.DOUBLE -> parseDouble(start, end)
+            ColumnType.STRING -> String(buffer, start, end - start)
+        }
+    }
+
+    /**
+     * Parses up to 9 ASCII digits with an optional sign, which cannot overflow.
+     */
+    private fun parseInt(start: Int, end: Int): Int {
+        var i = start
+        val negative = i < end && buffer[i] == '-'
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) i++
+        if (i == end || end - i > 9)
+            return fromString(ColumnType.INTEGER, start, end) as Int
+        var value = 0
+        while (i < end) {
+            val digit = buffer[i] - '0'
+            if (digit !in 0..9)
+                return fromString(ColumnType.INTEGER, start, end) as Int
+            value = value * 10 + digit
+            i++
+        }
+        return if (negative) -value else value
+    }
+
+    /**
+     * Parses decimals without exponent of up to 15 significant digits and 22 fraction digits.
+     * Both the digits as an integer and the power of ten are exact doubles then,
+     * so their quotient is correctly rounded like [String.toDouble].
+     */
+    private fun parseDouble(start: Int, end: Int): Double {
+        var i = start
+        val negative = i < end && buffer[i] == '-'
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) i++
+        var mantissa = 0L
+        var digitCount = 0
+        var fractionDigitCount = 0
+        var seenPoint = false
+        var seenDigit = false
+        while (i < end) {
+            val c = buffer[i]
+            if (c == '.' && !seenPoint) {
+                seenPoint = true
+            } else if (c in '0'..'9') {
+                seenDigit = true
+                if (mantissa != 0L || c != '0') digitCount++
+                mantissa = mantissa * 10 + (c - '0')
+                if (seenPoint) fractionDigitCount++
+                if (digitCount > 15 || fractionDigitCount > 22)
+                    return fromString(ColumnType.DOUBLE, start, end) as Double
+            } else {
+                return fromString(ColumnType.DOUBLE, start, end) as Double
+            }
+            i++
+        }
+        if (!seenDigit)
+            return fromString(ColumnType.DOUBLE, start, end) as Double
+        val value = mantissa.toDouble() / POWERS_OF_TEN[fractionDigitCount]
+        return if (negative) -value else value
+    }
+
+    private fun fromString(type: ColumnType, start: Int, end: Int): Any =
+        type.fromString(String(buffer, start, end - start))
+
+    /**
+     * Finds the next line and sets [lineStart] and [lineEnd] to its position in the buffer.
+     */
+    private fun nextLine(): Boolean {
+        var scanPosition = position
+        while (true) {
+            if (skipLineFeed && scanPosition < limit) {
+                skipLineFeed = false
+                if (buffer[position] == '\n') {
+                    position++
+                    scanPosition++
+                }
+            }
+            while (scanPosition < limit) {
+                val c = buffer[scanPosition]
+                if (c == '\n' || c == '\r') {
+                    lineStart = position
+                    lineEnd = scanPosition
+                    position = scanPosition + 1
+                    skipLineFeed = c == '\r'
+                    lineCount++
+                    return true
+                }
+                scanPosition++
+            }
+            val scannedLength = scanPosition - position
+            if (!fill()) {
+                // the input does not end with a line break
+                if (position == limit) return false
+                lineStart = position
+                lineEnd = limit
+                position = limit
+                lineCount++
+                return true
+            }
+            scanPosition = position + scannedLength
+        }
+    }
+
+    /**
+     * Moves the unread chars to the start of the buffer and reads more input after them.
+     * @return false if the end of the input has been reached
+     */
+    private fun fill(): Boolean {
+        if (endOfInput) return false
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position)
+            limit -= position
+            position = 0
+        }
+        if (limit == buffer.size)
+            buffer = buffer.copyOf(2 * buffer.size)
+        val readCount = reader.read(buffer, limit, buffer.size - limit)
+        if (readCount < 0) {
+            endOfInput = true
+            return false
+        }
+        limit += readCount
+        return true
+    }
+
+    companion object {
+        const val DEFAULT_BUFFER_SIZE = 64 * 1024
+
+        private val POWERS_OF_TEN = DoubleArray(23) { "1e$it".toDouble() }
+    }
+}
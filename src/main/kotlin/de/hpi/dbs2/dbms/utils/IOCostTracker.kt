@@ -6,10 +6,26 @@ interface IOCostTracker {
 
     val ioCost: Int get() = inputCost + outputCost
 
+    /**
+     * time in nanoseconds spent on reading pages, stays 0 if disk I/O is only simulated
+     */
+    val inputTime: Long get() = 0
+
+    /**
+     * time in nanoseconds spent on writing pages, stays 0 if disk I/O is only simulated
+     */
+    val outputTime: Long get() = 0
+
     fun doInput() {
         // NOP
     }
     fun doOutput() {
         // NOP
     }
+    fun trackInputTime(nanos: Long) {
+        // NOP
+    }
+    fun trackOutputTime(nanos: Long) {
+        // NOP
+    }
 }
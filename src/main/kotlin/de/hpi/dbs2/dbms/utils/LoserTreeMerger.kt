@@ -0,0 +1,161 @@
+package de.hpi.dbs2.dbms.utils
+
+import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.BlockManager
+import de.hpi.dbs2.dbms.BlockOutput
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import de.hpi.dbs2.dbms.Tuple
+
+/**
+ * Merges sorted sources of tuples with a tournament tree which stores the loser of each match.
+ *
+ * The number of leaves is rounded up to a power of two, so replaying the matches on the path of the
+ * previous winner takes exactly ceil(log2 k) comparisons per tuple for k sources.
+ * Equal tuples are taken from the earlier source first, so the merge is stable.
+ *
+ * When merging by an INTEGER or DOUBLE column, the keys of the current tuples are cached unboxed
+ * and compared directly, with null keys sorted first.
+ */
+class LoserTreeMerger private constructor(
+    private val sources: List<Iterator<Tuple>>,
+    private val tupleComparator: Comparator<Tuple>,
+    private val keyColumnIndex: Int,
+    private val keyType: ColumnType?,
+) : Iterator<Tuple> {
+    /**
+     * Merges the sources by comparing whole tuples.
+     */
+    constructor(sources: List<Iterator<Tuple>>, tupleComparator: Comparator<Tuple>) :
+        this(sources, tupleComparator, -1, null)
+
+    /**
+     * Merges the sources by the given column, which uses unboxed keys for INTEGER and DOUBLE columns.
+     */
+    constructor(sources: List<Iterator<Tuple>>, columns: ColumnDefinition, sortColumnIndex: Int) :
+        this(
+            sources,
+            columns.getColumnComparator(sortColumnIndex),
+            sortColumnIndex,
+            columns.getColumnType(sortColumnIndex).takeIf { it != ColumnType.STRING },
+        )
+
+    private val leafCount: Int = Integer.highestOneBit(maxOf(1, sources.size) * 2 - 1)
+    private val heads = arrayOfNulls<Tuple>(leafCount)
+    private val nullKeys = BooleanArray(leafCount)
+    private val intKeys = if (keyType == ColumnType.INTEGER) IntArray(leafCount) else null
+    private val doubleKeys = if (keyType == ColumnType.DOUBLE) DoubleArray(leafCount) else null
+
+    /**
+     * The loser of the match at each inner node, with the overall winner at index 0.
+     */
+    private val losers = IntArray(leafCount)
+
+    /**
+     * number of comparisons between sources so far
+     */
+    var comparisonCount: Long = 0
+        private set
+
+    init {
+        for (source in sources.indices) {
+            pull(source)
+        }
+        val winners = IntArray(2 * leafCount)
+        for (leaf in 0 until leafCount) {
+            winners[leafCount + leaf] = leaf
+        }
+        for (node in leafCount - 1 downTo 1) {
+            val left = winners[2 * node]
+            val right = winners[2 * node + 1]
+            if (beats(left, right)) {
+                winners[node] = left
+                losers[node] = right
+            } else {
+                winners[node] = right
+                losers[node] = left
+            }
+        }
+        losers[0] = winners[1]
+    }
+
+    override fun hasNext(): Boolean = heads[losers[0]] != null
+
+    override fun next(): Tuple {
+        val winner = losers[0]
+        val tuple = heads[winner] ?: throw NoSuchElementException()
+        pull(winner)
+        var candidate = winner
+        var node = (leafCount + winner) / 2
+        while (node >= 1) {
+            if (beats(losers[node], candidate)) {
+                val loser = candidate
+                candidate = losers[node]
+                losers[node] = loser
+            }
+            node /= 2
+        }
+        losers[0] = candidate
+        return tuple
+    }
+
+    /**
+     * Appends all remaining tuples to blocks, which are moved to the [blockOutput] once they are full.
+     * Only one block is allocated at a time.
+     */
+    fun writeTo(blockManager: BlockManager, columns: ColumnDefinition, blockOutput: BlockOutput) {
+        var block: Block? = null
+        while (hasNext()) {
+            val tuple = next()
+            if (block == null) {
+                block = blockManager.allocate(true, columns)
+            }
+            block.append(tuple)
+            if (block.isFull()) {
+                blockOutput.move(block)
+                block = null
+            }
+        }
+        if (block != null) {
+            blockOutput.move(block)
+        }
+    }
+
+    /**
+     * Replaces the current tuple of the source by its next one and caches its key.
+     */
+    private fun pull(source: Int) {
+        val iterator = sources[source]
+        if (!iterator.hasNext()) {
+            heads[source] = null
+            return
+        }
+        val tuple = iterator.next()
+        heads[source] = tuple
+        if (keyType == null) return
+        nullKeys[source] = tuple.isNull(keyColumnIndex)
+        if (nullKeys[source]) return
+        when (keyType) {
+            ColumnType.INTEGER -> intKeys!![source] = tuple.getInt(keyColumnIndex)
+            ColumnType.DOUBLE -> doubleKeys!![source] = tuple.getDouble(keyColumnIndex)
+            else -> {}
+        }
+    }
+
+    /**
+     * @return true if the current tuple of source [a] is taken before the one of source [b],
+     * exhausted sources lose against all others
+     */
+    private fun beats(a: Int, b: Int): Boolean {
+        comparisonCount++
+        val headA = heads[a] ?: return false
+        val headB = heads[b] ?: return true
+        val comparison = when {
+            keyType == null -> tupleComparator.compare(headA, headB)
+            nullKeys[a] || nullKeys[b] -> nullKeys[b].compareTo(nullKeys[a])
+            keyType == ColumnType.INTEGER -> intKeys!![a].compareTo(intKeys[b])
+            else -> doubleKeys!![a].compareTo(doubleKeys[b])
+        }
+        return comparison < 0 || (comparison == 0 && a < b)
+    }
+}
@@ -3,10 +3,22 @@ package de.hpi.dbs2.dbms.utils
 import de.hpi.dbs2.dbms.Block
 import de.hpi.dbs2.dbms.BlockManager
 import de.hpi.dbs2.dbms.BlockOutput
+import de.hpi.dbs2.dbms.ColumnDefinition
 import de.hpi.dbs2.dbms.Relation
 import de.hpi.dbs2.dbms.Tuple
+import java.io.ByteArrayInputStream
+import java.io.EOFException
+import java.io.File
 import java.io.InputStream
+import java.io.InputStreamReader
 import java.io.PrintStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 import java.util.function.Consumer
 
 object RelationUtils {
@@ -28,6 +40,7 @@ object RelationUtils {
      * additional columns are ignored.
      *
      * The relation's blocks can be loaded into memory using the BlockManager.
+     * @return the number of read lines, including the header
      */
     @JvmStatic
     @JvmOverloads
@@ -37,25 +50,179 @@ object RelationUtils {
         columnIndices: List<Int> = (0 until columns.columnCount).toList(),
         delimiter: String = ",",
         containsHeader: Boolean = false,
-    ): Int {
-        var lines = 0
-        csvInputStream.bufferedReader().use { reader ->
+    ): Int = loadCSVWithStatistics(
+        blockManager,
+        csvInputStream,
+        columnIndices,
+        delimiter,
+        containsHeader
+    ).lineCount
+
+    /**
+     * Works like [loadCSV], but additionally measures how fast the tuples have been loaded.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun Relation.loadCSVWithStatistics(
+        blockManager: BlockManager,
+        csvInputStream: InputStream,
+        columnIndices: List<Int> = (0 until columns.columnCount).toList(),
+        delimiter: String = ",",
+        containsHeader: Boolean = false,
+    ): CSVLoadStatistics {
+        val start = System.nanoTime()
+        var tupleCount = 0
+        CSVReader(csvInputStream.reader(), columns, columnIndices, delimiter).use { reader ->
+            if (containsHeader) reader.skipLine()
             fill(blockManager) {
-                reader.lineSequence().forEach { line ->
-                    lines++
-                    if (lines == 1 && containsHeader) return@forEach
-                    val tuple = Tuple(columns.columnCount).also { tuple ->
-                        val values = line.split(delimiter)
-                        columnIndices.forEachIndexed { i, columnIndex ->
-                            tuple[i] =
-                                columns.getColumnType(i).fromString(values[columnIndex].trim())
+                while (true) {
+                    it.add(reader.readTuple() ?: break)
+                    tupleCount++
+                }
+            }
+            return CSVLoadStatistics(reader.lineCount, tupleCount, System.nanoTime() - start)
+        }
+    }
+
+    /**
+     * Works like [loadCSVWithStatistics], but parses the file on [parallelism] threads.
+     *
+     * The file is split into byte ranges of about [chunkSize] bytes, which are aligned to line breaks,
+     * and each range is parsed on its own worker. The parsed tuples are appended in file order,
+     * so the relation contains the same blocks as with the sequential loader.
+     * Only a few chunks are parsed ahead, so the tuples of the whole file are not kept in memory at once.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun Relation.loadCSVParallel(
+        blockManager: BlockManager,
+        csvFile: File,
+        columnIndices: List<Int> = (0 until columns.columnCount).toList(),
+        delimiter: String = ",",
+        containsHeader: Boolean = false,
+        parallelism: Int = Runtime.getRuntime().availableProcessors(),
+        chunkSize: Int = DEFAULT_CSV_CHUNK_SIZE,
+    ): CSVLoadStatistics {
+        require(parallelism > 0) { "parallelism must be positive" }
+        require(chunkSize > 0) { "chunkSize must be positive" }
+        val start = System.nanoTime()
+        var lineCount = 0
+        var tupleCount = 0
+        val executor = Executors.newFixedThreadPool(parallelism)
+        try {
+            FileChannel.open(csvFile.toPath(), StandardOpenOption.READ).use { channel ->
+                val boundaries = findChunkBoundaries(channel, chunkSize)
+                val pendingChunks = ArrayDeque<Future<CSVChunk>>()
+                var nextChunkIndex = 0
+                fun submitChunk() {
+                    val chunkIndex = nextChunkIndex++
+                    pendingChunks.addLast(executor.submit(Callable {
+                        parseChunk(
+                            channel,
+                            boundaries[chunkIndex],
+                            boundaries[chunkIndex + 1],
+                            columns,
+                            columnIndices,
+                            delimiter,
+                            skipHeader = containsHeader && chunkIndex == 0
+                        )
+                    }))
+                }
+                fill(blockManager) { filler ->
+                    while (pendingChunks.isNotEmpty() || nextChunkIndex < boundaries.size - 1) {
+                        while (pendingChunks.size < 2 * parallelism && nextChunkIndex < boundaries.size - 1)
+                            submitChunk()
+                        val chunk = try {
+                            pendingChunks.removeFirst().get()
+                        } catch (e: ExecutionException) {
+                            throw e.cause ?: e
                         }
+                        chunk.tuples.forEach(filler::add)
+                        lineCount += chunk.lineCount
+                        tupleCount += chunk.tuples.size
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+        return CSVLoadStatistics(lineCount, tupleCount, System.nanoTime() - start)
+    }
+
+    const val DEFAULT_CSV_CHUNK_SIZE = 4 * 1024 * 1024
+
+    private class CSVChunk(val tuples: List<Tuple>, val lineCount: Int)
+
+    /**
+     * Splits the file into ranges of about [chunkSize] bytes, which start at the beginning of a line.
+     * @return the start positions of all ranges followed by the file size
+     */
+    private fun findChunkBoundaries(channel: FileChannel, chunkSize: Int): List<Long> {
+        val fileSize = channel.size()
+        val boundaries = mutableListOf(0L)
+        val window = ByteBuffer.allocate(8 * 1024)
+        var position = chunkSize.toLong()
+        while (position < fileSize) {
+            // the previous byte is included to detect positions which already start a line
+            var scanPosition = position - 1
+            var lineStart = fileSize
+            scan@ while (scanPosition < fileSize) {
+                window.clear()
+                val readCount = channel.read(window, scanPosition)
+                if (readCount <= 0) break
+                for (i in 0 until readCount) {
+                    if (window[i] == '\n'.code.toByte()) {
+                        lineStart = scanPosition + i + 1
+                        break@scan
                     }
-                    it.add(tuple)
                 }
+                scanPosition += readCount
             }
+            if (lineStart >= fileSize) break
+            boundaries += lineStart
+            position = lineStart + chunkSize
+        }
+        boundaries += fileSize
+        return boundaries
+    }
+
+    private fun parseChunk(
+        channel: FileChannel,
+        start: Long,
+        end: Long,
+        columns: ColumnDefinition,
+        columnIndices: List<Int>,
+        delimiter: String,
+        skipHeader: Boolean,
+    ): CSVChunk {
+        val bytes = ByteBuffer.allocate(Math.toIntExact(end - start))
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, start + bytes.position()) < 0)
+                throw EOFException("file has been truncated while it was read")
         }
-        return lines
+        val reader = InputStreamReader(ByteArrayInputStream(bytes.array()), Charsets.UTF_8)
+        CSVReader(reader, columns, columnIndices, delimiter).use { csvReader ->
+            if (skipHeader) csvReader.skipLine()
+            val tuples = mutableListOf<Tuple>()
+            while (true) {
+                tuples += csvReader.readTuple() ?: break
+            }
+            return CSVChunk(tuples, csvReader.lineCount)
+        }
+    }
+
+    class CSVLoadStatistics(
+        /**
+         * number of read lines, including the header
+         */
+        val lineCount: Int,
+        val tupleCount: Int,
+        val nanos: Long,
+    ) {
+        val tuplesPerSecond: Double get() = tupleCount * 1e9 / nanos
+
+        override fun toString(): String =
+            "CSVLoadStatistics[lines=$lineCount, tuples=$tupleCount, ${"%.0f".format(tuplesPerSecond)} tuples/s]"
     }
 
     /**
@@ -70,7 +237,7 @@ object RelationUtils {
     @JvmStatic
     fun Relation.fill(blockManager: BlockManager, filler: Consumer<RelationFiller>) {
         RelationFiller(
-            { blockManager.allocate(true) },
+            { blockManager.allocate(true, columns) },
             getBlockOutput()
         ).use { filler.accept(it) }
     }
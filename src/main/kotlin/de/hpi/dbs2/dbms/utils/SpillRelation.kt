@@ -0,0 +1,43 @@
+package de.hpi.dbs2.dbms.utils
+
+import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.BlockManager
+import de.hpi.dbs2.dbms.BlockOutput
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.Relation
+
+/**
+ * A temporary relation for intermediate results of an operation, like sorted inputs or hash partitions.
+ *
+ * Unlike the relations created by [de.hpi.dbs2.dbms.DBMS.createRelation], the blocks moved to its
+ * [BlockOutput] are written to disk, which counts as 1 disk write operation per block.
+ */
+class SpillRelation(
+    private val blockManager: BlockManager,
+    override val columns: ColumnDefinition,
+) : Relation {
+    private val blocks = mutableListOf<Block>()
+
+    /**
+     * Drops the references to all blocks, which are not loaded anymore.
+     */
+    override fun clear() {
+        blocks.clear()
+    }
+
+    override fun estimatedBlockCount(): Int = blocks.size
+    override fun iterator(): Iterator<Block> = blocks.iterator()
+
+    /**
+     * @return the block reference at the given position
+     */
+    operator fun get(blockIndex: Int): Block = blocks[blockIndex]
+
+    private val blockOutput = object : BlockOutput {
+        override fun move(outputBlock: Block) {
+            blocks += blockManager.release(outputBlock, true)!!
+        }
+    }
+
+    override fun getBlockOutput(): BlockOutput = blockOutput
+}
@@ -0,0 +1,18 @@
+package de.hpi.dbs2.exercise2
+
+import de.hpi.dbs2.dbms.Block
+
+/**
+ * A value for index structures which locates a tuple of a relation,
+ * so that only the referenced block has to be loaded to access it.
+ */
+data class TupleReference(
+    /**
+     * reference of the block containing the tuple, which might not be loaded
+     */
+    val block: Block,
+    /**
+     * index of the tuple in the block
+     */
+    val slot: Int,
+)
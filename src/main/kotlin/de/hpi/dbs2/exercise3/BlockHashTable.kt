@@ -0,0 +1,94 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnVector
+
+/**
+ * An open-addressing hash table over the join column of one block, see [InnerJoinOperation.joinBlocks].
+ *
+ * All keys are mapped to longs, so they stay unboxed: INTEGER values directly, DOUBLE values by their bits
+ * (which matches [Double.equals]) and STRING values by their code in the dictionary of the build vector.
+ * Each slot holds the first tuple with a distinct key, further tuples with that key are chained in ascending order.
+ * Null keys match each other, like the `==` of [JoinAttributePair.EquiJoinAttributePair].
+ */
+internal class BlockHashTable(
+    private val buildVector: ColumnVector,
+) {
+    internal val type: ColumnDefinition.ColumnType get() = buildVector.type
+    internal val buildKeys: LongArray = keysOf(buildVector)
+    internal val mask: Int = Integer.highestOneBit(maxOf(1, buildVector.size) * 2 - 1) * 2 - 1
+    internal val slots = IntArray(mask + 1) { EMPTY }
+    internal val next = IntArray(buildVector.size) { EMPTY }
+    internal val nullIndices: IntArray
+
+    /**
+     * code of each string in the dictionary of the build vector
+     */
+    private val dictionaryCodes: Map<String, Int>? = (buildVector as? ColumnVector.StringVector)
+        ?.dictionary?.withIndex()?.associate { (code, value) -> value to code }
+
+    init {
+        val nulls = mutableListOf<Int>()
+        // inserting backwards puts each tuple in front of the later ones with the same key
+        for (i in buildVector.size - 1 downTo 0) {
+            if (buildVector.isNull(i)) {
+                nulls += i
+                continue
+            }
+            var slot = slotOf(buildKeys[i])
+            while (slots[slot] != EMPTY && buildKeys[slots[slot]] != buildKeys[i]) {
+                slot = (slot + 1) and mask
+            }
+            next[i] = slots[slot]
+            slots[slot] = i
+        }
+        nullIndices = nulls.asReversed().toIntArray()
+    }
+
+    /**
+     * @return the keys of the probe vector, which has to be of the same type as the build vector.
+     * STRING values missing in the build vector get a key which never matches.
+     */
+    fun probeKeys(probeVector: ColumnVector): LongArray {
+        require(probeVector.type == buildVector.type)
+        if (probeVector !is ColumnVector.StringVector) return keysOf(probeVector)
+        val codes = probeVector.dictionary.map { dictionaryCodes!![it]?.toLong() ?: NO_MATCH }
+        return LongArray(probeVector.size) { if (probeVector.isNull(it)) 0 else codes[probeVector.codes[it]] }
+    }
+
+    /**
+     * Calls [action] with the index of each build tuple matching the probe tuple at [probeIndex] in ascending order.
+     */
+    inline fun forEachMatch(probeVector: ColumnVector, probeKeys: LongArray, probeIndex: Int, action: (Int) -> Unit) {
+        if (probeVector.isNull(probeIndex)) {
+            nullIndices.forEach(action)
+            return
+        }
+        val key = probeKeys[probeIndex]
+        var slot = slotOf(key)
+        while (slots[slot] != EMPTY) {
+            if (buildKeys[slots[slot]] == key) {
+                var buildIndex = slots[slot]
+                while (buildIndex != EMPTY) {
+                    action(buildIndex)
+                    buildIndex = next[buildIndex]
+                }
+                return
+            }
+            slot = (slot + 1) and mask
+        }
+    }
+
+    internal fun slotOf(key: Long): Int = ((key * -0x61c8864680b583ebL) ushr 32).toInt() and mask
+
+    companion object {
+        internal const val EMPTY = -1
+        private const val NO_MATCH = -1L
+
+        private fun keysOf(vector: ColumnVector): LongArray = when (vector) {
+            is ColumnVector.IntVector -> LongArray(vector.size) { vector.values[it].toLong() }
+            is ColumnVector.DoubleVector -> LongArray(vector.size) { vector.values[it].toBits() }
+            is ColumnVector.StringVector -> LongArray(vector.size) { vector.codes[it].toLong() }
+        }
+    }
+}
@@ -2,10 +2,11 @@ package de.hpi.dbs2.exercise3
 
 import de.hpi.dbs2.dbms.Block
 import de.hpi.dbs2.dbms.BlockManager
+import de.hpi.dbs2.dbms.BlockOutput
 import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnVector
 import de.hpi.dbs2.dbms.Relation
 import de.hpi.dbs2.dbms.Tuple
-import de.hpi.dbs2.dbms.ColumnRange
 import java.util.function.Consumer
 
 abstract class InnerJoinOperation(
@@ -30,6 +31,11 @@ abstract class InnerJoinOperation(
      * Joins all tuples of the left and the right block using the set [joinAttributePairs].
      * Joined tuples are created using the given [outputColumns] definition
      * and are returned in the [tupleConsumer] for further processing (e.g. saving in a block).
+     * They are returned ordered by their left tuple first and by their right tuple second.
+     *
+     * For an [JoinAttributePair.EquiJoinAttributePair], a [BlockHashTable] is built on the join column
+     * of the smaller block and probed with the join column of the other one,
+     * so that tuples are only compared by their unboxed keys.
      *
      * Make sure that both blocks are loaded when calling this method!
      */
@@ -41,7 +47,95 @@ abstract class InnerJoinOperation(
     ) {
         assert(leftBlock.isLoaded())
         assert(rightBlock.isLoaded())
+        if (leftBlock.isEmpty() || rightBlock.isEmpty()) return
+
+        val columnType = hashedColumnType(outputColumns, leftBlock[0].columnCount)
+        if (columnType == null) {
+            joinAllPairs(leftBlock, rightBlock, outputColumns, tupleConsumer)
+            return
+        }
+        val attributePair = joinAttributePair as JoinAttributePair.EquiJoinAttributePair
+        val leftVector = leftBlock.getColumn(attributePair.leftColumnIndex, columnType)
+        val rightVector = rightBlock.getColumn(attributePair.rightColumnIndex, columnType)
+        if (rightBlock.size <= leftBlock.size) {
+            probeWithLeft(leftBlock, leftVector, rightBlock, BlockHashTable(rightVector), outputColumns, tupleConsumer)
+        } else {
+            probeWithRight(leftBlock, BlockHashTable(leftVector), rightBlock, rightVector, outputColumns, tupleConsumer)
+        }
+    }
+
+    /**
+     * Joins the outer block with an inner block like [joinBlocks],
+     * but probes the hash table which has been built once for the outer block.
+     *
+     * Make sure that both blocks are loaded when calling this method!
+     */
+    fun joinBlocks(
+        outerBlock: OuterBlock,
+        innerBlock: Block,
+        tupleConsumer: Consumer<Tuple>
+    ) {
+        assert(outerBlock.block.isLoaded())
+        assert(innerBlock.isLoaded())
+        if (outerBlock.block.isEmpty() || innerBlock.isEmpty()) return
 
+        val leftBlock = if (outerBlock.isLeft) outerBlock.block else innerBlock
+        val rightBlock = if (outerBlock.isLeft) innerBlock else outerBlock.block
+        val hashTable = outerBlock.hashTable
+        if (hashTable == null) {
+            joinAllPairs(leftBlock, rightBlock, outerBlock.outputColumns, tupleConsumer)
+            return
+        }
+        val attributePair = joinAttributePair as JoinAttributePair.EquiJoinAttributePair
+        if (outerBlock.isLeft) {
+            val rightVector = innerBlock.getColumn(attributePair.rightColumnIndex, hashTable.type)
+            probeWithRight(leftBlock, hashTable, rightBlock, rightVector, outerBlock.outputColumns, tupleConsumer)
+        } else {
+            val leftVector = innerBlock.getColumn(attributePair.leftColumnIndex, hashTable.type)
+            probeWithLeft(leftBlock, leftVector, rightBlock, hashTable, outerBlock.outputColumns, tupleConsumer)
+        }
+    }
+
+    /**
+     * A loaded block of the outer relation of a nested loop, whose join column is hashed once
+     * when it is created and probed by each inner block passed to [joinBlocks] with it.
+     */
+    inner class OuterBlock(
+        val block: Block,
+        /**
+         * true if the block holds tuples of the left relation
+         */
+        val isLeft: Boolean,
+        val outputColumns: ColumnDefinition,
+    ) {
+        internal val hashTable: BlockHashTable? = if (block.isEmpty()) null else {
+            val columnCount = block[0].columnCount
+            hashedColumnType(outputColumns, if (isLeft) columnCount else outputColumns.columnCount - columnCount)
+                ?.let { columnType ->
+                    val attributePair = joinAttributePair as JoinAttributePair.EquiJoinAttributePair
+                    val columnIndex = if (isLeft) attributePair.leftColumnIndex else attributePair.rightColumnIndex
+                    BlockHashTable(block.getColumn(columnIndex, columnType))
+                }
+        }
+    }
+
+    /**
+     * @return the type of both join columns of an equi join if they are equal, so their values can be hashed
+     */
+    private fun hashedColumnType(outputColumns: ColumnDefinition, leftColumnCount: Int): ColumnDefinition.ColumnType? {
+        val attributePair = joinAttributePair as? JoinAttributePair.EquiJoinAttributePair ?: return null
+        val columnType = outputColumns.getColumnType(attributePair.leftColumnIndex)
+        return columnType.takeIf {
+            it == outputColumns.getColumnType(leftColumnCount + attributePair.rightColumnIndex)
+        }
+    }
+
+    private fun joinAllPairs(
+        leftBlock: Block,
+        rightBlock: Block,
+        outputColumns: ColumnDefinition,
+        tupleConsumer: Consumer<Tuple>
+    ) {
         leftBlock.forEach { leftTuple ->
             rightBlock.forEach { rightTuple ->
                 if (joinAttributePair.matches(leftTuple, rightTuple)) {
@@ -51,21 +145,101 @@ abstract class InnerJoinOperation(
         }
     }
 
+    /**
+     * Probes the hash table of the right block with each left tuple.
+     */
+    private fun probeWithLeft(
+        leftBlock: Block,
+        leftVector: ColumnVector,
+        rightBlock: Block,
+        rightHashTable: BlockHashTable,
+        outputColumns: ColumnDefinition,
+        tupleConsumer: Consumer<Tuple>
+    ) {
+        val leftKeys = rightHashTable.probeKeys(leftVector)
+        for (leftIndex in 0 until leftVector.size) {
+            val leftTuple = leftBlock[leftIndex]
+            rightHashTable.forEachMatch(leftVector, leftKeys, leftIndex) { rightIndex ->
+                tupleConsumer.accept(constructJoinedTuple(leftTuple, rightBlock[rightIndex], outputColumns))
+            }
+        }
+    }
+
+    /**
+     * Probes the hash table of the left block with each right tuple.
+     * The matches are found in the order of the right tuples and are sorted by their left tuples by counting.
+     */
+    private fun probeWithRight(
+        leftBlock: Block,
+        leftHashTable: BlockHashTable,
+        rightBlock: Block,
+        rightVector: ColumnVector,
+        outputColumns: ColumnDefinition,
+        tupleConsumer: Consumer<Tuple>
+    ) {
+        val leftSize = leftBlock.size
+        val rightKeys = leftHashTable.probeKeys(rightVector)
+        val matchCounts = IntArray(leftSize + 1)
+        for (rightIndex in 0 until rightVector.size) {
+            leftHashTable.forEachMatch(rightVector, rightKeys, rightIndex) { leftIndex -> matchCounts[leftIndex + 1]++ }
+        }
+        for (leftIndex in 1..leftSize) {
+            matchCounts[leftIndex] += matchCounts[leftIndex - 1]
+        }
+        val matchedRightIndices = IntArray(matchCounts[leftSize])
+        for (rightIndex in 0 until rightVector.size) {
+            leftHashTable.forEachMatch(rightVector, rightKeys, rightIndex) { leftIndex ->
+                matchedRightIndices[matchCounts[leftIndex]++] = rightIndex
+            }
+        }
+        var match = 0
+        for (leftIndex in 0 until leftSize) {
+            val leftTuple = leftBlock[leftIndex]
+            // the counts have been moved to the end of the matches of each left tuple
+            while (match < matchCounts[leftIndex]) {
+                tupleConsumer.accept(constructJoinedTuple(leftTuple, rightBlock[matchedRightIndices[match++]], outputColumns))
+            }
+        }
+    }
+
     /**
      * @return a joined tuple with the columns from the left tuple followed by the columns of the right tuple.
+     * The values of both tuples are concatenated directly, their types are only checked if assertions are enabled.
      */
     fun constructJoinedTuple(
         leftTuple: Tuple,
         rightTuple: Tuple,
         outputColumns: ColumnDefinition,
-    ): Tuple = outputColumns.createTuple().apply {
-        leftTuple.copyInto(
-            this,
-            targetRange = ColumnRange.fromColumnCount(leftTuple.columnCount)
-        )
-        rightTuple.copyInto(
-            this,
-            targetRange = ColumnRange.fromColumnCount(rightTuple.columnCount) + leftTuple.columnCount
-        )
+    ): Tuple {
+        val values = arrayOfNulls<Any?>(leftTuple.columnCount + rightTuple.columnCount)
+        leftTuple.copyValuesInto(values, 0)
+        rightTuple.copyValuesInto(values, leftTuple.columnCount)
+        return outputColumns.wrapValues(values)
+    }
+
+    /**
+     * Appends joined tuples to an output block, which is moved to the [blockOutput] once it is full.
+     * The output block is allocated on creation, so it takes one of the free blocks until [close].
+     */
+    inner class TupleAppender(
+        private val blockOutput: BlockOutput,
+    ) : AutoCloseable, Consumer<Tuple> {
+        private var outputBlock: Block = blockManager.allocate(true)
+
+        override fun accept(tuple: Tuple) {
+            if (outputBlock.isFull()) {
+                blockOutput.move(outputBlock)
+                outputBlock = blockManager.allocate(true)
+            }
+            outputBlock.append(tuple)
+        }
+
+        override fun close() {
+            if (!outputBlock.isEmpty()) {
+                blockOutput.move(outputBlock)
+            } else {
+                blockManager.release(outputBlock, false)
+            }
+        }
     }
 }
@@ -1,12 +1,22 @@
 package de.hpi.dbs2.dbms;
 
 import com.google.common.collect.Lists;
+import de.hpi.dbs2.dbms.utils.CSVReader;
 import de.hpi.dbs2.dbms.utils.RelationUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -124,4 +134,129 @@ public class RelationUtilsTests {
 			dbms.getBlockManager(), relation1, relation4
 		));
 	}
+
+	@Test
+	void testLoadCSV() {
+		ColumnDefinition columns = new ColumnDefinition(
+			ColumnDefinition.ColumnType.DOUBLE,
+			ColumnDefinition.ColumnType.INTEGER,
+			ColumnDefinition.ColumnType.STRING
+		);
+		String csv = "name;id;ignored;value\r\n"
+			+ " first ;+7;x; 0.1\r\n"
+			+ "second;-2147483648;y;-2.5\r"
+			+ "third;42;z;1e3\n"
+			+ "fourth;0;;3.14159265358979323";
+
+		Relation relation = dbms.createRelation(dbms.getBlockManager(), columns);
+		int lines = RelationUtils.loadCSV(
+			relation,
+			dbms.getBlockManager(),
+			new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+			List.of(3, 1, 0),
+			";",
+			true
+		);
+		assertEquals(5, lines);
+
+		Assertions.assertIterableEquals(
+			List.of(
+				new Tuple(3, 0.1, 7, "first"),
+				new Tuple(3, -2.5, Integer.MIN_VALUE, "second"),
+				new Tuple(3, 1000.0, 42, "third"),
+				new Tuple(3, 3.14159265358979323, 0, "fourth")
+			),
+			Lists.newArrayList(RelationUtils.tupleIterator(relation, dbms.getBlockManager()))
+		);
+	}
+
+	@Test
+	void testLoadCSVRejectsInvalidLines() {
+		ColumnDefinition columns = new ColumnDefinition(
+			ColumnDefinition.ColumnType.INTEGER,
+			ColumnDefinition.ColumnType.INTEGER
+		);
+		Relation relation = dbms.createRelation(dbms.getBlockManager(), columns);
+		assertThrows(IndexOutOfBoundsException.class, () -> RelationUtils.loadCSV(
+			relation,
+			dbms.getBlockManager(),
+			new ByteArrayInputStream("1,2\n3\n".getBytes(StandardCharsets.UTF_8))
+		));
+		assertThrows(NumberFormatException.class, () -> RelationUtils.loadCSV(
+			relation,
+			dbms.getBlockManager(),
+			new ByteArrayInputStream("1,2147483648\n".getBytes(StandardCharsets.UTF_8))
+		));
+	}
+
+	@Test
+	void testCSVReaderMatchesSplitting() {
+		ColumnDefinition columns = new ColumnDefinition(
+			ColumnDefinition.ColumnType.STRING,
+			ColumnDefinition.ColumnType.INTEGER,
+			ColumnDefinition.ColumnType.DOUBLE
+		);
+		Random random = new Random(0);
+		StringBuilder csv = new StringBuilder();
+		List<Tuple> expected = new ArrayList<>();
+		for(int i = 0; i < 200; i++) {
+			String string = "s".repeat(random.nextInt(20)) + i;
+			int integer = random.nextInt();
+			double value = random.nextInt(2_000_000) / 1000.0 - 1000;
+			csv.append(string).append("||").append(integer).append("||").append(value)
+				.append(random.nextBoolean() ? "\r\n" : "\n");
+			expected.add(new Tuple(3, string, integer, value));
+		}
+
+		List<Tuple> actual = new ArrayList<>();
+		// a tiny buffer forces lines and line breaks to span multiple reads
+		try(CSVReader reader = new CSVReader(new StringReader(csv.toString()), columns, List.of(0, 1, 2), "||", 4)) {
+			Tuple tuple;
+			while((tuple = reader.readTuple()) != null) {
+				actual.add(tuple);
+			}
+			assertEquals(200, reader.getLineCount());
+		}
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	void testLoadCSVParallel() throws IOException {
+		ColumnDefinition columns = new ColumnDefinition(
+			ColumnDefinition.ColumnType.INTEGER,
+			ColumnDefinition.ColumnType.STRING,
+			ColumnDefinition.ColumnType.DOUBLE
+		);
+		Random random = new Random(0);
+		StringBuilder csv = new StringBuilder("id\tname\tvalue\n");
+		for(int i = 0; i < 500; i++) {
+			csv.append(i).append('\t').append("n\u00e4me ".repeat(random.nextInt(4))).append(i)
+				.append('\t').append(random.nextGaussian())
+				.append(random.nextBoolean() ? "\r\n" : "\n");
+		}
+		File file = File.createTempFile("dbs2-csv", ".tsv");
+		try {
+			Files.writeString(file.toPath(), csv);
+
+			Relation sequentialRelation = dbms.createRelation(dbms.getBlockManager(), columns);
+			int lines;
+			try(FileInputStream inputStream = new FileInputStream(file)) {
+				lines = RelationUtils.loadCSV(
+					sequentialRelation, dbms.getBlockManager(), inputStream, List.of(0, 1, 2), "\t", true
+				);
+			}
+			for(int chunkSize : List.of(1, 97, 4096, 1 << 20)) {
+				Relation parallelRelation = dbms.createRelation(dbms.getBlockManager(), columns);
+				RelationUtils.CSVLoadStatistics statistics = RelationUtils.loadCSVParallel(
+					parallelRelation, dbms.getBlockManager(), file, List.of(0, 1, 2), "\t", true, 4, chunkSize
+				);
+				assertEquals(lines, statistics.getLineCount());
+				assertEquals(500, statistics.getTupleCount());
+				assertEquals(sequentialRelation.estimatedBlockCount(), parallelRelation.estimatedBlockCount());
+				assertTrue(RelationUtils.equalContent(dbms.getBlockManager(), sequentialRelation, parallelRelation));
+			}
+		} finally {
+			file.delete();
+		}
+	}
 }
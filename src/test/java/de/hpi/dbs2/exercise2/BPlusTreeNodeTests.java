@@ -139,4 +139,28 @@ public class BPlusTreeNodeTests {
         Assertions.assertNull(TestFixtures.exampleRoot.getOrNull(44));
         Assertions.assertNull(TestFixtures.exampleRoot.getOrNull(99));
     }
+
+    @Test
+    public void testSearchInLargeNodes() {
+        // nodes filled with more keys than LINEAR_SEARCH_MAX_KEYS are searched binary, whatever their order
+        for (int order : new int[]{4, 64, BPlusTreeNode.LINEAR_SEARCH_MAX_KEYS + 1, 300}) {
+            for (int size : new int[]{1, order / 2, order - 1}) {
+                AbstractBPlusTree.Entry[] entries = new AbstractBPlusTree.Entry[size];
+                LeafNode[] leaves = new LeafNode[size];
+                for (int i = 0; i < size; i++) {
+                    entries[i] = new AbstractBPlusTree.Entry(2 * i, new ValueReference(i));
+                    leaves[i] = new LeafNode(order, entries[i]);
+                }
+                LeafNode leafNode = new LeafNode(order, entries);
+                InnerNode innerNode = new InnerNode(order, leaves);
+                for (int key = -1; key <= 2 * size; key++) {
+                    Assertions.assertEquals(
+                        key % 2 == 0 && key < 2 * size ? new ValueReference(key / 2) : null,
+                        leafNode.getOrNull(key)
+                    );
+                    Assertions.assertSame(leaves[Math.max(0, Math.min(size - 1, key / 2))], innerNode.selectChild(key));
+                }
+            }
+        }
+    }
 }
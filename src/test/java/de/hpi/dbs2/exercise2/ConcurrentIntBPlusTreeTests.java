@@ -0,0 +1,183 @@
+package de.hpi.dbs2.exercise2;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+public class ConcurrentIntBPlusTreeTests {
+    private static final int THREAD_COUNT = 8;
+    private static final int KEYS_PER_THREAD = 5_000;
+
+    /**
+     * Each writer inserts its own keys in random order, while readers search and scan the tree concurrently.
+     */
+    private static void insertConcurrently(ConcurrentIntBPlusTree tree) throws Exception {
+        List<Integer> keys = new ArrayList<>(IntStream.range(0, THREAD_COUNT * KEYS_PER_THREAD).boxed().toList());
+        Collections.shuffle(keys, new Random(0));
+        CyclicBarrier start = new CyclicBarrier(2 * THREAD_COUNT);
+        CountDownLatch writersDone = new CountDownLatch(THREAD_COUNT);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < THREAD_COUNT; thread++) {
+            List<Integer> threadKeys = keys.subList(thread * KEYS_PER_THREAD, (thread + 1) * KEYS_PER_THREAD);
+            tasks.add(() -> {
+                start.await();
+                try {
+                    for (int key : threadKeys) {
+                        Assertions.assertNull(tree.insert(key, new ValueReference(key)));
+                        Assertions.assertEquals(new ValueReference(key), tree.get(key));
+                    }
+                    // overwrites the own keys, which no other thread does
+                    for (int key : threadKeys.subList(0, 100)) {
+                        Assertions.assertEquals(new ValueReference(key), tree.insert(key, new ValueReference(-key)));
+                    }
+                } finally {
+                    writersDone.countDown();
+                }
+                return null;
+            });
+            int seed = thread;
+            tasks.add(() -> {
+                Random random = new Random(seed);
+                start.await();
+                while (writersDone.getCount() > 0) {
+                    int key = random.nextInt(keys.size());
+                    ValueReference value = tree.getOrNull(key);
+                    Assertions.assertTrue(
+                        value == null || Math.abs(value.getDummyValue()) == key,
+                        "value " + value + " of key " + key
+                    );
+
+                    // the scanned keys have to be ascending, even if leaves are split during the scan
+                    Iterator<ValueReference> range = tree.getRange(key, key + 500);
+                    int previousKey = key - 1;
+                    while (range.hasNext()) {
+                        int scannedKey = Math.abs(range.next().getDummyValue());
+                        Assertions.assertTrue(
+                            previousKey < scannedKey && scannedKey <= key + 500,
+                            "key " + scannedKey + " after " + previousKey + " in range from " + key
+                        );
+                        previousKey = scannedKey;
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentInserts() throws Exception {
+        for (int order : new int[]{3, 4, 5, 16, 64}) {
+            ConcurrentIntBPlusTree tree = new ConcurrentIntBPlusTree(order);
+            insertConcurrently(tree);
+
+            Assertions.assertTrue(tree.isValid(), "order " + order);
+            Assertions.assertEquals(THREAD_COUNT * KEYS_PER_THREAD, tree.getEntries().count());
+            Assertions.assertEquals(
+                tree.getEntries().map(AbstractBPlusTree.Entry::getValue).toList(),
+                ReadOnlyBPlusTreeTests.toList(tree.getRange(Integer.MIN_VALUE, Integer.MAX_VALUE))
+            );
+            tree.getEntries().forEach(entry ->
+                Assertions.assertEquals((int) entry.getKey(), Math.abs(entry.getValue().getDummyValue()))
+            );
+        }
+    }
+
+    @Test
+    public void testConcurrentInsertsIntoBulkLoadedTree() throws Exception {
+        List<AbstractBPlusTree.Entry> entries = IntStream.range(-10_000, 0)
+            .mapToObj(key -> new AbstractBPlusTree.Entry(key, new ValueReference(key)))
+            .toList();
+        ConcurrentIntBPlusTree tree = new ConcurrentIntBPlusTree(8, entries.iterator(), 1.0);
+        insertConcurrently(tree);
+
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertEquals(entries.size() + THREAD_COUNT * KEYS_PER_THREAD, tree.getEntries().count());
+    }
+
+    /**
+     * Each writer removes three quarters of its own keys and inserts new ones, which compacts the tree several times,
+     * while readers scan it concurrently.
+     */
+    @Test
+    public void testConcurrentRemoves() throws Exception {
+        int keyCount = THREAD_COUNT * KEYS_PER_THREAD;
+        ConcurrentIntBPlusTree tree = new ConcurrentIntBPlusTree(8, IntStream.range(0, keyCount)
+            .mapToObj(key -> new AbstractBPlusTree.Entry(key, new ValueReference(key)))
+            .iterator(), 1.0);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> tree.setDeleteMode(IntBPlusTree.DeleteMode.REBALANCE));
+        IntBPlusTreeNode root = tree.getIntRootNode();
+        CyclicBarrier start = new CyclicBarrier(2 * THREAD_COUNT);
+        CountDownLatch writersDone = new CountDownLatch(THREAD_COUNT);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < THREAD_COUNT; thread++) {
+            int writer = thread;
+            tasks.add(() -> {
+                start.await();
+                try {
+                    for (int key = writer; key < keyCount; key += THREAD_COUNT) {
+                        if (key % 4 != 0) {
+                            Assertions.assertEquals(new ValueReference(key), tree.remove(key));
+                            Assertions.assertNull(tree.getOrNull(key));
+                            Assertions.assertNull(tree.remove(key));
+                        }
+                        if (key % 8 == 1)
+                            Assertions.assertNull(tree.insert(keyCount + key, new ValueReference(keyCount + key)));
+                    }
+                } finally {
+                    writersDone.countDown();
+                }
+                return null;
+            });
+            tasks.add(() -> {
+                Random random = new Random(writer);
+                start.await();
+                while (writersDone.getCount() > 0) {
+                    int key = random.nextInt(2 * keyCount);
+                    Iterator<ValueReference> range = tree.getRange(key, key + 500);
+                    int previousKey = key - 1;
+                    while (range.hasNext()) {
+                        int scannedKey = range.next().getDummyValue();
+                        Assertions.assertTrue(
+                            previousKey < scannedKey && scannedKey <= key + 500,
+                            "key " + scannedKey + " after " + previousKey + " in range from " + key
+                        );
+                        previousKey = scannedKey;
+                    }
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assertions.assertNotSame(root, tree.getIntRootNode());
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertEquals(
+            IntStream.range(0, 2 * keyCount).filter(key -> (key < keyCount) ? key % 4 == 0 : key % 8 == 1).boxed().toList(),
+            tree.getEntries().map(AbstractBPlusTree.Entry::getKey).toList()
+        );
+        Assertions.assertEquals(
+            tree.getEntries().map(AbstractBPlusTree.Entry::getValue).toList(),
+            ReadOnlyBPlusTreeTests.toList(tree.getRange(Integer.MIN_VALUE, Integer.MAX_VALUE))
+        );
+    }
+}
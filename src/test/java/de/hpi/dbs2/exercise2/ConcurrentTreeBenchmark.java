@@ -0,0 +1,114 @@
+package de.hpi.dbs2.exercise2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the throughput of a mixed load of lookups and inserts with an increasing number of threads,
+ * once on an {@link IntBPlusTree} behind one global read/write lock and once on a {@link ConcurrentIntBPlusTree}.
+ *
+ * <p>So far this has only been run on a single core, where latch crabbing reaches about 3 ops/us
+ * and the global lock about 4 ops/us with any number of threads. {@code -XX:ActiveProcessorCount}
+ * only changes the number of threads, which still share that core, so it cannot show the scaling either.
+ * That latch crabbing scales better with more threads is expected, but has not been measured yet.
+ */
+public class ConcurrentTreeBenchmark {
+    private static final int ORDER = 64;
+    private static final int ENTRY_COUNT = 1_000_000;
+    private static final int INSERT_PERCENTAGE = 10;
+    private static final long DURATION_MILLIS = 2_000;
+
+    private interface Operations {
+        void getOrNull(int key);
+
+        void insert(int key);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d cores, %d%% inserts%n", maxThreads, INSERT_PERCENTAGE);
+        System.out.printf("%8s %22s %22s%n", "threads", "global lock [ops/us]", "latch crabbing [ops/us]");
+        for (int threads = 1; threads <= Math.max(maxThreads, 2); threads *= 2) {
+            // the even keys are loaded, so that half of the inserts add new keys
+            IntBPlusTree lockedTree = new IntBPlusTree(ORDER, entries(), 0.7);
+            ReentrantReadWriteLock globalLock = new ReentrantReadWriteLock();
+            double lockedThroughput = measure(threads, new Operations() {
+                @Override
+                public void getOrNull(int key) {
+                    globalLock.readLock().lock();
+                    try {
+                        lockedTree.getOrNull(key);
+                    } finally {
+                        globalLock.readLock().unlock();
+                    }
+                }
+
+                @Override
+                public void insert(int key) {
+                    globalLock.writeLock().lock();
+                    try {
+                        lockedTree.insert(key, new ValueReference(key));
+                    } finally {
+                        globalLock.writeLock().unlock();
+                    }
+                }
+            });
+
+            ConcurrentIntBPlusTree concurrentTree = new ConcurrentIntBPlusTree(ORDER, entries(), 0.7);
+            double concurrentThroughput = measure(threads, new Operations() {
+                @Override
+                public void getOrNull(int key) {
+                    concurrentTree.getOrNull(key);
+                }
+
+                @Override
+                public void insert(int key) {
+                    concurrentTree.insert(key, new ValueReference(key));
+                }
+            });
+            System.out.printf("%8d %22.2f %22.2f%n", threads, lockedThroughput, concurrentThroughput);
+        }
+    }
+
+    private static Iterator<AbstractBPlusTree.Entry> entries() {
+        return IntStream.range(0, ENTRY_COUNT)
+            .mapToObj(i -> new AbstractBPlusTree.Entry(2 * i, new ValueReference(i)))
+            .iterator();
+    }
+
+    /**
+     * @return the number of operations per microsecond of all threads together
+     */
+    private static double measure(int threadCount, Operations operations) throws InterruptedException {
+        LongAdder operationCount = new LongAdder();
+        long end = System.currentTimeMillis() + DURATION_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while ((count & 0xFF) != 0 || System.currentTimeMillis() < end) {
+                    int key = random.nextInt(2 * ENTRY_COUNT);
+                    if (random.nextInt(100) < INSERT_PERCENTAGE) {
+                        operations.insert(key);
+                    } else {
+                        operations.getOrNull(key);
+                    }
+                    count++;
+                }
+                operationCount.add(count);
+            }));
+        }
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return operationCount.sum() / ((System.nanoTime() - start) / 1e3);
+    }
+}
@@ -0,0 +1,264 @@
+package de.hpi.dbs2.exercise2;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class IntBPlusTreeTests {
+    @Test
+    public void testEmptyTree() {
+        IntBPlusTree tree = new IntBPlusTree(4);
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertNull(tree.getOrNull(0));
+        Assertions.assertEquals(0, tree.getEntries().count());
+        Assertions.assertEquals(new ReadOnlyBPlusTree(4), tree);
+        // the inherited root node is not allocated, so a method which is not overridden fails instead of reading it
+        Assertions.assertNull(tree.rootNode);
+        Assertions.assertEquals(0, tree.getHeight());
+        Assertions.assertFalse(tree.getRange(Integer.MIN_VALUE, Integer.MAX_VALUE).hasNext());
+    }
+
+    @Test
+    public void testTreeInsert() {
+        AbstractBPlusTree expectedTree = new ReadOnlyBPlusTree(BPlusTreeNode.buildTree(4,
+            (Object[]) new AbstractBPlusTree.Entry[][]{
+                new AbstractBPlusTree.Entry[]{
+                    new AbstractBPlusTree.Entry(1, new ValueReference(6)),
+                    new AbstractBPlusTree.Entry(2, new ValueReference(1)),
+                    new AbstractBPlusTree.Entry(3, new ValueReference(4))
+                },
+                new AbstractBPlusTree.Entry[]{
+                    new AbstractBPlusTree.Entry(4, new ValueReference(3)),
+                    new AbstractBPlusTree.Entry(7, new ValueReference(2))
+                },
+                new AbstractBPlusTree.Entry[]{
+                    new AbstractBPlusTree.Entry(8, new ValueReference(5)),
+                    new AbstractBPlusTree.Entry(9, new ValueReference(7))
+                }
+            }
+        ));
+
+        IntBPlusTree tree = new IntBPlusTree(4);
+        int[] keys = {2, 7, 4, 3, 8, 1, 9};
+        for (int i = 0; i < keys.length; i++) {
+            tree.insert(keys[i], new ValueReference(i + 1));
+            Assertions.assertTrue(tree.isValid());
+        }
+        Assertions.assertEquals(expectedTree, tree);
+        Assertions.assertEquals(1, tree.getHeight());
+    }
+
+    @Test
+    public void testTreeInsertOverwrite() {
+        IntBPlusTree tree = new IntBPlusTree(4);
+        for (int key = 0; key < 20; key++) {
+            Assertions.assertNull(tree.insert(key, new ValueReference(key)));
+        }
+        Assertions.assertEquals(new ValueReference(7), tree.insert(7, new ValueReference(-7)));
+        Assertions.assertEquals(new ValueReference(-7), tree.get(7));
+        Assertions.assertEquals(20, tree.getEntries().count());
+        Assertions.assertTrue(tree.isValid());
+    }
+
+    @Test
+    public void testTreeInsertRandomSet() {
+        Random random = new Random(0);
+        for (int order : new int[]{3, 4, 5, 16, 200}) {
+            IntBPlusTree tree = new IntBPlusTree(order);
+            TreeMap<Integer, ValueReference> expectedEntries = new TreeMap<>();
+            for (int i = 0; i < 5000; i++) {
+                int key = random.nextInt(-10_000, 10_000);
+                ValueReference value = new ValueReference(i);
+                Assertions.assertEquals(expectedEntries.put(key, value), tree.insert(key, value));
+            }
+            Assertions.assertTrue(tree.isValid(), "order " + order);
+            Assertions.assertIterableEquals(
+                expectedEntries.entrySet().stream().map(entry -> new AbstractBPlusTree.Entry(entry.getKey(), entry.getValue())).toList(),
+                tree.getEntries().toList()
+            );
+            IntStream.range(-10_001, 10_001).forEach(key ->
+                Assertions.assertEquals(expectedEntries.get(key), tree.getOrNull(key))
+            );
+        }
+    }
+
+    @Test
+    public void testNodeLayout() {
+        IntBPlusTree tree = new IntBPlusTree(5);
+        for (int key = 0; key < 100; key++) {
+            tree.insert(key, new ValueReference(key));
+        }
+        IntInnerNode root = (IntInnerNode) tree.getIntRootNode();
+        Assertions.assertEquals(root.getKeyCount() + 1, root.getNodeSize());
+        Assertions.assertEquals(4, root.keys.length);
+        IntLeafNode leaf = root.findLeaf(42);
+        Assertions.assertEquals(leaf.getKeyCount(), leaf.getNodeSize());
+        Assertions.assertNotEquals(-1, leaf.indexOf(42));
+        Assertions.assertTrue(leaf.indexOf(100) < 0);
+    }
+
+    @Test
+    public void testBulkLoad() {
+        Random random = new Random(1);
+        for (int order : new int[]{3, 4, 5, 16, 100}) {
+            for (int count : new int[]{0, 1, order - 1, order, 2 * order, 5000}) {
+                for (double fillFactor : new double[]{0.1, 0.7, 1.0}) {
+                    List<AbstractBPlusTree.Entry> entries = ReadOnlyBPlusTreeTests.sortedEntries(count);
+                    IntBPlusTree tree = new IntBPlusTree(order, entries.iterator(), fillFactor);
+                    String description = "order " + order + ", " + count + " entries, fill factor " + fillFactor;
+                    Assertions.assertTrue(tree.isValid(), description);
+                    Assertions.assertEquals(new ReadOnlyBPlusTree(order, entries.iterator(), fillFactor), tree, description);
+
+                    // the bulk loaded tree stays valid while inserting into it
+                    TreeMap<Integer, ValueReference> expectedEntries = new TreeMap<>();
+                    entries.forEach(entry -> expectedEntries.put(entry.getKey(), entry.getValue()));
+                    for (int i = 0; i < 200; i++) {
+                        int key = random.nextInt(-count - 10, 2 * count + 10);
+                        ValueReference value = new ValueReference(-i);
+                        Assertions.assertEquals(expectedEntries.put(key, value), tree.insert(key, value));
+                    }
+                    Assertions.assertTrue(tree.isValid(), description);
+                    Assertions.assertEquals(expectedEntries.size(), tree.getEntries().count());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetRange() {
+        Random random = new Random(2);
+        for (int order : new int[]{3, 4, 16, 200}) {
+            IntBPlusTree tree = new IntBPlusTree(order);
+            TreeMap<Integer, ValueReference> expectedEntries = new TreeMap<>();
+            ReadOnlyBPlusTreeTests.assertRangesEqual(expectedEntries, tree);
+            for (int i = 0; i < 5000; i++) {
+                int key = random.nextInt(-10_000, 10_000);
+                ValueReference value = new ValueReference(i);
+                expectedEntries.put(key, value);
+                tree.insert(key, value);
+            }
+            ReadOnlyBPlusTreeTests.assertRangesEqual(expectedEntries, tree);
+        }
+    }
+
+    @Test
+    public void testRemove() {
+        IntBPlusTree tree = new IntBPlusTree(4);
+        int[] keys = {2, 7, 4, 3, 8, 1, 9};
+        for (int i = 0; i < keys.length; i++) {
+            tree.insert(keys[i], new ValueReference(i + 1));
+        }
+        Assertions.assertNull(tree.remove(5));
+
+        // merges the underfull leaf into its left sibling, which removes the separator 8 from the root
+        Assertions.assertEquals(new ValueReference(5), tree.remove(8));
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertEquals(new ReadOnlyBPlusTree(BPlusTreeNode.buildTree(4,
+            new AbstractBPlusTree.Entry[]{
+                new AbstractBPlusTree.Entry(1, new ValueReference(6)),
+                new AbstractBPlusTree.Entry(2, new ValueReference(1)),
+                new AbstractBPlusTree.Entry(3, new ValueReference(4))
+            },
+            new AbstractBPlusTree.Entry[]{
+                new AbstractBPlusTree.Entry(4, new ValueReference(3)),
+                new AbstractBPlusTree.Entry(7, new ValueReference(2)),
+                new AbstractBPlusTree.Entry(9, new ValueReference(7))
+            }
+        )), tree);
+
+        // removes the smallest key of the right leaf, which is replaced as separator
+        Assertions.assertEquals(new ValueReference(3), tree.remove(4));
+        // borrows the largest entry of the left leaf
+        Assertions.assertEquals(new ValueReference(7), tree.remove(9));
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertEquals(new ReadOnlyBPlusTree(BPlusTreeNode.buildTree(4,
+            new AbstractBPlusTree.Entry[]{
+                new AbstractBPlusTree.Entry(1, new ValueReference(6)),
+                new AbstractBPlusTree.Entry(2, new ValueReference(1))
+            },
+            new AbstractBPlusTree.Entry[]{
+                new AbstractBPlusTree.Entry(3, new ValueReference(4)),
+                new AbstractBPlusTree.Entry(7, new ValueReference(2))
+            }
+        )), tree);
+
+        // merging the last two leaves collapses the root
+        Assertions.assertEquals(new ValueReference(1), tree.remove(2));
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertEquals(0, tree.getHeight());
+        Assertions.assertEquals(List.of(1, 3, 7), tree.getEntries().map(AbstractBPlusTree.Entry::getKey).toList());
+    }
+
+    @Test
+    public void testRemoveRandomSet() {
+        Random random = new Random(3);
+        for (int order : new int[]{3, 4, 5, 16, 200}) {
+            IntBPlusTree tree = new IntBPlusTree(order);
+            TreeMap<Integer, ValueReference> expectedEntries = new TreeMap<>();
+            // grows the tree first, then keys are removed more often than inserted until it is empty
+            for (int i = 0; i < 30_000 && (i < 10_000 || !expectedEntries.isEmpty()); i++) {
+                int key = random.nextInt(0, 5_000);
+                if (i < 10_000 ? random.nextInt(3) == 0 : random.nextInt(3) != 0) {
+                    Assertions.assertEquals(expectedEntries.remove(key), tree.remove(key));
+                } else {
+                    ValueReference value = new ValueReference(i);
+                    Assertions.assertEquals(expectedEntries.put(key, value), tree.insert(key, value));
+                }
+                if (i % 100 == 0) {
+                    Assertions.assertTrue(tree.isValid(), "order " + order + ", operation " + i);
+                }
+            }
+            Assertions.assertTrue(tree.isValid(), "order " + order);
+            ReadOnlyBPlusTreeTests.assertRangesEqual(expectedEntries, tree);
+            for (int key : List.copyOf(expectedEntries.keySet())) {
+                Assertions.assertEquals(expectedEntries.remove(key), tree.remove(key));
+            }
+            Assertions.assertTrue(tree.isValid(), "order " + order);
+            Assertions.assertEquals(new ReadOnlyBPlusTree(order), tree);
+        }
+    }
+
+    @Test
+    public void testRemoveWithTombstones() {
+        IntBPlusTree tree = new IntBPlusTree(4, ReadOnlyBPlusTreeTests.sortedEntries(100).iterator(), 1.0);
+        tree.setDeleteMode(IntBPlusTree.DeleteMode.TOMBSTONES);
+        IntBPlusTreeNode root = tree.getIntRootNode();
+        TreeMap<Integer, ValueReference> expectedEntries = new TreeMap<>();
+        ReadOnlyBPlusTreeTests.sortedEntries(100).forEach(entry -> expectedEntries.put(entry.getKey(), entry.getValue()));
+
+        for (int key = -100; key < 0; key += 3) {
+            Assertions.assertEquals(expectedEntries.remove(key), tree.remove(key));
+        }
+        Assertions.assertNull(tree.remove(-100));
+        Assertions.assertNull(tree.getOrNull(-100));
+        Assertions.assertTrue(tree.isValid());
+        // the tree structure stays unchanged
+        Assertions.assertSame(root, tree.getIntRootNode());
+        Assertions.assertEquals(expectedEntries.size(), tree.getEntries().count());
+        ReadOnlyBPlusTreeTests.assertRangesEqual(expectedEntries, tree);
+
+        // inserting a removed key replaces its tombstone
+        ValueReference value = new ValueReference(-1);
+        expectedEntries.put(-97, value);
+        Assertions.assertNull(tree.insert(-97, value));
+        Assertions.assertEquals(value, tree.get(-97));
+        Assertions.assertTrue(tree.isValid());
+
+        // the tree is compacted once half of its keys are removed
+        for (int key = 2; root == tree.getIntRootNode(); key += 3) {
+            Assertions.assertEquals(expectedEntries.remove(key), tree.remove(key));
+        }
+        Assertions.assertTrue(tree.isValid());
+        ReadOnlyBPlusTreeTests.assertRangesEqual(expectedEntries, tree);
+
+        tree.remove(expectedEntries.pollFirstEntry().getKey());
+        tree.setDeleteMode(IntBPlusTree.DeleteMode.REBALANCE);
+        Assertions.assertTrue(tree.isValid());
+        Assertions.assertEquals(
+            expectedEntries.entrySet().stream().map(entry -> new AbstractBPlusTree.Entry(entry.getKey(), entry.getValue())).toList(),
+            tree.getRootNode().getEntries().toList()
+        );
+    }
+}
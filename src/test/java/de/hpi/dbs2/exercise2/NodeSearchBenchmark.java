@@ -0,0 +1,64 @@
+package de.hpi.dbs2.exercise2;
+
+import java.util.Random;
+
+/**
+ * Compares the linear and the binary search over the keys of nodes with increasing orders
+ * and reports the largest number of keys for which the linear search is still faster,
+ * which is the value for {@link BPlusTreeNode#LINEAR_SEARCH_MAX_KEYS}.
+ * The cutoff is not updated automatically, so it has to be changed by hand after running this on other machines.
+ */
+public class NodeSearchBenchmark {
+    private static final int[] ORDERS = {4, 8, 12, 16, 24, 32, 48, 64, 96, 128, 256, 512};
+    private static final int NODE_COUNT = 1024;
+    private static final int SEARCHES = 1 << 22;
+
+    public static void main(String[] args) {
+        Random random = new Random(0);
+        int cutoff = 0;
+        int checksum = 0;
+        System.out.printf("%6s %12s %12s%n", "keys", "linear [ns]", "binary [ns]");
+        for (int order : ORDERS) {
+            int n = order - 1;
+            // many nodes, so that the keys are not always in the cache like in a larger tree
+            Integer[][] nodes = new Integer[NODE_COUNT][];
+            for (int node = 0; node < NODE_COUNT; node++) {
+                nodes[node] = new Integer[n];
+                int key = random.nextInt(100);
+                for (int i = 0; i < n; i++) {
+                    key += 1 + random.nextInt(10);
+                    nodes[node][i] = key;
+                }
+            }
+            int[] searchKeys = new int[SEARCHES];
+            int[] searchNodes = new int[SEARCHES];
+            for (int i = 0; i < SEARCHES; i++) {
+                searchNodes[i] = random.nextInt(NODE_COUNT);
+                searchKeys[i] = random.nextInt(nodes[searchNodes[i]][n - 1] + 10);
+            }
+
+            double linearNanos = Double.MAX_VALUE;
+            double binaryNanos = Double.MAX_VALUE;
+            // the best of several rounds, the first ones warm up the JIT
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < SEARCHES; i++) {
+                    checksum += BPlusTreeNode.linearUpperBound(nodes[searchNodes[i]], searchKeys[i]);
+                }
+                linearNanos = Math.min(linearNanos, (double) (System.nanoTime() - start) / SEARCHES);
+
+                start = System.nanoTime();
+                for (int i = 0; i < SEARCHES; i++) {
+                    Integer[] keys = nodes[searchNodes[i]];
+                    checksum += BPlusTreeNode.binaryUpperBound(keys, BPlusTreeNode.keyCount(keys), searchKeys[i]);
+                }
+                binaryNanos = Math.min(binaryNanos, (double) (System.nanoTime() - start) / SEARCHES);
+            }
+            System.out.printf("%6d %12.2f %12.2f%n", n, linearNanos, binaryNanos);
+            // the linear search only gets slower relative to the binary search with more keys
+            if (linearNanos <= binaryNanos)
+                cutoff = n;
+        }
+        System.out.println("linear search is faster up to " + cutoff + " keys (checksum " + checksum + ")");
+    }
+}
@@ -0,0 +1,70 @@
+package de.hpi.dbs2.exercise2;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Compares range scans with {@link AbstractBPlusTree#getRange}, which descends the tree once and then
+ * follows the sibling links of the leaves, against filtering all entries of {@link AbstractBPlusTree#getEntries()}.
+ */
+public class RangeScanBenchmark {
+    private static final int ORDER = 64;
+    private static final int ENTRY_COUNT = 1_000_000;
+    private static final int[] RANGE_WIDTHS = {10, 1_000, 100_000};
+    private static final int RANGE_SCANS = 2_000;
+    // every filtered scan reads all entries, so fewer of them are sufficient
+    private static final int FILTERED_SCANS = 20;
+
+    public static void main(String[] args) {
+        AbstractBPlusTree.Entry[] entries = IntStream.range(0, ENTRY_COUNT)
+            .mapToObj(i -> new AbstractBPlusTree.Entry(2 * i, new ValueReference(i)))
+            .toArray(AbstractBPlusTree.Entry[]::new);
+        AbstractBPlusTree[] trees = {
+            new ReadOnlyBPlusTree(ORDER, IntStream.range(0, ENTRY_COUNT).mapToObj(i -> entries[i]).iterator(), 0.7),
+            new IntBPlusTree(ORDER, IntStream.range(0, ENTRY_COUNT).mapToObj(i -> entries[i]).iterator(), 0.7)
+        };
+
+        Random random = new Random(0);
+        long checksum = 0;
+        System.out.printf("%-18s %8s %16s %16s%n", "tree", "width", "getRange [us]", "filtered [us]");
+        for (AbstractBPlusTree tree : trees) {
+            for (int width : RANGE_WIDTHS) {
+                int[] lowerBounds = random.ints(RANGE_SCANS, 0, 2 * (ENTRY_COUNT - width)).toArray();
+
+                double rangeMicros = Double.MAX_VALUE;
+                double filteredMicros = Double.MAX_VALUE;
+                // the best of several rounds, the first ones warm up the JIT
+                for (int round = 0; round < 5; round++) {
+                    long start = System.nanoTime();
+                    for (int lowerBound : lowerBounds) {
+                        checksum += consume(tree.getRange(lowerBound, lowerBound + 2 * width - 1));
+                    }
+                    rangeMicros = Math.min(rangeMicros, (System.nanoTime() - start) / 1e3 / RANGE_SCANS);
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < FILTERED_SCANS; i++) {
+                        int lowerBound = lowerBounds[i];
+                        int upperBound = lowerBound + 2 * width - 1;
+                        checksum += consume(tree.getEntries()
+                            .filter(entry -> entry.getKey() >= lowerBound && entry.getKey() <= upperBound)
+                            .map(AbstractBPlusTree.Entry::getValue)
+                            .iterator());
+                    }
+                    filteredMicros = Math.min(filteredMicros, (System.nanoTime() - start) / 1e3 / FILTERED_SCANS);
+                }
+                System.out.printf("%-18s %8d %16.2f %16.2f%n",
+                    tree.getClass().getSimpleName(), width, rangeMicros, filteredMicros);
+            }
+        }
+        System.out.println("checksum " + checksum);
+    }
+
+    private static long consume(Iterator<ValueReference> values) {
+        long sum = 0;
+        while (values.hasNext()) {
+            sum += values.next().getDummyValue();
+        }
+        return sum;
+    }
+}
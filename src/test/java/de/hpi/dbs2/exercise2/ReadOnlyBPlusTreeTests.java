@@ -3,6 +3,15 @@ package de.hpi.dbs2.exercise2;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
 public class ReadOnlyBPlusTreeTests {
     @Test
     public void testTreesAreValid() {
@@ -37,4 +46,127 @@ public class ReadOnlyBPlusTreeTests {
         Assertions.assertNull(TestFixtures.exampleTree.getOrNull(44));
         Assertions.assertNull(TestFixtures.exampleTree.getOrNull(99));
     }
+
+    static List<AbstractBPlusTree.Entry> sortedEntries(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> new AbstractBPlusTree.Entry(3 * i - count, new ValueReference(i)))
+            .toList();
+    }
+
+    @Test
+    public void testBulkLoad() {
+        for (int order : new int[]{3, 4, 5, 16, 100}) {
+            for (int count : new int[]{0, 1, order - 1, order, 2 * order, 5000}) {
+                for (double fillFactor : new double[]{0.1, 0.5, 0.7, 1.0}) {
+                    List<AbstractBPlusTree.Entry> entries = sortedEntries(count);
+                    AbstractBPlusTree tree = new ReadOnlyBPlusTree(order, entries.iterator(), fillFactor);
+                    String description = "order " + order + ", " + count + " entries, fill factor " + fillFactor;
+                    Assertions.assertTrue(tree.isValid(), description);
+                    Assertions.assertEquals(entries, tree.getEntries().toList(), description);
+                    for (AbstractBPlusTree.Entry entry : entries) {
+                        Assertions.assertEquals(entry.getValue(), tree.getOrNull(entry.getKey()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBulkLoadFillFactor() {
+        AbstractBPlusTree fullTree = new ReadOnlyBPlusTree(4, sortedEntries(9).iterator(), 1.0);
+        Assertions.assertEquals(new ReadOnlyBPlusTree(BPlusTreeNode.buildTree(4,
+            sortedEntries(9).subList(0, 3).toArray(),
+            sortedEntries(9).subList(3, 6).toArray(),
+            sortedEntries(9).subList(6, 9).toArray()
+        )), fullTree);
+
+        AbstractBPlusTree halfTree = new ReadOnlyBPlusTree(5, sortedEntries(8).iterator(), 0.5);
+        Assertions.assertEquals(new ReadOnlyBPlusTree(BPlusTreeNode.buildTree(5,
+            sortedEntries(8).subList(0, 2).toArray(),
+            sortedEntries(8).subList(2, 4).toArray(),
+            sortedEntries(8).subList(4, 6).toArray(),
+            sortedEntries(8).subList(6, 8).toArray()
+        )), halfTree);
+    }
+
+    @Test
+    public void testBulkLoadRejectsUnsortedEntries() {
+        List<AbstractBPlusTree.Entry> entries = List.of(
+            TestFixtures.getOrCreateEntry(2),
+            TestFixtures.getOrCreateEntry(3),
+            TestFixtures.getOrCreateEntry(3)
+        );
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new ReadOnlyBPlusTree(4, entries.iterator(), 1.0));
+    }
+
+    static List<ValueReference> toList(Iterator<ValueReference> values) {
+        List<ValueReference> list = new ArrayList<>();
+        values.forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Compares the ranges between random bounds, between existing keys and across the whole key domain.
+     */
+    static void assertRangesEqual(NavigableMap<Integer, ValueReference> expectedEntries, AbstractBPlusTree tree) {
+        Random random = new Random(0);
+        int minKey = expectedEntries.isEmpty() ? 0 : expectedEntries.firstKey() - 2;
+        int maxKey = expectedEntries.isEmpty() ? 0 : expectedEntries.lastKey() + 2;
+        List<int[]> ranges = new ArrayList<>(List.of(
+            new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE},
+            new int[]{Integer.MIN_VALUE, minKey},
+            new int[]{maxKey, Integer.MAX_VALUE},
+            new int[]{maxKey, minKey}
+        ));
+        expectedEntries.keySet().stream().limit(20).forEach(key -> ranges.add(new int[]{key, key}));
+        for (int i = 0; i < 200; i++) {
+            int lowerBound = random.nextInt(minKey, maxKey + 1);
+            ranges.add(new int[]{lowerBound, random.nextInt(lowerBound, maxKey + 1)});
+        }
+        for (int[] range : ranges) {
+            List<ValueReference> expectedValues = (range[0] > range[1])
+                ? List.of()
+                : List.copyOf(expectedEntries.subMap(range[0], true, range[1], true).values());
+            Assertions.assertEquals(expectedValues, toList(tree.getRange(range[0], range[1])),
+                "range [" + range[0] + ", " + range[1] + "]");
+        }
+    }
+
+    @Test
+    public void testGetRange() {
+        AbstractBPlusTree tree = TestFixtures.exampleTree;
+        Assertions.assertEquals(List.of(), toList(tree.getRange(0, 1)));
+        Assertions.assertEquals(List.of(), toList(tree.getRange(5, 2)));
+        Assertions.assertEquals(List.of(), toList(tree.getRange(12, 12)));
+        Assertions.assertEquals(List.of(), toList(tree.getRange(48, 99)));
+        Assertions.assertEquals(
+            List.of(TestFixtures.entries.get(7).getValue()),
+            toList(tree.getRange(7, 7))
+        );
+        // crosses the leaves and the subtrees of the root
+        Assertions.assertEquals(
+            List.of(
+                TestFixtures.entries.get(5).getValue(),
+                TestFixtures.entries.get(7).getValue(),
+                TestFixtures.entries.get(11).getValue(),
+                TestFixtures.entries.get(13).getValue()
+            ),
+            toList(tree.getRange(4, 16))
+        );
+        Assertions.assertEquals(tree.getEntries().count(), toList(tree.getRange(Integer.MIN_VALUE, Integer.MAX_VALUE)).size());
+
+        Iterator<ValueReference> emptyRange = new ReadOnlyBPlusTree(4).getRange(0, 10);
+        Assertions.assertFalse(emptyRange.hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, emptyRange::next);
+
+        for (int order : new int[]{3, 4, 16, 100}) {
+            for (int count : new int[]{0, 1, order - 1, 5000}) {
+                List<AbstractBPlusTree.Entry> entries = sortedEntries(count);
+                TreeMap<Integer, ValueReference> expectedEntries = new TreeMap<>();
+                entries.forEach(entry -> expectedEntries.put(entry.getKey(), entry.getValue()));
+                assertRangesEqual(expectedEntries, new ReadOnlyBPlusTree(order, entries.iterator(), 0.7));
+            }
+        }
+    }
 }
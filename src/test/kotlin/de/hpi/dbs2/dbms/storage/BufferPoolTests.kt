@@ -0,0 +1,166 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.BlockManager
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import de.hpi.dbs2.exercise3.NestedLoopEquiInnerJoin
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class BufferPoolTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.STRING,
+    )
+
+    @Test
+    fun `eviction policies select their victims`() {
+        val blockManager = DBMS(totalBlocks = 0, blockCapacity = 1).blockManager
+        val (a, b, c, d) = List(4) { blockManager.allocate(false) }
+
+        EvictionPolicy.LRU().apply {
+            add(a); add(b); add(c)
+            assertEquals(a, selectVictim())
+            remove(a)
+            add(a)
+            assertEquals(b, selectVictim())
+        }
+        EvictionPolicy.MRU().apply {
+            add(a); add(b); add(c)
+            assertEquals(c, selectVictim())
+            remove(c)
+            assertEquals(b, selectVictim())
+        }
+        EvictionPolicy.Clock().apply {
+            add(a); add(b); add(c)
+            // newly cached blocks are not referenced, so the first one is evicted
+            assertEquals(a, selectVictim())
+            remove(a)
+            add(d)
+            assertEquals(b, selectVictim())
+        }
+        EvictionPolicy.Clock().apply {
+            add(a); add(b); add(c)
+            // the cache hit references a, so the hand clears it once and evicts b instead
+            pin(a)
+            add(a)
+            assertEquals(b, selectVictim())
+            remove(b)
+            assertEquals(c, selectVictim())
+            remove(c)
+            assertEquals(a, selectVictim())
+            // pinned blocks are not evicted
+            pin(a)
+            assertFailsWith<NoSuchElementException> { selectVictim() }
+        }
+    }
+
+    @Test
+    fun `loading cached blocks does not count as disk read`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 2, evictionPolicy = EvictionPolicy.LRU())) {
+            val tuples = List(4) { Tuple(2, it, "$it") }
+            val relation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> tuples.forEach(filler::add) }
+            }
+            assertEquals(2, bufferPool!!.size)
+
+            val cost = trackIOCost {
+                assertEquals(tuples, relation.tupleIterator(blockManager).asSequence().toList())
+                assertEquals(tuples, relation.tupleIterator(blockManager).asSequence().toList())
+            }
+            assertEquals(0, cost.inputCost)
+            assertEquals(0, blockManager.usedBlocks)
+            assertEquals(3, blockManager.freeBlocks)
+        }
+    }
+
+    @Test
+    fun `cached blocks are evicted when frames are needed`() {
+        with(DBMS(totalBlocks = 2, blockCapacity = 2, evictionPolicy = EvictionPolicy.LRU())) {
+            val references = List(2) {
+                blockManager.allocate(true).let { block ->
+                    block.append(Tuple(2, it, "$it"))
+                    blockManager.release(block, true)!!
+                }
+            }
+            assertEquals(2, bufferPool!!.size)
+
+            val block = blockManager.allocate(true)
+            assertEquals(1, bufferPool!!.size)
+            assertTrue(references[1] in bufferPool!!)
+
+            val cost = trackIOCost {
+                blockManager.load(references[1]).close()
+                blockManager.load(references[0]).close()
+            }
+            assertEquals(1, cost.inputCost)
+
+            val secondBlock = blockManager.load(references[0])
+            assertFailsWith<BlockManager.OutOfMemoryException> {
+                blockManager.load(references[1])
+            }
+            block.close()
+            secondBlock.close()
+        }
+    }
+
+    @Test
+    fun `clock keeps re-used blocks cached during a sweep`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 1, evictionPolicy = EvictionPolicy.Clock())) {
+            val references = List(3) {
+                blockManager.allocate(true).let { block ->
+                    block.append(Tuple(2, it, "$it"))
+                    blockManager.release(block, true)!!
+                }
+            }
+            assertEquals(3, bufferPool!!.size)
+            blockManager.load(references[0]).close()
+
+            val block = blockManager.allocate(true)
+            assertTrue(references[0] in bufferPool!!)
+            assertTrue(references[1] !in bufferPool!!)
+            assertTrue(references[2] in bufferPool!!)
+            block.close()
+        }
+    }
+
+    @Test
+    fun `MRU turns repeated inner relation scans into cache hits`() {
+        fun DBMS.joinTestRelations(): Pair<List<Tuple>, Int> {
+            val leftInputRelation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> repeat(8) { filler.add(Tuple(2, it, "left $it")) } }
+            }
+            val rightInputRelation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> repeat(12) { filler.add(Tuple(2, it / 2, "right $it")) } }
+            }
+            val join = NestedLoopEquiInnerJoin(blockManager, 0, 0)
+            val outputRelation = createRelation(
+                blockManager,
+                join.buildOutputColumns(leftInputRelation, rightInputRelation)
+            )
+            val cost = trackIOCost {
+                join.join(leftInputRelation, rightInputRelation, outputRelation)
+            }
+            assertEquals(0, blockManager.usedBlocks)
+            return outputRelation.tupleIterator(blockManager).asSequence().toList() to cost.inputCost
+        }
+
+        // the inner relation is larger than the cache, so LRU always evicts the block which is needed next
+        val (expectedTuples, inputCostWithoutBufferPool) =
+            DBMS(totalBlocks = 7, blockCapacity = 2).joinTestRelations()
+        val (lruTuples, inputCostWithLRU) =
+            DBMS(totalBlocks = 7, blockCapacity = 2, evictionPolicy = EvictionPolicy.LRU()).joinTestRelations()
+        val (mruTuples, inputCostWithMRU) =
+            DBMS(totalBlocks = 7, blockCapacity = 2, evictionPolicy = EvictionPolicy.MRU()).joinTestRelations()
+
+        assertEquals(expectedTuples, lruTuples)
+        assertEquals(expectedTuples, mruTuples)
+        assertEquals(inputCostWithoutBufferPool, inputCostWithLRU)
+        assertTrue(inputCostWithMRU < inputCostWithLRU)
+    }
+}
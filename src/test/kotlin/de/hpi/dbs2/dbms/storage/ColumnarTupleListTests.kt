@@ -0,0 +1,124 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.BlockFormat
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnVector
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.BlockSorter
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import kotlin.test.Test
+import kotlin.test.assertContentEquals
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class ColumnarTupleListTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.STRING,
+        ColumnDefinition.ColumnType.DOUBLE,
+    )
+
+    private fun createTuples(count: Int): List<Tuple> = List(count) { i ->
+        Tuple(3, (i * 7919) % 101 - 50, if (i % 7 == 0) null else "tuple ${i % 3}", if (i % 4 == 0) null else i / 3.0)
+    }
+
+    @Test
+    fun `columnar blocks return equal tuples`() {
+        with(DBMS(totalBlocks = 2, blockCapacity = 4, blockFormat = BlockFormat.COLUMNS)) {
+            val tuples = createTuples(50)
+            val relation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> tuples.forEach(filler::add) }
+            }
+            assertEquals(tuples, relation.tupleIterator(blockManager).asSequence().toList())
+        }
+    }
+
+    @Test
+    fun `columns are returned as primitive vectors`() {
+        val tuples = createTuples(8)
+        BlockFormat.values().forEach { blockFormat ->
+            with(DBMS(totalBlocks = 1, blockCapacity = 8, blockFormat = blockFormat)) {
+                val block = blockManager.allocate(true, columnDefinition)
+                tuples.forEach(block::append)
+
+                val ints = block.getColumn(0, ColumnDefinition.ColumnType.INTEGER) as ColumnVector.IntVector
+                assertEquals(8, ints.size)
+                assertContentEquals(tuples.map { it.getInt(0) }, ints.values.take(8))
+
+                val strings = block.getColumn(1, ColumnDefinition.ColumnType.STRING) as ColumnVector.StringVector
+                assertTrue(strings.isNull(0))
+                assertEquals(3, strings.dictionary.size)
+                assertEquals(strings.codes[1], strings.codes[4])
+                assertEquals(tuples.map { it[1] }, List(8) { strings[it] })
+
+                val doubles = block.getColumn(2, ColumnDefinition.ColumnType.DOUBLE)
+                assertEquals(tuples.map { it[2] }, List(8) { doubles[it] })
+
+                assertFailsWith<IllegalArgumentException> {
+                    block.getColumn(1, ColumnDefinition.ColumnType.INTEGER)
+                }
+                block.close()
+            }
+        }
+    }
+
+    @Test
+    fun `views and vectors stay valid after modifications`() {
+        val list = ColumnarTupleList(columnDefinition, 3)
+        val tuples = createTuples(6)
+        list += tuples[1]
+        list += tuples[2]
+        val view = list[0]
+        val vector = list.getColumn(1)
+
+        list.add(0, tuples[3])
+        assertEquals(listOf(tuples[3], tuples[1], tuples[2]), list)
+        assertEquals(tuples[1], list.set(1, tuples[4]))
+        assertEquals(tuples[3], list.removeAt(0))
+        assertEquals(listOf(tuples[4], tuples[2]), list)
+
+        list.clear()
+        list += tuples[5]
+        assertEquals(listOf(tuples[5]), list)
+        assertEquals(tuples[1], view)
+        assertEquals(listOf(tuples[1][1], tuples[2][1]), List(vector.size) { vector[it] })
+        assertFailsWith<UnsupportedOperationException> { view[0] = 1 }
+    }
+
+    @Test
+    fun `views and vectors of a removed last row stay valid after appending`() {
+        val list = ColumnarTupleList(columnDefinition, 3)
+        val tuples = createTuples(3)
+        list += tuples[0]
+        list += tuples[1]
+        val view = list[1]
+        val vector = list.getColumn(2)
+
+        assertEquals(tuples[1], list.removeAt(1))
+        list += tuples[2]
+        assertEquals(listOf(tuples[0], tuples[2]), list)
+        assertEquals(tuples[1], view)
+        assertEquals(listOf(tuples[0][2], tuples[1][2]), List(vector.size) { vector[it] })
+    }
+
+    @Test
+    fun `blocks are sorted by column vectors`() {
+        val tuples = createTuples(30)
+        BlockFormat.values().forEach { blockFormat ->
+            with(DBMS(totalBlocks = 4, blockCapacity = 8, blockFormat = blockFormat)) {
+                listOf(0, 2).forEach { sortColumnIndex ->
+                    val blocks = tuples.chunked(8).map { chunk ->
+                        blockManager.allocate(true, columnDefinition).also { block -> chunk.forEach(block::append) }
+                    }
+                    BlockSorter.sort(blocks, columnDefinition, sortColumnIndex)
+                    val expected = tuples.sortedWith(columnDefinition.getColumnComparator(sortColumnIndex))
+                    assertEquals(expected, blocks.flatten())
+                    blocks.forEach { it.close() }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.BlockFormat
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import de.hpi.dbs2.exercise3.NestedLoopEquiInnerJoin
+import java.io.File
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class CompactTupleListTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.STRING,
+        ColumnDefinition.ColumnType.DOUBLE,
+    )
+
+    private fun createTuples(count: Int): List<Tuple> = List(count) { i ->
+        Tuple(3, i, if (i % 7 == 0) null else "tuple $i ü".repeat(i % 5), if (i % 4 == 0) null else i / 3.0)
+    }
+
+    @Test
+    fun `compact blocks return equal tuples`() {
+        with(DBMS(totalBlocks = 2, blockCapacity = 4, blockFormat = BlockFormat.COMPACT_ROWS)) {
+            val tuples = createTuples(50)
+            val relation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> tuples.forEach(filler::add) }
+            }
+            assertEquals(13, relation.estimatedBlockCount())
+
+            val loadedTuples = relation.tupleIterator(blockManager).asSequence().toList()
+            assertEquals(tuples, loadedTuples)
+            assertEquals(tuples.map { it.hashCode() }, loadedTuples.map { it.hashCode() })
+            assertEquals(tuples.map { it.toString() }, loadedTuples.map { it.toString() })
+        }
+    }
+
+    @Test
+    fun `typed accessors read values without boxing`() {
+        val list = CompactTupleList(RowLayout(columnDefinition), 4)
+        list += Tuple(3, 42, "answer", 0.5)
+        list += Tuple(3, null, null, null)
+
+        assertEquals(42, list[0].getInt(0))
+        assertEquals(0.5, list[0].getDouble(2))
+        assertEquals("answer", list[0][1])
+        assertTrue(list[1].isNull(0))
+        assertFailsWith<NullPointerException> { list[1].getInt(0) }
+        assertFailsWith<ClassCastException> { list[0].getDouble(0) }
+        assertFailsWith<UnsupportedOperationException> { list[0][0] = 1 }
+    }
+
+    @Test
+    fun `views stay valid after modifications`() {
+        val list = CompactTupleList(RowLayout(columnDefinition), 3)
+        val tuples = createTuples(6)
+        list += tuples[1]
+        list += tuples[2]
+        val view = list[0]
+
+        list.add(0, tuples[3])
+        assertEquals(listOf(tuples[3], tuples[1], tuples[2]), list)
+        assertEquals(tuples[1], view)
+
+        assertEquals(tuples[1], list.set(1, tuples[4]))
+        assertEquals(tuples[3], list.removeAt(0))
+        assertEquals(listOf(tuples[4], tuples[2]), list)
+        assertEquals(tuples[1], view)
+
+        list.clear()
+        list += tuples[5]
+        assertEquals(listOf(tuples[5]), list)
+        assertEquals(tuples[1], view)
+    }
+
+    @Test
+    fun `views of a removed last row stay valid after appending`() {
+        val list = CompactTupleList(RowLayout(columnDefinition), 3)
+        val tuples = createTuples(3)
+        list += tuples[0]
+        list += tuples[1]
+        val view = list[1]
+
+        assertEquals(tuples[1], list.removeAt(1))
+        list += tuples[2]
+        assertEquals(listOf(tuples[0], tuples[2]), list)
+        assertEquals(tuples[1], view)
+    }
+
+    @Test
+    fun `strings of replaced rows are compacted`() {
+        val list = CompactTupleList(RowLayout(columnDefinition), 4)
+        val tuples = createTuples(40)
+        val expected = tuples.take(4).toMutableList()
+        list.addAll(expected)
+        val view = list[1]
+
+        repeat(200) { round ->
+            val index = round % 4
+            if (round % 3 == 0) {
+                assertEquals(expected.removeAt(index), list.removeAt(index))
+                expected.add(index, tuples[round % 40])
+                list.add(index, tuples[round % 40])
+            } else {
+                assertEquals(expected.set(index, tuples[round % 40]), list.set(index, tuples[round % 40]))
+            }
+            assertEquals(expected, list)
+            val liveSize = expected.sumOf { (it[1] as String?)?.toByteArray(Charsets.UTF_8)?.size ?: 0 }
+            assertTrue(list.tailSize <= 2 * liveSize, "${list.tailSize} tail bytes for $liveSize live bytes")
+        }
+        assertEquals(tuples[1], view)
+    }
+
+    @Test
+    fun `incompatible tuples are rejected`() {
+        val list = CompactTupleList(RowLayout(columnDefinition), 3)
+        list += createTuples(2)[1]
+        assertFailsWith<IllegalArgumentException> { list += Tuple(3, "not an int", null, null) }
+        assertFailsWith<IllegalArgumentException> { list.add(0, Tuple(2, 1, "too few columns")) }
+        assertEquals(listOf(createTuples(2)[1]), list)
+    }
+
+    @Test
+    fun `compact blocks survive paging`() {
+        val file = File.createTempFile("dbs2-pages", ".bin")
+        try {
+            FilePageStore(file, pageSize = 1024).use { pageStore ->
+                with(DBMS(totalBlocks = 2, blockCapacity = 4, pageStore, blockFormat = BlockFormat.COMPACT_ROWS)) {
+                    val tuples = createTuples(30)
+                    val relation = createRelation(blockManager, columnDefinition).apply {
+                        fill(blockManager) { filler -> tuples.forEach(filler::add) }
+                    }
+                    assertEquals(tuples, relation.tupleIterator(blockManager).asSequence().toList())
+                }
+            }
+        } finally {
+            file.delete()
+        }
+    }
+
+    @Test
+    fun `join on compact blocks has the same result and cost`() {
+        fun DBMS.joinTestRelations(): Pair<List<Tuple>, Int> {
+            val leftInputRelation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> createTuples(20).forEach(filler::add) }
+            }
+            val rightInputRelation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> createTuples(30).shuffled(java.util.Random(0)).forEach(filler::add) }
+            }
+            val join = NestedLoopEquiInnerJoin(blockManager, 0, 0)
+            val outputRelation = createRelation(
+                blockManager,
+                join.buildOutputColumns(leftInputRelation, rightInputRelation)
+            )
+            val cost = trackIOCost {
+                join.join(leftInputRelation, rightInputRelation, outputRelation)
+            }
+            return outputRelation.tupleIterator(blockManager).asSequence().toList() to cost.ioCost
+        }
+
+        val expected = DBMS(totalBlocks = 3, blockCapacity = 4).joinTestRelations()
+        val actual = DBMS(totalBlocks = 3, blockCapacity = 4, blockFormat = BlockFormat.COMPACT_ROWS).joinTestRelations()
+        assertEquals(20, expected.first.size)
+        assertEquals(expected, actual)
+    }
+}
@@ -0,0 +1,169 @@
+package de.hpi.dbs2.dbms.storage
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import de.hpi.dbs2.exercise3.NestedLoopEquiInnerJoin
+import java.io.File
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class PagedBlockManagerTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.STRING,
+        ColumnDefinition.ColumnType.DOUBLE,
+    )
+
+    private fun createTuples(count: Int): List<Tuple> = List(count) { i ->
+        Tuple(3, i, if (i % 7 == 0) null else "tuple $i ü", i / 3.0)
+    }
+
+    private fun <T> withTemporaryFile(block: (File) -> T): T {
+        val file = File.createTempFile("dbs2-pages", ".bin")
+        try {
+            return block(file)
+        } finally {
+            file.delete()
+        }
+    }
+
+    private val pageStoreFactories: List<(File, Int) -> PageStore> = listOf(
+        { file, pageSize -> FilePageStore(file, pageSize) },
+        { file, pageSize -> MappedPageStore(file, pageSize, pagesPerSegment = 4) },
+    )
+
+    @Test
+    fun `tuples survive release and load`() = pageStoreFactories.forEach { createPageStore ->
+        withTemporaryFile { file -> testReleaseAndLoad(createPageStore(file, 512), file) }
+    }
+
+    /**
+     * Reading from a [FilePageStore] always takes time, while mapped pages are only pinned and their
+     * tuples are decoded on access, which is not timed unless the block is modified.
+     */
+    private fun testReleaseAndLoad(pageStore: PageStore, file: File) {
+        pageStore.use {
+            with(DBMS(totalBlocks = 2, blockCapacity = 4, pageStore = pageStore)) {
+                val tuples = createTuples(50)
+                val relation = createRelation(blockManager, columnDefinition).apply {
+                    fill(blockManager) { filler ->
+                        tuples.forEach(filler::add)
+                    }
+                }
+                assertEquals(0, blockManager.usedBlocks)
+                assertEquals(13, relation.estimatedBlockCount())
+                assertEquals(13, pageStore.pageCount)
+                assertTrue(file.length() > 0)
+
+                val cost = trackIOCost {
+                    assertEquals(tuples, relation.tupleIterator(blockManager).asSequence().toList())
+                }
+                assertEquals(13, cost.inputCost)
+                assertEquals(0, cost.outputCost)
+                if (pageStore is MappedPageStore) {
+                    assertEquals(0L, cost.inputTime)
+                } else {
+                    assertTrue(cost.inputTime > 0)
+                }
+                assertEquals(0, blockManager.usedBlocks)
+            }
+        }
+    }
+
+    @Test
+    fun `saving a block counts as disk write`() = withTemporaryFile { file ->
+        FilePageStore(file, pageSize = 512).use { pageStore ->
+            with(DBMS(totalBlocks = 1, blockCapacity = 4, pageStore = pageStore)) {
+                val cost = trackIOCost {
+                    val block = blockManager.allocate(true)
+                    createTuples(4).forEach(block::append)
+                    val reference = blockManager.release(block, true)!!
+                    assertEquals(0, blockManager.usedBlocks)
+                    assertFailsWith<IllegalStateException> { reference.size }
+
+                    val loadedBlock = blockManager.load(reference)
+                    assertEquals(createTuples(4), loadedBlock.toList())
+                    loadedBlock.close()
+                }
+                assertEquals(1, cost.inputCost)
+                assertEquals(1, cost.outputCost)
+            }
+        }
+    }
+
+    @Test
+    fun `tuples which exceed the page size are rejected`() = withTemporaryFile { file ->
+        FilePageStore(file, pageSize = 16).use { pageStore ->
+            with(DBMS(totalBlocks = 1, blockCapacity = 4, pageStore = pageStore)) {
+                val block = blockManager.allocate(true)
+                block.append(Tuple(1, "this string is too long for a page"))
+                assertFailsWith<IllegalStateException> {
+                    blockManager.release(block, true)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `mapped blocks are decoded on modification`() = withTemporaryFile { file ->
+        MappedPageStore(file, pageSize = 512, pagesPerSegment = 2).use { pageStore ->
+            with(DBMS(totalBlocks = 1, blockCapacity = 5, pageStore = pageStore)) {
+                val tuples = createTuples(7)
+                val reference = blockManager.allocate(true).let { block ->
+                    tuples.take(3).forEach(block::append)
+                    blockManager.release(block, true)!!
+                }
+
+                val block = blockManager.load(reference)
+                assertEquals(3, block.size)
+                assertEquals(tuples[1], block[1])
+                block.append(tuples[3])
+                block.insert(0, tuples[4])
+                assertEquals(listOf(tuples[4]) + tuples.take(4), block.toList())
+                blockManager.release(block, true)
+
+                blockManager.load(reference).use {
+                    assertEquals(listOf(tuples[4]) + tuples.take(4), it.toList())
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `paged join has the same result and cost as the simulated join`() = pageStoreFactories.forEach { createPageStore ->
+        withTemporaryFile { file -> testJoin(createPageStore(file, 1024)) }
+    }
+
+    private fun testJoin(pageStore: PageStore) {
+        fun DBMS.joinTestRelations(): Pair<List<Tuple>, Int> {
+            val leftInputRelation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> createTuples(20).forEach(filler::add) }
+            }
+            val rightInputRelation = createRelation(blockManager, columnDefinition).apply {
+                fill(blockManager) { filler -> createTuples(30).shuffled(java.util.Random(0)).forEach(filler::add) }
+            }
+            val join = NestedLoopEquiInnerJoin(blockManager, 0, 0)
+            val outputRelation = createRelation(
+                blockManager,
+                join.buildOutputColumns(leftInputRelation, rightInputRelation)
+            )
+            val cost = trackIOCost {
+                join.join(leftInputRelation, rightInputRelation, outputRelation)
+            }
+            assertEquals(0, blockManager.usedBlocks)
+            return outputRelation.tupleIterator(blockManager).asSequence().toList() to cost.ioCost
+        }
+
+        val expected = DBMS(totalBlocks = 3, blockCapacity = 4).joinTestRelations()
+        val actual = pageStore.use {
+            DBMS(totalBlocks = 3, blockCapacity = 4, pageStore = pageStore).joinTestRelations()
+        }
+        assertEquals(20, expected.first.size)
+        assertEquals(expected, actual)
+    }
+}
@@ -0,0 +1,84 @@
+package de.hpi.dbs2.dbms.utils
+
+import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.BlockFormat
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class BlockSorterTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.DOUBLE,
+        ColumnDefinition.ColumnType.STRING,
+    )
+
+    private fun createTuples(count: Int, random: Random): List<Tuple> = List(count) { i ->
+        val key = when (i % 5) {
+            0 -> random.nextInt()
+            1 -> null
+            else -> random.nextInt(-20, 20)
+        }
+        Tuple(3, key, key?.let { it / 3.0 }, key?.let { "key ${it % 7}" })
+    }
+
+    /**
+     * Fills the blocks differently, with a short first block.
+     */
+    private fun DBMS.createBlocks(tuples: List<Tuple>): List<Block> {
+        val sizes = listOf(3, 8, 1, 8, 5, 8, 8)
+        val iterator = tuples.iterator()
+        return sizes.map { size ->
+            blockManager.allocate(true, columnDefinition).also { block ->
+                repeat(size) { block.append(iterator.next()) }
+            }
+        }
+    }
+
+    @Test
+    fun `blocks are sorted by comparator`() {
+        val random = Random(0)
+        val tuples = List(41) { i -> Tuple(3, random.nextInt(-20, 20), 0.0, "tuple $i") }
+        with(DBMS(totalBlocks = 7, blockCapacity = 8)) {
+            val blocks = createBlocks(tuples)
+            val comparator = columnDefinition.getColumnComparator(0)
+            BlockSorter.sort(blocks, comparator)
+
+            assertEquals(listOf(3, 8, 1, 8, 5, 8, 8), blocks.map { it.size })
+            assertEquals(tuples.sortedWith(comparator), blocks.flatten())
+        }
+    }
+
+    @Test
+    fun `blocks are sorted by each column type`() {
+        val random = Random(1)
+        BlockFormat.values().forEach { blockFormat ->
+            for (sortColumnIndex in 0 until columnDefinition.columnCount) {
+                with(DBMS(totalBlocks = 7, blockCapacity = 8, blockFormat = blockFormat)) {
+                    val tuples = createTuples(41, random)
+                    val blocks = createBlocks(tuples)
+                    BlockSorter.sort(blocks, columnDefinition, sortColumnIndex)
+
+                    // the expected order is stable and has null values first
+                    val expected = tuples.sortedWith(columnDefinition.getColumnComparator(sortColumnIndex))
+                    assertEquals(listOf(3, 8, 1, 8, 5, 8, 8), blocks.map { it.size })
+                    assertEquals(expected, blocks.flatten(), "$blockFormat by column $sortColumnIndex")
+                }
+            }
+        }
+    }
+
+    @Test
+    fun `radix sort orders all int values`() {
+        val keys = listOf(Int.MAX_VALUE, -1, 0, Int.MIN_VALUE, 256, 255, -256, 65536, 1, Int.MIN_VALUE + 1)
+        with(DBMS(totalBlocks = 2, blockCapacity = 8)) {
+            val blocks = List(2) { blockManager.allocate(true, columnDefinition) }
+            keys.forEachIndexed { i, key -> blocks[i % 2].append(Tuple(3, key, 0.0, "")) }
+            BlockSorter.sort(blocks, columnDefinition, 0)
+            assertEquals(keys.sorted(), blocks.flatten().map { it[0] })
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.hpi.dbs2.dbms.utils
+
+import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.BlockOutput
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+
+class LoserTreeMergerTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.DOUBLE,
+        ColumnDefinition.ColumnType.STRING,
+    )
+
+    private fun createRuns(runCount: Int, random: Random): List<List<Tuple>> {
+        var id = 0
+        return List(runCount) {
+            List(random.nextInt(0, 20)) {
+                val key = random.nextInt(-10, 10)
+                Tuple(3, key, key / 4.0, "tuple ${id++ % 7}")
+            }
+        }
+    }
+
+    @Test
+    fun `sources are merged stably by each column type`() {
+        val random = Random(0)
+        (1..17).forEach { runCount ->
+            for (sortColumnIndex in 0 until columnDefinition.columnCount) {
+                val comparator = columnDefinition.getColumnComparator(sortColumnIndex)
+                val runs = createRuns(runCount, random).map { it.sortedWith(comparator) }
+                val merger = LoserTreeMerger(runs.map { it.iterator() }, columnDefinition, sortColumnIndex)
+
+                // sortedWith is stable, so equal tuples stay in the order of their runs
+                assertEquals(runs.flatten().sortedWith(comparator), merger.asSequence().toList())
+                assertFalse(merger.hasNext())
+            }
+        }
+    }
+
+    @Test
+    fun `each tuple takes ceil(log2 k) comparisons`() {
+        val random = Random(1)
+        listOf(1, 2, 3, 4, 5, 8, 9, 31).forEach { runCount ->
+            val runs = List(runCount) { List(50) { Tuple(3, random.nextInt(), 0.0, "") }.sortedBy { it[0] as Int } }
+            val merger = LoserTreeMerger(runs.map { it.iterator() }, columnDefinition.getColumnComparator(0))
+            val leafCount = Integer.highestOneBit(runCount * 2 - 1)
+            val initialComparisons = leafCount - 1L
+            assertEquals(initialComparisons, merger.comparisonCount)
+
+            merger.forEach { _ -> }
+            val depth = 32 - Integer.numberOfLeadingZeros(runCount - 1)
+            assertEquals(initialComparisons + 50L * runCount * depth, merger.comparisonCount, "$runCount runs")
+        }
+    }
+
+    @Test
+    fun `merged tuples are written through block outputs`() {
+        with(DBMS(totalBlocks = 1, blockCapacity = 4)) {
+            val runs = createRuns(6, Random(2)).map { it.sortedWith(columnDefinition.getColumnComparator(0)) }
+            val blocks = mutableListOf<List<Tuple>>()
+            LoserTreeMerger(runs.map { it.iterator() }, columnDefinition, 0)
+                .writeTo(blockManager, columnDefinition, object : BlockOutput {
+                    override fun move(outputBlock: Block) {
+                        blocks += outputBlock.toList()
+                        blockManager.release(outputBlock, false)
+                    }
+                })
+
+            assertEquals(0, blockManager.usedBlocks)
+            val tupleCount = runs.sumOf { it.size }
+            assertEquals((tupleCount + 3) / 4, blocks.size)
+            assertEquals(
+                runs.flatten().sortedWith(columnDefinition.getColumnComparator(0)),
+                blocks.flatten()
+            )
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package de.hpi.dbs2.exercise1
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Operation
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class MultiPassMergeSortTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.DOUBLE,
+    )
+
+    private fun DBMS.createRelation(keys: List<Int>): Relation =
+        createRelation(blockManager, columnDefinition).apply {
+            fill(blockManager) { filler ->
+                keys.forEachIndexed { i, key -> filler.add(Tuple(2, key, i.toDouble())) }
+            }
+        }
+
+    @Test
+    fun `estimated cost matches the tracked cost`() {
+        val random = Random(0)
+        listOf(
+            3 to 1,
+            3 to 6,
+            3 to 7,
+            3 to 40,
+            4 to 13,
+            4 to 55,
+            5 to 100,
+            8 to 57,
+        ).forEach { (totalBlocks, blockCount) ->
+            with(DBMS(totalBlocks = totalBlocks, blockCapacity = 3)) {
+                val keys = List(blockCount * 3 - 1) { random.nextInt(100) }
+                val inputRelation = createRelation(keys)
+                val outputRelation = createRelation(blockManager, columnDefinition)
+                val sortOperation = MultiPassMergeSort(blockManager, 0)
+
+                val estimatedCost = sortOperation.estimatedIOCost(inputRelation)
+                val cost = trackIOCost {
+                    sortOperation.execute(inputRelation, outputRelation)
+                }
+                val message = "$blockCount blocks with $totalBlocks free blocks"
+                assertEquals(estimatedCost, cost.ioCost, message)
+                assertEquals(0, blockManager.usedBlocks, message)
+                val sortedTuples = outputRelation.tupleIterator(blockManager).asSequence().toList()
+                assertEquals(keys.sorted(), sortedTuples.map { it[0] }, message)
+                // equal keys keep the order of the input
+                assertEquals(
+                    sortedTuples.sortedWith(compareBy({ it[0] as Int }, { it[1] as Double })),
+                    sortedTuples,
+                    message
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `cost grows with the number of passes`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 2)) {
+            val sortOperation = MultiPassMergeSort(blockManager, 0)
+            // two runs are merged in the final pass like for TPMMS
+            assertEquals(3 * 6, sortOperation.estimatedIOCost(createRelation(List(12) { it })))
+            // 9 runs of 3 blocks are merged into 5, 3 and 2 runs and then into the output,
+            // the last run of an odd number of runs is not copied
+            assertEquals(
+                27 + 27 + 3 * 2 * 24 + 27,
+                sortOperation.estimatedIOCost(createRelation(List(54) { it }))
+            )
+        }
+    }
+
+    @Test
+    fun `runs sorted in parallel have the same cost and order`() {
+        val random = Random(3)
+        val keys = List(60_000) { random.nextInt(1000) }
+        val pool = ForkJoinPool(4)
+        try {
+            val results = listOf(null, pool).map { sortPool ->
+                with(DBMS(totalBlocks = 10, blockCapacity = 1000)) {
+                    val inputRelation = createRelation(keys)
+                    val outputRelation = createRelation(blockManager, columnDefinition)
+                    val sortOperation = MultiPassMergeSort(blockManager, 0, sortPool)
+                    val cost = trackIOCost {
+                        sortOperation.execute(inputRelation, outputRelation)
+                    }
+                    assertEquals(sortOperation.estimatedIOCost(inputRelation), cost.ioCost)
+                    cost.ioCost to outputRelation.tupleIterator(blockManager).asSequence().toList()
+                }
+            }
+            assertEquals(results[0], results[1])
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun `parallel merge sort is stable for any slice length`() {
+        val random = Random(4)
+        val tuples = List(10_000) { Tuple(2, random.nextInt(100), it.toDouble()) }
+        val comparator = columnDefinition.getColumnComparator(0)
+        val expected = tuples.sortedWith(comparator)
+        val pool = ForkJoinPool(4)
+        try {
+            listOf(1, 7, 1000, ParallelTupleSort.MIN_SLICE_LENGTH).forEach { sliceLength ->
+                val sortedTuples = tuples.toTypedArray()
+                ParallelTupleSort.sort(pool, sortedTuples, comparator, sliceLength)
+                assertEquals(expected, sortedTuples.toList(), "slice length $sliceLength")
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun `input blocks are sorted in place into runs`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 2)) {
+            val keys = List(20) { 20 - it }
+            val inputRelation = createRelation(keys)
+            val cost = trackIOCost {
+                MultiPassMergeSort(blockManager, 0).execute(
+                    inputRelation,
+                    createRelation(blockManager, columnDefinition)
+                )
+            }
+            assertEquals(MultiPassMergeSort(blockManager, 0).estimatedIOCost(inputRelation), cost.ioCost)
+            // each run of 3 blocks is written back into the blocks it was read from
+            assertEquals(
+                keys.chunked(6).flatMap { it.sorted() },
+                inputRelation.tupleIterator(blockManager).asSequence().map { it[0] }.toList()
+            )
+        }
+    }
+
+    @Test
+    fun `too little memory is rejected`() {
+        with(DBMS(totalBlocks = 2, blockCapacity = 2)) {
+            val inputRelation = createRelation(List(10) { it })
+            val sortOperation = MultiPassMergeSort(blockManager, 0)
+            assertFailsWith<Operation.RelationSizeExceedsCapacityException> {
+                sortOperation.estimatedIOCost(inputRelation)
+            }
+            assertFailsWith<Operation.RelationSizeExceedsCapacityException> {
+                sortOperation.execute(inputRelation, createRelation(blockManager, columnDefinition))
+            }
+        }
+    }
+}
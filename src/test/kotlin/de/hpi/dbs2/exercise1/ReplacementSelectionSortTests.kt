@@ -0,0 +1,189 @@
+package de.hpi.dbs2.exercise1
+
+import de.hpi.dbs2.dbms.BlockManager
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Operation
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import java.util.concurrent.ForkJoinPool
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class ReplacementSelectionSortTests {
+    private val columnDefinition = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.STRING,
+    )
+
+    private fun DBMS.createRelation(keys: List<Int>): Relation =
+        createRelation(blockManager, columnDefinition).apply {
+            fill(blockManager) { filler ->
+                keys.forEachIndexed { i, key -> filler.add(Tuple(2, key, "tuple $i")) }
+            }
+        }
+
+    @Test
+    fun `replacement selection sorts random input`() {
+        with(DBMS(totalBlocks = 8, blockCapacity = 4)) {
+            val random = Random(0)
+            val keys = List(200) { random.nextInt(1000) }
+            val inputRelation = createRelation(keys)
+            val outputRelation = createRelation(blockManager, columnDefinition)
+            val sortOperation = ReplacementSelectionSort(blockManager, 0)
+
+            val estimatedCost = sortOperation.estimatedIOCost(inputRelation)
+            val cost = trackIOCost {
+                sortOperation.execute(inputRelation, outputRelation)
+            }
+            assertEquals(0, blockManager.usedBlocks)
+            // 5 runs, of which all but the last one may end with a partially filled block
+            assertEquals(3 * 50 + 2 * 4, estimatedCost)
+            assertTrue(cost.ioCost in 3 * 50..estimatedCost, "${cost.ioCost}")
+            assertEquals(
+                keys.sorted(),
+                outputRelation.tupleIterator(blockManager).asSequence().map { it[0] }.toList()
+            )
+        }
+    }
+
+    @Test
+    fun `runs are about twice as long as the heap`() {
+        with(DBMS(totalBlocks = 12, blockCapacity = 10)) {
+            val random = java.util.Random(0)
+            val inputRelation = createRelation(List(10_000) { random.nextInt() })
+            val runs = ReplacementSelectionSort(blockManager, 0).generateRuns(
+                inputRelation,
+                columnDefinition.getColumnComparator(0),
+                blockManager.freeBlocks
+            )
+            assertEquals(0, blockManager.usedBlocks)
+            // the heap holds 100 tuples, so memory sized runs would need 100 runs
+            val averageRunBlocks = runs.sumOf { it.size } / runs.size.toDouble()
+            assertTrue(runs.size in 40..60, "${runs.size} runs")
+            assertTrue(averageRunBlocks > 18, "$averageRunBlocks blocks per run")
+        }
+    }
+
+    @Test
+    fun `heap tuples are stored in allocated blocks`() {
+        with(DBMS(totalBlocks = 5, blockCapacity = 2)) {
+            val inputRelation = createRelation(List(20) { 20 - it })
+            val sortOperation = ReplacementSelectionSort(blockManager, 0)
+            val block = blockManager.allocate(true)
+            // the heap of 3 blocks, the input and the output block do not fit into the 4 free blocks
+            assertFailsWith<BlockManager.OutOfMemoryException> {
+                sortOperation.generateRuns(inputRelation, columnDefinition.getColumnComparator(0), 5)
+            }
+            block.close()
+        }
+    }
+
+    @Test
+    fun `presorted input results in a single run`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 2)) {
+            val inputRelation = createRelation(List(50) { it / 2 })
+            val runs = ReplacementSelectionSort(blockManager, 0).generateRuns(
+                inputRelation,
+                columnDefinition.getColumnComparator(0),
+                blockManager.freeBlocks
+            )
+            assertEquals(1, runs.size)
+            assertEquals(25, runs.single().size)
+
+            val outputRelation = createRelation(blockManager, columnDefinition)
+            val cost = trackIOCost {
+                ReplacementSelectionSort(blockManager, 0).execute(inputRelation, outputRelation)
+            }
+            assertEquals(3 * 25, cost.ioCost)
+            assertEquals(
+                List(50) { it / 2 },
+                outputRelation.tupleIterator(blockManager).asSequence().map { it[0] }.toList()
+            )
+        }
+    }
+
+    @Test
+    fun `relations which fit into memory are sorted without runs`() {
+        with(DBMS(totalBlocks = 5, blockCapacity = 2)) {
+            val inputRelation = createRelation(listOf(5, 3, 8, 1, 7, 2, 6, 4))
+            val outputRelation = createRelation(blockManager, columnDefinition)
+            val sortOperation = ReplacementSelectionSort(blockManager, 0)
+            assertEquals(4, sortOperation.estimatedIOCost(inputRelation))
+            val cost = trackIOCost {
+                sortOperation.execute(inputRelation, outputRelation)
+            }
+            assertEquals(4, cost.ioCost)
+            assertEquals(
+                (1..8).toList(),
+                outputRelation.tupleIterator(blockManager).asSequence().map { it[0] }.toList()
+            )
+            // the input blocks are sorted in place and moved to the output relation
+            assertEquals(
+                (1..8).toList(),
+                inputRelation.tupleIterator(blockManager).asSequence().map { it[0] }.toList()
+            )
+        }
+    }
+
+    @Test
+    fun `relations which fit into memory are sorted stably on the pool`() {
+        val random = Random(1)
+        val keys = List(8000) { random.nextInt(100) }
+        val pool = ForkJoinPool(4)
+        try {
+            with(DBMS(totalBlocks = 10, blockCapacity = 1000)) {
+                val inputRelation = createRelation(keys)
+                val outputRelation = createRelation(blockManager, columnDefinition)
+                val cost = trackIOCost {
+                    ReplacementSelectionSort(blockManager, 0, pool).execute(inputRelation, outputRelation)
+                }
+                assertEquals(8, cost.ioCost)
+                assertEquals(
+                    keys.indices.sortedBy { keys[it] }.map { "tuple $it" },
+                    outputRelation.tupleIterator(blockManager).asSequence().map { it[1] }.toList()
+                )
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun `reversed input is merged in multiple passes`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 2)) {
+            val inputRelation = createRelation(List(40) { 40 - it })
+            val outputRelation = createRelation(blockManager, columnDefinition)
+            val cost = trackIOCost {
+                ReplacementSelectionSort(blockManager, 0).execute(inputRelation, outputRelation)
+            }
+            assertEquals(0, blockManager.usedBlocks)
+            // 20 runs of one block are merged into 10, 5, 3 and 2 runs,
+            // the last run of an odd number of runs is not copied
+            assertEquals(20 + 20 + 2 * 20 + 2 * 20 + 2 * 16 + 2 * 16 + 20, cost.ioCost)
+            assertEquals(
+                (1..40).toList(),
+                outputRelation.tupleIterator(blockManager).asSequence().map { it[0] }.toList()
+            )
+        }
+    }
+
+    @Test
+    fun `too little memory is rejected`() {
+        with(DBMS(totalBlocks = 2, blockCapacity = 2)) {
+            val inputRelation = createRelation(List(10) { it })
+            val sortOperation = ReplacementSelectionSort(blockManager, 0)
+            assertFailsWith<Operation.RelationSizeExceedsCapacityException> {
+                sortOperation.estimatedIOCost(inputRelation)
+            }
+            assertFailsWith<Operation.RelationSizeExceedsCapacityException> {
+                sortOperation.execute(inputRelation, createRelation(blockManager, columnDefinition))
+            }
+        }
+    }
+}
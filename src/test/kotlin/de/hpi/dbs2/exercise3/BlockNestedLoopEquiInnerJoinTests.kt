@@ -0,0 +1,52 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class BlockNestedLoopEquiInnerJoinTests : EquiInnerJoinTests() {
+    override fun DBMS.createJoin(rightRelation: Relation): InnerJoinOperation =
+        BlockNestedLoopEquiInnerJoin(blockManager, 0, 1)
+
+    @Test
+    fun `one outer block per chunk costs as much as a nested loop join`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 2)) {
+            val (estimatedCost, cost) = join(
+                List(8) { Tuple(2, 10 + 2 * it, "${'a' + it}") },
+                List(4) { Tuple(2, "${'b' + 2 * it}", 9 + it) },
+            )
+            assertEquals(2 + 2 * 4, estimatedCost)
+            assertEquals(2 + 2 * 4, cost)
+        }
+    }
+
+    @Test
+    fun `inner relation is read once per chunk`() {
+        with(DBMS(totalBlocks = 7, blockCapacity = 4)) {
+            val random = Random(0)
+            val (estimatedCost, cost) = join(
+                List(60) { Tuple(2, random.nextInt(30), "l$it") },
+                List(100) { Tuple(2, "r$it", random.nextInt(30)) },
+            )
+            // 15 outer blocks are loaded in 3 chunks of 5 blocks
+            assertEquals(15 + 3 * 25, estimatedCost)
+            assertEquals(15 + 3 * 25, cost)
+        }
+    }
+
+    @Test
+    fun `smaller right relation is the outer relation`() {
+        with(DBMS(totalBlocks = 5, blockCapacity = 4)) {
+            val random = Random(1)
+            val (estimatedCost, cost) = join(
+                List(100) { Tuple(2, random.nextInt(10), "l$it") },
+                List(28) { Tuple(2, "r$it", random.nextInt(10)) },
+            )
+            assertEquals(7 + 3 * 25, estimatedCost)
+            assertEquals(7 + 3 * 25, cost)
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import de.hpi.dbs2.dbms.ColumnRange
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+
+/**
+ * Measures the cost per output tuple of [InnerJoinOperation.constructJoinedTuple]
+ * against copying both tuples column by column into a [ColumnDefinition.TypedTuple], as it was done before.
+ *
+ * Run without assertions (no `-ea`), as they enable the type checks of the joined values.
+ */
+fun main() {
+    val leftColumns = ColumnDefinition(ColumnType.INTEGER, ColumnType.STRING, ColumnType.DOUBLE, ColumnType.STRING)
+    val rightColumns = ColumnDefinition(ColumnType.STRING, ColumnType.INTEGER, ColumnType.DOUBLE)
+    val outputColumns = leftColumns + rightColumns
+    val random = Random(0)
+    val leftTuples = List(1000) { Tuple(4, it, "l$it", random.nextDouble(), "x${random.nextInt(100)}") }
+    val rightTuples = List(1000) { Tuple(3, "r$it", it, random.nextDouble()) }
+    val join = NestedLoopEquiInnerJoin(DBMS(totalBlocks = 1, blockCapacity = 1).blockManager, 0, 1)
+
+    fun copyColumns(leftTuple: Tuple, rightTuple: Tuple): Tuple = outputColumns.createTuple().apply {
+        leftTuple.copyInto(this, targetRange = ColumnRange.fromColumnCount(leftTuple.columnCount))
+        rightTuple.copyInto(
+            this,
+            targetRange = ColumnRange.fromColumnCount(rightTuple.columnCount) + leftTuple.columnCount
+        )
+    }
+
+    fun measure(name: String, construct: (Tuple, Tuple) -> Tuple) {
+        var checksum = 0
+        repeat(5) { round ->
+            val start = System.nanoTime()
+            for (leftTuple in leftTuples) {
+                for (rightTuple in rightTuples) {
+                    checksum += construct(leftTuple, rightTuple).columnCount
+                }
+            }
+            val nanosPerTuple = (System.nanoTime() - start).toDouble() / (leftTuples.size * rightTuples.size)
+            // the first rounds warm up the JIT
+            if (round >= 2) println("%-14s round %d: %6.2f ns per joined tuple".format(name, round, nanosPerTuple))
+        }
+        if (checksum == 0) println("unexpected checksum")
+    }
+
+    println("assertions enabled: ${InnerJoinOperation::class.java.desiredAssertionStatus()}")
+    measure("column by column") { leftTuple, rightTuple -> copyColumns(leftTuple, rightTuple) }
+    measure("concatenated") { leftTuple, rightTuple ->
+        join.constructJoinedTuple(leftTuple, rightTuple, outputColumns)
+    }
+}
@@ -0,0 +1,114 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Operation
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.dbms.utils.RelationUtils.fill
+import de.hpi.dbs2.dbms.utils.RelationUtils.tupleIterator
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+/**
+ * Fixture of the equi inner join tests, which join the first column of the left relation
+ * with the second column of the right relation.
+ */
+abstract class EquiInnerJoinTests {
+    protected val leftColumns = ColumnDefinition(
+        ColumnDefinition.ColumnType.INTEGER,
+        ColumnDefinition.ColumnType.STRING,
+    )
+    protected val rightColumns = ColumnDefinition(
+        ColumnDefinition.ColumnType.STRING,
+        ColumnDefinition.ColumnType.INTEGER,
+    )
+
+    /**
+     * Creates the tested join, after the right relation has been filled.
+     */
+    protected abstract fun DBMS.createJoin(rightRelation: Relation): InnerJoinOperation
+
+    protected fun DBMS.createRelation(columns: ColumnDefinition, tuples: List<Tuple>): Relation =
+        createRelation(blockManager, columns).apply {
+            fill(blockManager) { filler -> tuples.forEach(filler::add) }
+        }
+
+    protected fun expectedJoin(left: List<Tuple>, right: List<Tuple>): List<String> =
+        left.flatMap { leftTuple ->
+            right.filter { it[1] == leftTuple[0] }.map { rightTuple ->
+                Tuple(4, leftTuple[0], leftTuple[1], rightTuple[0], rightTuple[1])
+            }
+        }.map { it.toString() }.sorted()
+
+    /**
+     * Joins the tuples and checks the joined tuples and that all blocks are released again.
+     *
+     * @return the estimated and the tracked I/O cost
+     */
+    protected fun DBMS.join(
+        left: List<Tuple>,
+        right: List<Tuple>,
+        joinWith: DBMS.(rightRelation: Relation) -> InnerJoinOperation = { createJoin(it) },
+    ): Pair<Int, Int> {
+        val leftRelation = createRelation(leftColumns, left)
+        val rightRelation = createRelation(rightColumns, right)
+        val join = joinWith(rightRelation)
+        val outputRelation = createRelation(blockManager, join.buildOutputColumns(leftRelation, rightRelation))
+        val estimatedCost = join.estimatedIOCost(leftRelation, rightRelation)
+        val cost = trackIOCost {
+            join.join(leftRelation, rightRelation, outputRelation)
+        }
+        assertEquals(0, blockManager.usedBlocks)
+        assertEquals(
+            expectedJoin(left, right),
+            outputRelation.tupleIterator(blockManager).asSequence().map { it.toString() }.sorted().toList()
+        )
+        return estimatedCost to cost.ioCost
+    }
+
+    /**
+     * Checks that 4 left and 10 right blocks are only read once if they fit into memory at once.
+     */
+    protected fun assertFittingRelationsAreReadOnce() {
+        with(DBMS(totalBlocks = 6, blockCapacity = 4)) {
+            val random = Random(0)
+            val (estimatedCost, cost) = join(
+                List(16) { Tuple(2, random.nextInt(20), "l$it") },
+                List(40) { Tuple(2, "r$it", random.nextInt(20)) },
+            )
+            assertEquals(4 + 10, estimatedCost)
+            assertEquals(4 + 10, cost)
+        }
+    }
+
+    @Test
+    fun `null keys match each other`() {
+        val random = Random(1)
+        val left = List(20) { Tuple(2, if (random.nextInt(3) == 0) null else random.nextInt(5), "l$it") }
+        val right = List(16) { Tuple(2, "r$it", if (random.nextInt(3) == 0) null else random.nextInt(5)) }
+        assertTrue(expectedJoin(left, right).any { "null" in it })
+        with(DBMS(totalBlocks = 4, blockCapacity = 2)) {
+            join(left, right)
+        }
+    }
+
+    @Test
+    fun `too little memory is rejected`() {
+        with(DBMS(totalBlocks = 2, blockCapacity = 2)) {
+            val leftRelation = createRelation(leftColumns, List(4) { Tuple(2, it, "l$it") })
+            val rightRelation = createRelation(rightColumns, List(4) { Tuple(2, "r$it", it) })
+            val join = createJoin(rightRelation)
+            assertFailsWith<Operation.RelationSizeExceedsCapacityException> {
+                join.estimatedIOCost(leftRelation, rightRelation)
+            }
+            val outputRelation = createRelation(blockManager, join.buildOutputColumns(leftRelation, rightRelation))
+            assertFailsWith<Operation.RelationSizeExceedsCapacityException> {
+                join.join(leftRelation, rightRelation, outputRelation)
+            }
+        }
+    }
+}
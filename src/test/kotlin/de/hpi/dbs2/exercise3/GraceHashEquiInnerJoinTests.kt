@@ -0,0 +1,58 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class GraceHashEquiInnerJoinTests : EquiInnerJoinTests() {
+    override fun DBMS.createJoin(rightRelation: Relation): InnerJoinOperation =
+        GraceHashEquiInnerJoin(blockManager, 0, 1)
+
+    @Test
+    fun `relations fitting into memory are read once`() {
+        assertFittingRelationsAreReadOnce()
+    }
+
+    @Test
+    fun `partitioned relations are read three times`() {
+        with(DBMS(totalBlocks = 8, blockCapacity = 4)) {
+            val random = Random(1)
+            val (estimatedCost, cost) = join(
+                List(100) { Tuple(2, random.nextInt(1000), "l$it") },
+                List(160) { Tuple(2, "r$it", random.nextInt(1000)) },
+            )
+            assertEquals(3 * (25 + 40), estimatedCost)
+            // each of the 6 buckets of both relations may end with a partially filled block
+            assertTrue(cost in estimatedCost..estimatedCost + 2 * 6, "$cost")
+        }
+    }
+
+    @Test
+    fun `large buckets are partitioned again`() {
+        with(DBMS(totalBlocks = 4, blockCapacity = 4)) {
+            val random = Random(2)
+            val (estimatedCost, cost) = join(
+                List(120) { Tuple(2, random.nextInt(10_000), "l$it") },
+                List(120) { Tuple(2, "r$it", random.nextInt(10_000)) },
+            )
+            // 30 blocks are split into buckets of 15, 8, 4 and 2 blocks
+            assertEquals(9 * 60, estimatedCost)
+            assertTrue(cost >= estimatedCost, "$cost")
+        }
+    }
+
+    @Test
+    fun `skewed keys fall back to a block nested loop`() {
+        with(DBMS(totalBlocks = 5, blockCapacity = 4)) {
+            val random = Random(3)
+            join(
+                List(80) { Tuple(2, if (it % 10 < 8) 7 else random.nextInt(100), "l$it") },
+                List(100) { Tuple(2, "r$it", if (it % 2 == 0) 7 else random.nextInt(100)) },
+            )
+        }
+    }
+}
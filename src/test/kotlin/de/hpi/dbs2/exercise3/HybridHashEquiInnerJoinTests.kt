@@ -0,0 +1,82 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class HybridHashEquiInnerJoinTests : EquiInnerJoinTests() {
+    override fun DBMS.createJoin(rightRelation: Relation): InnerJoinOperation =
+        HybridHashEquiInnerJoin(blockManager, 0, 1)
+
+    @Test
+    fun `relations fitting into memory are read once`() {
+        assertFittingRelationsAreReadOnce()
+    }
+
+    @Test
+    fun `resident bucket is neither written nor read again`() {
+        with(DBMS(totalBlocks = 8, blockCapacity = 4)) {
+            val random = Random(1)
+            val left = List(40) { Tuple(2, random.nextInt(1000), "l$it") }
+            val right = List(160) { Tuple(2, "r$it", random.nextInt(1000)) }
+            val (estimatedCost, cost) = join(left, right)
+            // 1 bucket of 5 blocks is written, 5 blocks stay resident next to the input and bucket block
+            assertEquals(10 + 40 + 2 * (5 + 20), estimatedCost)
+            assertTrue(cost in estimatedCost - 12..estimatedCost + 12, "$cost")
+
+            val (graceEstimatedCost, graceCost) = join(left, right) { GraceHashEquiInnerJoin(blockManager, 0, 1) }
+            assertEquals(3 * (10 + 40), graceEstimatedCost)
+            assertTrue(cost < graceCost, "$cost, $graceCost")
+        }
+    }
+
+    @Test
+    fun `more memory keeps more of the relations resident`() {
+        val random = Random(2)
+        val left = List(120) { Tuple(2, random.nextInt(1000), "l$it") }
+        val right = List(160) { Tuple(2, "r$it", random.nextInt(1000)) }
+        val costs = listOf(12, 16, 24).map { totalBlocks ->
+            with(DBMS(totalBlocks = totalBlocks, blockCapacity = 4)) {
+                join(left, right)
+            }
+        }
+        assertTrue(costs.zipWithNext().all { (smaller, larger) -> smaller.first > larger.first }, "$costs")
+        assertTrue(costs.zipWithNext().all { (smaller, larger) -> smaller.second > larger.second }, "$costs")
+    }
+
+    @Test
+    fun `too little memory for a resident bucket partitions like a grace hash join`() {
+        with(DBMS(totalBlocks = 4, blockCapacity = 4)) {
+            // next to the input and output block, 2 blocks leave no block for a resident bucket,
+            // so the 30 build blocks are partitioned like in a grace hash join until a bucket has 3 blocks
+            val random = Random(3)
+            val left = List(120) { Tuple(2, random.nextInt(10_000), "l$it") }
+            val right = List(120) { Tuple(2, "r$it", random.nextInt(10_000)) }
+            val (estimatedCost, cost) = join(left, right)
+
+            val (graceEstimatedCost, graceCost) = join(left, right) { GraceHashEquiInnerJoin(blockManager, 0, 1) }
+            assertTrue(estimatedCost < graceEstimatedCost, "$estimatedCost, $graceEstimatedCost")
+            // the buckets may end with partially filled blocks
+            assertTrue(cost in estimatedCost until graceCost, "$cost, $estimatedCost, $graceCost")
+        }
+    }
+
+    @Test
+    fun `skewed keys overflow the resident bucket`() {
+        with(DBMS(totalBlocks = 6, blockCapacity = 4)) {
+            val random = Random(4)
+            join(
+                List(80) { Tuple(2, if (it % 10 < 8) 7 else random.nextInt(100), "l$it") },
+                List(100) { Tuple(2, "r$it", if (it % 2 == 0) 7 else random.nextInt(100)) },
+            )
+            join(
+                List(80) { Tuple(2, it % 3, "l$it") },
+                List(60) { Tuple(2, "r$it", it % 4) },
+            )
+        }
+    }
+}
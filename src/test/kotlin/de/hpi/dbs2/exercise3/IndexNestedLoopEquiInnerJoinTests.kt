@@ -0,0 +1,86 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import de.hpi.dbs2.exercise2.TupleReferenceIndex
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class IndexNestedLoopEquiInnerJoinTests : EquiInnerJoinTests() {
+    /**
+     * Builds the index on the right join column first, which reads the right relation once.
+     */
+    override fun DBMS.createJoin(rightRelation: Relation): InnerJoinOperation {
+        val join = IndexNestedLoopEquiInnerJoin(blockManager, 0, 1, TupleReferenceIndex(4))
+        val buildCost = trackIOCost {
+            join.buildIndex(rightRelation)
+        }
+        assertEquals(rightRelation.estimatedBlockCount(), buildCost.ioCost)
+        return join
+    }
+
+    @Test
+    fun `only blocks with matches are read`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 4)) {
+            // 4 left tuples reference the keys 10, 11, 200 and 399 of 100 right blocks
+            val (estimatedCost, cost) = join(
+                listOf(10, 11, 200, 399).map { Tuple(2, it, "l$it") },
+                List(400) { Tuple(2, "r$it", it) },
+            )
+            assertEquals(1 + 4, estimatedCost)
+            assertEquals(1 + 3, cost)
+        }
+    }
+
+    @Test
+    fun `foreign keys are joined with their primary keys`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 4)) {
+            val random = Random(0)
+            val (estimatedCost, cost) = join(
+                List(20) { Tuple(2, random.nextInt(-10, 400), "l$it") },
+                List(400) { Tuple(2, "r$it", it) },
+            )
+            assertEquals(5 + 20, estimatedCost)
+            assertTrue(cost <= estimatedCost, "$cost")
+        }
+    }
+
+    @Test
+    fun `keys spread over several right blocks load each of them`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 4)) {
+            // each of the 200 right keys is contained in 2 of the 100 right blocks
+            val (estimatedCost, cost) = join(
+                listOf(10, 50, 120, 199).map { Tuple(2, it, "l$it") },
+                List(400) { Tuple(2, "r$it", it % 200) },
+            )
+            assertEquals(1 + 4 * 2, estimatedCost)
+            assertEquals(1 + 4 * 2, cost)
+        }
+    }
+
+    @Test
+    fun `left keys missing in the index load no right blocks`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 4)) {
+            val (estimatedCost, cost) = join(
+                List(8) { Tuple(2, 1000 + it, "l$it") },
+                List(40) { Tuple(2, "r$it", it) },
+            )
+            assertEquals(2 + 8, estimatedCost)
+            assertEquals(2, cost)
+        }
+    }
+
+    @Test
+    fun `duplicate right keys are all joined`() {
+        with(DBMS(totalBlocks = 3, blockCapacity = 4)) {
+            val random = Random(1)
+            join(
+                List(40) { Tuple(2, random.nextInt(20), "l$it") },
+                List(60) { Tuple(2, "r$it", random.nextInt(20)) },
+            )
+        }
+    }
+}
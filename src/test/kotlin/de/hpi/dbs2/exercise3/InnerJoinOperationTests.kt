@@ -0,0 +1,122 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.Block
+import de.hpi.dbs2.dbms.BlockFormat
+import de.hpi.dbs2.dbms.ColumnDefinition
+import de.hpi.dbs2.dbms.ColumnDefinition.ColumnType
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class InnerJoinOperationTests {
+    private fun DBMS.block(columns: ColumnDefinition, tuples: List<Tuple>): Block =
+        blockManager.allocate(true, columns).apply { tuples.forEach { append(it) } }
+
+    /**
+     * joins the blocks like the nested loop over all pairs of tuples did before
+     */
+    private fun expectedJoin(left: List<Tuple>, right: List<Tuple>, outputColumns: ColumnDefinition): List<Tuple> =
+        left.flatMap { leftTuple ->
+            right.filter { it[1] == leftTuple[0] }.map { rightTuple ->
+                outputColumns.createTuple().apply {
+                    (0 until 2).forEach { set(it, leftTuple[it]) }
+                    (0 until 2).forEach { set(2 + it, rightTuple[it]) }
+                }
+            }
+        }
+
+    private fun assertJoinBlocks(
+        keyType: ColumnType,
+        leftSize: Int,
+        rightSize: Int,
+        blockFormat: BlockFormat = BlockFormat.TUPLES,
+        key: (Random) -> Any?,
+    ) {
+        val leftColumns = ColumnDefinition(keyType, ColumnType.STRING)
+        val rightColumns = ColumnDefinition(ColumnType.STRING, keyType)
+        val random = Random(leftSize * 31 + rightSize)
+        val left = List(leftSize) { Tuple(2, key(random), "l$it") }
+        val right = List(rightSize) { Tuple(2, "r$it", key(random)) }
+        with(DBMS(totalBlocks = 2, blockCapacity = maxOf(leftSize, rightSize), blockFormat = blockFormat)) {
+            val join = NestedLoopEquiInnerJoin(blockManager, 0, 1)
+            val outputColumns = leftColumns + rightColumns
+            val leftBlock = block(leftColumns, left)
+            val rightBlock = block(rightColumns, right)
+            val expected = expectedJoin(left, right, outputColumns)
+            val joined = mutableListOf<Tuple>()
+            join.joinBlocks(leftBlock, rightBlock, outputColumns, joined::add)
+            assertEquals(expected, joined)
+
+            // either block may be the outer block which is hashed once
+            listOf(true, false).forEach { isLeft ->
+                val outerBlock = join.OuterBlock(if (isLeft) leftBlock else rightBlock, isLeft, outputColumns)
+                val joinedWithOuterBlock = mutableListOf<Tuple>()
+                join.joinBlocks(outerBlock, if (isLeft) rightBlock else leftBlock, joinedWithOuterBlock::add)
+                assertEquals(expected, joinedWithOuterBlock, "outer block is left: $isLeft")
+            }
+        }
+    }
+
+    @Test
+    fun `int keys are joined in the order of the left and right tuples`() {
+        assertJoinBlocks(ColumnType.INTEGER, 50, 20) { it.nextInt(10) }
+        assertJoinBlocks(ColumnType.INTEGER, 20, 50) { it.nextInt(10) }
+        assertJoinBlocks(ColumnType.INTEGER, 40, 40, BlockFormat.COLUMNS) { it.nextInt(-5, 5) }
+        assertJoinBlocks(ColumnType.INTEGER, 1, 30) { 7 }
+    }
+
+    @Test
+    fun `double keys are joined like boxed doubles`() {
+        val keys = listOf(0.0, -0.0, 1.5, Double.NaN, Double.POSITIVE_INFINITY)
+        assertJoinBlocks(ColumnType.DOUBLE, 30, 20) { keys.random(it) }
+        assertJoinBlocks(ColumnType.DOUBLE, 20, 30, BlockFormat.COLUMNS) { keys.random(it) }
+    }
+
+    @Test
+    fun `string keys are joined through their dictionaries`() {
+        assertJoinBlocks(ColumnType.STRING, 30, 20) { "k${it.nextInt(8)}" }
+        assertJoinBlocks(ColumnType.STRING, 20, 30, BlockFormat.COLUMNS) { "k${it.nextInt(12)}" }
+    }
+
+    @Test
+    fun `null keys match each other`() {
+        assertJoinBlocks(ColumnType.INTEGER, 30, 20) { if (it.nextBoolean()) null else it.nextInt(4) }
+        assertJoinBlocks(ColumnType.STRING, 20, 30) { if (it.nextBoolean()) null else "k${it.nextInt(4)}" }
+    }
+
+    @Test
+    fun `joined tuples concatenate both tuples`() {
+        val leftColumns = ColumnDefinition(ColumnType.INTEGER, ColumnType.STRING)
+        val rightColumns = ColumnDefinition(ColumnType.STRING, ColumnType.DOUBLE, ColumnType.INTEGER)
+        val join = NestedLoopEquiInnerJoin(DBMS(totalBlocks = 1, blockCapacity = 1).blockManager, 0, 2)
+        val joinedTuple = join.constructJoinedTuple(
+            Tuple(2, 3, "a"),
+            Tuple(3, null, 1.5, 3),
+            leftColumns + rightColumns,
+        )
+        assertEquals(Tuple(5, 3, "a", null, 1.5, 3), joinedTuple)
+        // the joined tuple is still typed
+        assertFailsWith<IllegalArgumentException> { joinedTuple[1] = 4 }
+    }
+
+    @Test
+    fun `joined values not matching the output columns are rejected with assertions enabled`() {
+        val join = NestedLoopEquiInnerJoin(DBMS(totalBlocks = 1, blockCapacity = 1).blockManager, 0, 0)
+        assertFailsWith<IllegalArgumentException> {
+            join.constructJoinedTuple(
+                Tuple(1, "a"),
+                Tuple(1, "b"),
+                ColumnDefinition(ColumnType.INTEGER, ColumnType.STRING),
+            )
+        }
+    }
+
+    @Test
+    fun `empty blocks join nothing`() {
+        assertJoinBlocks(ColumnType.INTEGER, 0, 20) { it.nextInt(4) }
+        assertJoinBlocks(ColumnType.INTEGER, 20, 0) { it.nextInt(4) }
+    }
+}
@@ -0,0 +1,61 @@
+package de.hpi.dbs2.exercise3
+
+import de.hpi.dbs2.dbms.DBMS
+import de.hpi.dbs2.dbms.Relation
+import de.hpi.dbs2.dbms.Tuple
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class SortMergeEquiInnerJoinTests : EquiInnerJoinTests() {
+    override fun DBMS.createJoin(rightRelation: Relation): InnerJoinOperation =
+        SortMergeEquiInnerJoin(blockManager, 0, 1)
+
+    @Test
+    fun `estimated cost matches the tracked cost`() {
+        val random = Random(0)
+        listOf(
+            Triple(4, 10, 14),
+            Triple(4, 30, 7),
+            Triple(5, 1, 40),
+            Triple(8, 45, 45),
+        ).forEach { (totalBlocks, leftBlockCount, rightBlockCount) ->
+            with(DBMS(totalBlocks = totalBlocks, blockCapacity = 4)) {
+                // both relations end with the largest key, so the merge reads both of them completely
+                val (estimatedCost, cost) = join(
+                    List(leftBlockCount * 4) { Tuple(2, if (it == 0) 50 else random.nextInt(50), "l$it") },
+                    List(rightBlockCount * 4) { Tuple(2, "r$it", if (it == 0) 50 else random.nextInt(50)) },
+                )
+                assertEquals(
+                    estimatedCost, cost,
+                    "$leftBlockCount and $rightBlockCount blocks with $totalBlocks free blocks"
+                )
+            }
+        }
+    }
+
+    @Test
+    fun `sorted relations are only merged`() {
+        with(DBMS(totalBlocks = 4, blockCapacity = 2)) {
+            val (estimatedCost, cost) = join(
+                List(12) { Tuple(2, it / 3, "l$it") },
+                List(8) { Tuple(2, "r$it", it / 2) },
+            ) { SortMergeEquiInnerJoin(blockManager, 0, 1, true, true) }
+            assertEquals(6 + 4, estimatedCost)
+            assertEquals(6 + 4, cost)
+        }
+    }
+
+    @Test
+    fun `keys with more tuples than memory are joined`() {
+        with(DBMS(totalBlocks = 4, blockCapacity = 2)) {
+            // the right tuples of key 1 are spread over 6 blocks, but only 2 blocks are left for them
+            val (estimatedCost, cost) = join(
+                List(9) { Tuple(2, if (it in 2..6) 1 else it, "l$it") },
+                List(14) { Tuple(2, "r$it", if (it in 3..12) 1 else it) },
+            )
+            assertTrue(cost > estimatedCost, "$cost")
+        }
+    }
+}